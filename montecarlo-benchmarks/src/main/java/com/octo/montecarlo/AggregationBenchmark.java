@@ -0,0 +1,117 @@
+package com.octo.montecarlo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.ThreadParams;
+
+
+/**
+ * Cost of publishing a checkpoint, with the original copy-on-write {@link Step} swapped by CAS ({@code cow}) and with the
+ * {@link StepAggregator} padded slots ({@code padded}). Each JMH thread plays a worker and owns one slot. Every call is
+ * a checkpoint, so this is the aggregation path only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        @Param({ "cow", "padded" })
+        public String strategy;
+
+        final AtomicReference<Step> stepRef = new AtomicReference<>();
+
+        StepAggregator aggregator;
+
+        @Setup
+        public void setup(BenchmarkParams params) {
+            stepRef.set(new Step(params.getThreads()));
+            aggregator = new StepAggregator(params.getThreads());
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Worker {
+
+        int index;
+
+        long p;
+
+        long n;
+
+        /** Number of failed CAS, reported by JMH next to the throughput */
+        public long retries;
+
+        @Setup
+        public void setup(ThreadParams params) {
+            index = params.getThreadIndex();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void update1(Shared shared, Worker worker) {
+        update(shared, worker);
+    }
+
+    @Benchmark
+    @Threads(2)
+    public void update2(Shared shared, Worker worker) {
+        update(shared, worker);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void update4(Shared shared, Worker worker) {
+        update(shared, worker);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void update8(Shared shared, Worker worker) {
+        update(shared, worker);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void updateMax(Shared shared, Worker worker) {
+        update(shared, worker);
+    }
+
+    private static void update(Shared shared, Worker worker) {
+        worker.n += 1_000;
+        worker.p += 242;
+        if (shared.strategy.equals("padded")) {
+            shared.aggregator.update(worker.index, worker.p, worker.n);
+            return;
+        }
+        while (true) {
+            Step s = shared.stepRef.get();
+            Step updated = s.update(worker.index, worker.p, worker.n);
+            if (shared.stepRef.compareAndSet(s, updated)) {
+                return;
+            }
+            worker.retries++;
+        }
+    }
+}
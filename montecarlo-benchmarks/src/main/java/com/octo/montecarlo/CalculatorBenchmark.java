@@ -0,0 +1,57 @@
+package com.octo.montecarlo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of a full sample: random point, predicate and listener dispatch. Compare the listeners with the {@code noop} one
+ * to get the dispatch overhead, and {@code calculate} with {@code calculateBatch} to get the per point dispatch cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculatorBenchmark {
+
+    /** Same as the MonteCarloCmd checkpoint */
+    private static final int BATCH = 1_000;
+
+    @Param({ "Batman", "Pi" })
+    public String algorithm;
+
+    @Param({ "noop", "gui", "raster", "cmd" })
+    public String listener;
+
+    private MonteCarloCalculator calculator;
+
+    @Setup
+    public void setup() {
+        calculator = MonteCarloCmd.instantiateAlgorithm(MonteCarloCmd.retrieveAlgorithm(algorithm), 0);
+        calculator.setListener(Listeners.create(listener, calculator));
+    }
+
+    @Benchmark
+    public void calculate() {
+        calculator.calculate();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void calculateBatch() {
+        calculator.calculateBatch(BATCH);
+    }
+}
@@ -0,0 +1,145 @@
+package com.octo.montecarlo;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Copies of the listeners used by {@link MonteCarloGui} and {@link MonteCarloCmd} so the dispatch cost can be measured
+ * without a screen or a running command.
+ */
+final class Listeners {
+
+    private static final long CHECKPOINT = 1_000L; // iterations, same as MonteCarloCmd
+
+    private Listeners() {
+    }
+
+    static MonteCarloListener create(String name, MonteCarloCalculator calculator) {
+        switch (name) {
+        case "noop":
+            return noop();
+        case "gui":
+            return gui(calculator);
+        case "raster":
+            return raster(calculator);
+        case "cmd":
+            return cmd(new AtomicReference<>(new Step(1)), new AtomicInteger());
+        default:
+            throw new IllegalArgumentException("Unknown listener: " + name);
+        }
+    }
+
+    static MonteCarloListener noop() {
+        return new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+            }
+        };
+    }
+
+    /**
+     * Same work as the former {@link MonteCarloGui} listener: one {@code Graphics2D} per point drawn in an off-screen image
+     */
+    static MonteCarloListener gui(final MonteCarloCalculator calculator) {
+        final BufferedImage image = new BufferedImage(calculator.getWindowDimension().width,
+                calculator.getWindowDimension().height, BufferedImage.TYPE_INT_RGB);
+        final AtomicReference<Double> val = new AtomicReference<>(0.0);
+        final AtomicLong l = new AtomicLong(0);
+
+        return new MonteCarloPointListener() {
+
+            @Override
+            public void onPoints(double[] x, double[] y, boolean[] good, int length) {
+                for (int i = 0; i < length; i++) {
+                    onPoint(x[i], y[i], good[i]);
+                }
+            }
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+                int dotX = (int) (x * calculator.getWindowDimension().width / 2.0 / calculator.getPositiveRange().width + calculator
+                        .getPositionOffset().width);
+                int dotY = (int) (y * calculator.getWindowDimension().height / 2.0 / calculator.getPositiveRange().height + calculator
+                        .getPositionOffset().height);
+
+                dotX = calculator.getWindowDimension().width - dotX;
+                dotY = calculator.getWindowDimension().height - dotY;
+
+                Graphics2D g = image.createGraphics();
+                g.setColor(good ? Color.BLUE : Color.YELLOW);
+                g.drawLine(dotX, dotY, dotX, dotY);
+                g.dispose();
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                val.set(calculator.getFactor() * p / n);
+                l.set(n);
+            }
+        };
+    }
+
+    /**
+     * Same work as the current {@link MonteCarloGui} listener: the points written in the pixels of a {@link PointRaster}
+     */
+    static MonteCarloListener raster(final MonteCarloCalculator calculator) {
+        final PointRaster raster = new PointRaster(calculator);
+        final AtomicReference<Double> val = new AtomicReference<>(0.0);
+        final AtomicLong l = new AtomicLong(0);
+
+        return new MonteCarloPointListener() {
+
+            @Override
+            public void onPoints(double[] x, double[] y, boolean[] good, int length) {
+                raster.plot(x, y, good, length);
+            }
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+                raster.plot(x, y, good);
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                val.set(calculator.getFactor() * p / n);
+                l.set(n);
+            }
+        };
+    }
+
+    /**
+     * Same work as the {@link MonteCarloCmd} listener: a copy-on-write {@link Step} swapped by CAS at each checkpoint
+     */
+    static MonteCarloListener cmd(final AtomicReference<Step> stepRef, final AtomicInteger concurrencyCount) {
+        return new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                if (n % CHECKPOINT == 0) {
+                    while (true) {
+                        Step s = stepRef.get();
+                        Step updated = s.update(index, p, n);
+                        if (stepRef.compareAndSet(s, updated)) {
+                            break;
+                        }
+                        concurrencyCount.incrementAndGet();
+                    }
+                }
+            }
+        };
+    }
+}
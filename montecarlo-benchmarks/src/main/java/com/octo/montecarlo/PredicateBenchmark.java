@@ -0,0 +1,82 @@
+package com.octo.montecarlo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the Batman predicates alone. The points are drawn once in the setup so the random generator is not measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PredicateBenchmark {
+
+    /** Power of 2 to wrap around with a mask */
+    private static final int POINTS = 4096;
+
+    private final BatmanMonteCarlo batman = new BatmanMonteCarlo(0);
+
+    private final FastBatmanMonteCarlo fastBatman = new FastBatmanMonteCarlo(0);
+
+    private final ShapeMonteCarlo compiledBatman = new ShapeMonteCarlo(0, new BatmanShape());
+
+    private final double[] x = new double[POINTS];
+
+    private final double[] y = new double[POINTS];
+
+    private int i;
+
+    @Setup
+    public void setup() {
+        // Same distribution as BatmanMonteCarlo.calculate()
+        Random rand = new Random(42);
+        double width = batman.getPositiveRange().width;
+        double height = batman.getPositiveRange().height;
+        for (int j = 0; j < POINTS; j++) {
+            x[j] = rand.nextDouble() * width * 2.0 - width;
+            y[j] = rand.nextDouble() * height * 2.0 - height;
+        }
+    }
+
+    @Benchmark
+    public boolean batmanF() {
+        int j = i++ & (POINTS - 1);
+        return batman.f(x[j], y[j]);
+    }
+
+    @Benchmark
+    public boolean fastBatmanF() {
+        int j = i++ & (POINTS - 1);
+        return fastBatman.f(x[j], y[j]);
+    }
+
+    @Benchmark
+    public boolean compiledBatmanF() {
+        int j = i++ & (POINTS - 1);
+        return compiledBatman.f(x[j], y[j]);
+    }
+
+    @Benchmark
+    public boolean batmanFInside() {
+        return batman.f(0.0, 1.0);
+    }
+
+    @Benchmark
+    public boolean batmanFOutside() {
+        return batman.f(9.0, 4.0);
+    }
+}
@@ -0,0 +1,81 @@
+package com.octo.montecarlo;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of drawing one coordinate with the generators used by the calculators
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomBenchmark {
+
+    /** Formerly used by PiMonteCarlo */
+    private final Random random = new Random();
+
+    /** Used by the calculators by default */
+    private final RandomGenerator l64x128Mix = RandomGeneratorFactory.of("L64X128MixRandom").create();
+
+    private final RandomGenerator xoroshiro128PlusPlus = RandomGeneratorFactory.of("Xoroshiro128PlusPlus").create();
+
+    private final SplittableRandom splittableRandom = new SplittableRandom();
+
+    @Benchmark
+    public double random() {
+        return random.nextDouble();
+    }
+
+    /** Formerly used by BatmanMonteCarlo */
+    @Benchmark
+    public double threadLocalRandom() {
+        return ThreadLocalRandom.current().nextDouble();
+    }
+
+    @Benchmark
+    public double l64x128Mix() {
+        return l64x128Mix.nextDouble();
+    }
+
+    @Benchmark
+    public double xoroshiro128PlusPlus() {
+        return xoroshiro128PlusPlus.nextDouble();
+    }
+
+    @Benchmark
+    public double splittableRandom() {
+        return splittableRandom.nextDouble();
+    }
+
+    /** A whole point, so two coordinates, from a reproducible generator starting a new stream every block */
+    @Benchmark
+    public void randomPointGenerator(PointState state) {
+        state.generator.next(state.u, state.v, state.u.length);
+    }
+
+    @State(Scope.Thread)
+    public static class PointState {
+        final PointGenerator generator = new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 42);
+
+        final double[] u = new double[1];
+
+        final double[] v = new double[1];
+    }
+}
@@ -0,0 +1,149 @@
+package com.octo.montecarlo;
+
+import static java.lang.Math.*;
+import static jdk.incubator.vector.VectorOperators.*;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BatmanMonteCarlo} evaluating the predicate on a full vector of points at once. Each region of
+ * {@link BatmanMonteCarlo#f(double, double)} is computed on all the lanes and the results are merged with masks
+ * instead of returning early. The operations are the same and in the same order as the scalar ones, so are the
+ * decisions.
+ * <p>
+ * Needs <code>--add-modules jdk.incubator.vector</code>
+ */
+public class BatmanVectorMonteCarlo extends BatmanMonteCarlo {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /** Points evaluated at once. A multiple of any lane count */
+    private static final int BUFFER = GENERATOR_BUFFER;
+
+    private static final double WING_BOTTOM = -(3.0 * sqrt(33.0)) / 7.0;
+
+    private static final double TAIL = 1.0 / 112.0 * (3.0 * sqrt(33.0) - 7.0);
+
+    private static final double SHOULDERS = 3.0 / 7.0 * sqrt(10.0);
+
+    private static final double SHOULDERS_TOP = (6.0 * sqrt(10.0)) / 7.0;
+
+    private final double[] xs = new double[BUFFER];
+
+    private final double[] ys = new double[BUFFER];
+
+    private final boolean[] goods = new boolean[BUFFER];
+
+    public BatmanVectorMonteCarlo(int index) {
+        super(index);
+    }
+
+    public BatmanVectorMonteCarlo(int index, MonteCarloListener listener) {
+        super(index, listener);
+    }
+
+    /**
+     * Only in double, the vectors being of doubles
+     */
+    @Override
+    protected ReducedFunction reducedFunction(Precision precision) {
+        return null;
+    }
+
+    @Override
+    public void calculateBatch(long count) {
+        double width = getPositiveRange().width;
+        double height = getPositiveRange().height;
+        long p = this.p;
+        MonteCarloPointListener points = pointListener;
+        for (long done = 0; done < count; done += BUFFER) {
+            int length = (int) min(BUFFER, count - done);
+            // The generator is sequential, only the predicate is vectorized
+            nextPoints(length);
+            for (int i = 0; i < length; i++) {
+                xs[i] = uBuffer[i] * width * 2.0 - width;
+                ys[i] = vBuffer[i] * height * 2.0 - height;
+            }
+            p += count(xs, ys, points == null ? null : goods, length);
+            if (points != null) {
+                points.onPoints(xs, ys, goods, length);
+            }
+        }
+        this.p = p;
+        n += count;
+        listener.onValue(index, p, n);
+    }
+
+    /**
+     * Evaluate the predicate on arrays of points
+     * 
+     * @param good
+     *            receives the result for each point, can be null
+     * @return the number of points in the Batman sign
+     */
+    int count(double[] x, double[] y, boolean[] good, int length) {
+        int p = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            VectorMask<Double> in = f(DoubleVector.fromArray(SPECIES, x, i), DoubleVector.fromArray(SPECIES, y, i));
+            p += in.trueCount();
+            if (good != null) {
+                in.intoArray(good, i);
+            }
+        }
+        // Remaining points, less than a vector
+        for (; i < length; i++) {
+            boolean in = f(x[i], y[i]);
+            if (in) {
+                p++;
+            }
+            if (good != null) {
+                good[i] = in;
+            }
+        }
+        return p;
+    }
+
+    VectorMask<Double> f(DoubleVector x, DoubleVector y) {
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector ax = x.abs();
+        DoubleVector x2 = x.mul(x);
+        VectorMask<Double> negative = y.compare(LE, 0.0);
+        VectorMask<Double> positive = y.compare(GE, 0.0);
+
+        // Wings bottom and top share the ellipse
+        VectorMask<Double> ellipse = x2.div(49.0).add(y.mul(y).div(9.0)).sub(1.0).compare(LE, 0.0)
+                .and(y.compare(GE, WING_BOTTOM));
+        VectorMask<Double> in = ellipse.and(ax.compare(GE, 4.0)).and(negative);
+        in = in.or(ellipse.and(ax.compare(GE, 3.0)).and(positive));
+
+        // Tail
+        DoubleVector t = ax.sub(2.0).abs().sub(1.0);
+        DoubleVector tail = ax.div(2.0).add(one.sub(t.mul(t)).lanewise(SQRT)).sub(x2.mul(TAIL)).sub(y).sub(3.0);
+        in = in.or(y.compare(GE, -3.0).and(negative).and(x.compare(GE, -4.0)).and(x.compare(LE, 4.0))
+                .and(tail.compare(LE, 0.0)));
+
+        // Ears outside
+        in = in.or(positive.and(ax.compare(GE, 3.0 / 4.0)).and(ax.compare(LE, 1.0))
+                .and(ax.mul(-8.0).sub(y).add(9.0).compare(GE, 0.0)));
+
+        // Ears inside
+        in = in.or(ax.compare(GE, 1.0 / 2.0).and(ax.compare(LE, 3.0 / 4.0))
+                .and(ax.mul(3.0).sub(y).add(3.0 / 4.0).compare(GE, 0.0)).and(positive));
+
+        // Chest
+        in = in.or(ax.compare(LE, 1.0 / 2.0).and(positive)
+                .and(DoubleVector.broadcast(SPECIES, 9.0 / 4.0).sub(y).compare(GE, 0.0)));
+
+        // Shoulders
+        DoubleVector s = ax.sub(1.0);
+        DoubleVector shoulders = ax.neg().div(2.0)
+                .sub(DoubleVector.broadcast(SPECIES, 4.0).sub(s.mul(s)).lanewise(SQRT).mul(SHOULDERS)).sub(y)
+                .add(SHOULDERS_TOP).add(3.0 / 2.0);
+        in = in.or(ax.compare(GE, 1.0).and(positive).and(shoulders.compare(GE, 0.0)));
+
+        return in;
+    }
+}
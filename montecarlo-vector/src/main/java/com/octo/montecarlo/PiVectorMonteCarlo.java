@@ -0,0 +1,96 @@
+package com.octo.montecarlo;
+
+import static jdk.incubator.vector.VectorOperators.*;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link PiMonteCarlo} evaluating the circle test on a full vector of points at once.
+ * <p>
+ * Needs <code>--add-modules jdk.incubator.vector</code>
+ */
+public class PiVectorMonteCarlo extends PiMonteCarlo {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /** Points evaluated at once. A multiple of any lane count */
+    private static final int BUFFER = GENERATOR_BUFFER;
+
+    private final double[] xs = new double[BUFFER];
+
+    private final double[] ys = new double[BUFFER];
+
+    private final boolean[] goods = new boolean[BUFFER];
+
+    public PiVectorMonteCarlo(int index) {
+        super(index);
+    }
+
+    public PiVectorMonteCarlo(int index, MonteCarloListener listener) {
+        super(index, listener);
+    }
+
+    /**
+     * Only in double, the vectors being of doubles
+     */
+    @Override
+    protected ReducedFunction reducedFunction(Precision precision) {
+        return null;
+    }
+
+    @Override
+    public void calculateBatch(long count) {
+        long p = this.p;
+        MonteCarloPointListener points = pointListener;
+        for (long done = 0; done < count; done += BUFFER) {
+            int length = (int) Math.min(BUFFER, count - done);
+            // The generator is sequential, only the circle test is vectorized
+            nextPoints(length);
+            for (int i = 0; i < length; i++) {
+                xs[i] = uBuffer[i] * 2.0 - 1.0;
+                ys[i] = vBuffer[i] * 2.0 - 1.0;
+            }
+            p += count(xs, ys, points == null ? null : goods, length);
+            if (points != null) {
+                points.onPoints(xs, ys, goods, length);
+            }
+        }
+        this.p = p;
+        n += count;
+        listener.onValue(index, p, n);
+    }
+
+    /**
+     * Evaluate the circle test on arrays of points
+     * 
+     * @param good
+     *            receives the result for each point, can be null
+     * @return the number of points in the circle
+     */
+    int count(double[] x, double[] y, boolean[] good, int length) {
+        int p = 0;
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            DoubleVector vx = DoubleVector.fromArray(SPECIES, x, i);
+            DoubleVector vy = DoubleVector.fromArray(SPECIES, y, i);
+            VectorMask<Double> in = vx.mul(vx).add(vy.mul(vy)).compare(LE, 1.0);
+            p += in.trueCount();
+            if (good != null) {
+                in.intoArray(good, i);
+            }
+        }
+        // Remaining points, less than a vector
+        for (; i < length; i++) {
+            boolean in = (x[i] * x[i] + y[i] * y[i] <= 1.0);
+            if (in) {
+                p++;
+            }
+            if (good != null) {
+                good[i] = in;
+            }
+        }
+        return p;
+    }
+}
@@ -0,0 +1,126 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BatmanVectorMonteCarloTest {
+
+    private BatmanVectorMonteCarlo b = new BatmanVectorMonteCarlo(0);
+
+    /** Evaluate a single point on the vector path, the other lanes get the same point */
+    private boolean f(double x, double y) {
+        int length = 64;
+        double[] xs = new double[length];
+        double[] ys = new double[length];
+        boolean[] good = new boolean[length];
+        Arrays.fill(xs, x);
+        Arrays.fill(ys, y);
+        int p = b.count(xs, ys, good, length);
+        assertTrue(p == 0 || p == length);
+        return good[0];
+    }
+
+    // Same cases as BatmanMonteCarloTest
+
+    @Test
+    public void testZero() {
+        assertTrue(f(0, 0));
+    }
+
+    @Test
+    public void testTenZero() {
+        assertFalse(f(10, 0));
+    }
+
+    @Test
+    public void testZeroTen() {
+        assertFalse(f(0, 10));
+    }
+
+    @Test
+    public void test4242() {
+        assertFalse(f(4.2, 4.2));
+    }
+
+    @Test
+    public void testRandomPoints() {
+        Random rand = new Random(1);
+        int length = 1_000_003;
+        double[] x = new double[length];
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = rand.nextDouble() * 20.0 - 10.0;
+            y[i] = rand.nextDouble() * 10.0 - 5.0;
+        }
+        assertSameAsScalar(x, y);
+    }
+
+    @Test
+    public void testGridPoints() {
+        // Multiples of 1/64 fall exactly on the region limits (|x| = 1/2, 3/4, 1, 3, 4, y = 0...)
+        int length = 20 * 64 * 10 * 64;
+        double[] x = new double[length];
+        double[] y = new double[length];
+        int k = 0;
+        for (int i = 0; i < 20 * 64; i++) {
+            for (int j = 0; j < 10 * 64; j++) {
+                x[k] = i / 64.0 - 10.0;
+                y[k] = j / 64.0 - 5.0;
+                k++;
+            }
+        }
+        assertSameAsScalar(x, y);
+    }
+
+    private void assertSameAsScalar(double[] x, double[] y) {
+        boolean[] good = new boolean[x.length];
+        int p = b.count(x, y, good, x.length);
+        int expected = 0;
+        for (int i = 0; i < x.length; i++) {
+            boolean in = b.f(x[i], y[i]);
+            assertEquals("(" + x[i] + ", " + y[i] + ")", in, good[i]);
+            if (in) {
+                expected++;
+            }
+        }
+        assertEquals(expected, p);
+    }
+
+    @Test
+    public void testCalculateBatch() {
+        final long[] last = new long[2];
+        b.setListener(new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                last[0] = p;
+                last[1] = n;
+            }
+        });
+        b.calculateBatch(100_001);
+        assertEquals(100_001, last[1]);
+        assertEquals(48.4, b.getFactor() * last[0] / last[1], 1.0);
+    }
+
+    @Test
+    public void testOnlyDouble() {
+        b.setPrecision(Precision.DOUBLE);
+        // The vectors are of doubles, a reduced precision would silently run in double
+        for (Precision precision : new Precision[] { Precision.FLOAT, Precision.FIXED }) {
+            try {
+                b.setPrecision(precision);
+                fail(precision.toString());
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
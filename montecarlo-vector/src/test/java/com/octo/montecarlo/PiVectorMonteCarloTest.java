@@ -0,0 +1,48 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PiVectorMonteCarloTest {
+
+    private PiVectorMonteCarlo pi = new PiVectorMonteCarlo(0);
+
+    @Test
+    public void testRandomPoints() {
+        Random rand = new Random(1);
+        int length = 100_003;
+        double[] x = new double[length];
+        double[] y = new double[length];
+        for (int i = 0; i < length; i++) {
+            x[i] = rand.nextDouble() * 2.0 - 1.0;
+            y[i] = rand.nextDouble() * 2.0 - 1.0;
+        }
+        // Points exactly on the circle
+        x[0] = 1.0;
+        y[0] = 0.0;
+        x[1] = 0.6;
+        y[1] = 0.8;
+        boolean[] good = new boolean[length];
+        pi.count(x, y, good, length);
+        for (int i = 0; i < length; i++) {
+            assertEquals(x[i] * x[i] + y[i] * y[i] <= 1.0, good[i]);
+        }
+    }
+
+    @Test
+    public void testOnlyDouble() {
+        pi.setPrecision(Precision.DOUBLE);
+        // The vectors are of doubles, a reduced precision would silently run in double
+        for (Precision precision : new Precision[] { Precision.FLOAT, Precision.FIXED }) {
+            try {
+                pi.setPrecision(precision);
+                fail(precision.toString());
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
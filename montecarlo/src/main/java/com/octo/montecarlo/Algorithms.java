@@ -0,0 +1,82 @@
+package com.octo.montecarlo;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * Finds the calculator of an algorithm from its name: the class <code>com.octo.montecarlo.&lt;name&gt;MonteCarlo</code>,
+ * or else a {@link Shape} of this name. Names joined by <code>+</code> give a {@link CompositeMonteCarlo} of their
+ * calculators
+ */
+final class Algorithms {
+
+    private Algorithms() {
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if there is no such algorithm
+     */
+    @SuppressWarnings("unchecked")
+    static CalculatorFactory retrieve(String prefix) {
+        if (prefix.indexOf('+') >= 0) {
+            return composite(prefix.split("\\+"));
+        }
+        String algo = Algorithms.class.getPackage().getName() + "." + prefix + "MonteCarlo";
+        Class<MonteCarloCalculator> algoClass;
+        try {
+            algoClass = (Class<MonteCarloCalculator>) Class.forName(algo);
+        } catch (ClassNotFoundException e) {
+            final Shape shape = ShapeMonteCarlo.find(prefix);
+            if (shape == null) {
+                throw new IllegalArgumentException("Algorithm doesn't exist: " + algo + " and there is no shape "
+                        + prefix);
+            }
+            return new CalculatorFactory() {
+                @Override
+                public MonteCarloCalculator create(int index) {
+                    return new ShapeMonteCarlo(index, shape);
+                }
+            };
+        } catch (LinkageError e) {
+            // e.g. the vector algorithms without --add-modules jdk.incubator.vector
+            throw new IllegalArgumentException("Algorithm can't be loaded: " + algo + " (" + e + ")");
+        }
+        final Constructor<MonteCarloCalculator> constructor;
+        try {
+            constructor = algoClass.getConstructor(Integer.TYPE);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Constructor taking 'int' in parameter required for : " + algo);
+        }
+        return new CalculatorFactory() {
+            @Override
+            public MonteCarloCalculator create(int index) {
+                try {
+                    return constructor.newInstance(index);
+                } catch (ReflectiveOperationException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if one of the algorithms doesn't exist
+     */
+    private static CalculatorFactory composite(final String[] names) {
+        final CalculatorFactory[] factories = new CalculatorFactory[names.length];
+        for (int i = 0; i < names.length; i++) {
+            factories[i] = retrieve(names[i]);
+        }
+        return new CalculatorFactory() {
+            @Override
+            public MonteCarloCalculator create(int index) {
+                MonteCarloCalculator[] calculators = new MonteCarloCalculator[factories.length];
+                for (int i = 0; i < factories.length; i++) {
+                    calculators[i] = factories[i].create(index);
+                }
+                return new CompositeMonteCarlo(index, names, calculators);
+            }
+        };
+    }
+}
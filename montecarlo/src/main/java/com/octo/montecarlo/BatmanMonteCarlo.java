@@ -3,8 +3,6 @@ package com.octo.montecarlo;
 import static java.lang.Math.*;
 
 import java.awt.Dimension;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 public class BatmanMonteCarlo extends MonteCarloCalculator {
 
@@ -20,33 +18,44 @@ public class BatmanMonteCarlo extends MonteCarloCalculator {
     // A = 955/48-2/7 (-3 sqrt(10)+2 sqrt(33)+7 pi+3 sqrt(10) pi)+21 cos^(-1)(3/7)+21 cos^(-1)(4/7) = 48.4243
 
     /** Number of performed iterations */
-    private long n = 0;
+    protected long n = 0;
 
     /** Number of "in" iterations */
-    private long p = 0;
-
-    /** Each calculator will run in a given thread. We improve performance by used a ThreadLocalRandom which impose no synchronization */
-    private Random rand = ThreadLocalRandom.current();
+    protected long p = 0;
 
     public BatmanMonteCarlo(int index) {
     	super(index);
+    	setPointGenerator(new RandomPointGenerator());
     }
 
     public BatmanMonteCarlo(int index, MonteCarloListener listener) {
         super(index, listener);
+        setPointGenerator(new RandomPointGenerator());
     }
 
     @Override
     public void calculate() {
         // random position in range
-        double x = rand.nextDouble() * POSITIVE_RANGE.width * 2.0 - POSITIVE_RANGE.width;
-        double y = rand.nextDouble() * POSITIVE_RANGE.height * 2.0 - POSITIVE_RANGE.height;
+        double x;
+        double y;
+        boolean good;
+        if (reduced == null) {
+            nextPoints(1);
+            x = uBuffer[0] * POSITIVE_RANGE.width * 2.0 - POSITIVE_RANGE.width;
+            y = vBuffer[0] * POSITIVE_RANGE.height * 2.0 - POSITIVE_RANGE.height;
+            // Check if we are in the batman sign;
+            good = f(x, y);
+        } else {
+            nextBits(1);
+            x = u(bitsBuffer[0]) * POSITIVE_RANGE.width * 2.0 - POSITIVE_RANGE.width;
+            y = v(bitsBuffer[0]) * POSITIVE_RANGE.height * 2.0 - POSITIVE_RANGE.height;
+            good = reduced.f(bitsBuffer[0]);
+            shadow(1);
+        }
 
         // one more iteration
         n++;
 
-        // Check if we are in the batman sign;
-        boolean good = f(x, y);
         if (good) {
             // in the sign
             p++;
@@ -62,7 +71,54 @@ public class BatmanMonteCarlo extends MonteCarloCalculator {
         listener.onValue(index, p, n);
     }
 
-    boolean f(double x, double y) {
+    @Override
+    public void calculateBatch(long count) {
+        // Counting in locals and telling the listener once is a lot cheaper than two listener calls per point
+        long p = this.p;
+        MonteCarloPointListener points = pointListener;
+        ReducedFunction reduced = this.reduced;
+        int length = 0;
+        for (long done = 0; done < count; done += GENERATOR_BUFFER) {
+            int drawn = (int) min(GENERATOR_BUFFER, count - done);
+            if (reduced == null) {
+                nextPoints(drawn);
+                for (int i = 0; i < drawn; i++) {
+                    double x = uBuffer[i] * POSITIVE_RANGE.width * 2.0 - POSITIVE_RANGE.width;
+                    double y = vBuffer[i] * POSITIVE_RANGE.height * 2.0 - POSITIVE_RANGE.height;
+                    boolean good = f(x, y);
+                    if (good) {
+                        p++;
+                    }
+                    if (points != null) {
+                        length = addPoint(length, x, y, good);
+                    }
+                }
+                continue;
+            }
+            // A single long per point from a pseudo-random generator instead of two doubles
+            nextBits(drawn);
+            for (int i = 0; i < drawn; i++) {
+                boolean good = reduced.f(bitsBuffer[i]);
+                if (good) {
+                    p++;
+                }
+                if (points != null) {
+                    length = addPoint(length, u(bitsBuffer[i]) * POSITIVE_RANGE.width * 2.0 - POSITIVE_RANGE.width,
+                            v(bitsBuffer[i]) * POSITIVE_RANGE.height * 2.0 - POSITIVE_RANGE.height, good);
+                }
+            }
+            shadow(drawn);
+        }
+        if (points != null) {
+            flushPoints(length);
+        }
+        this.p = p;
+        n += count;
+        listener.onValue(index, p, n);
+    }
+
+    @Override
+    public boolean f(double x, double y) {
         // Wings bottom
         if (pow(x, 2.0) / 49.0 + pow(y, 2.0) / 9.0 - 1.0 <= 0 && abs(x) >= 4.0 && -(3.0 * sqrt(33.0)) / 7.0 <= y && y <= 0) {
             return true;
@@ -102,6 +158,73 @@ public class BatmanMonteCarlo extends MonteCarloCalculator {
         return false;
     }
 
+    /**
+     * Float only, the function isn't polynomial
+     */
+    @Override
+    protected ReducedFunction reducedFunction(Precision precision) {
+        if (precision != Precision.FLOAT) {
+            return null;
+        }
+        return new ReducedFunction() {
+            @Override
+            public boolean f(long bits) {
+                // Scaled like the GPU kernel
+                float x = uFloat(bits) * 10.0f * 2.0f - 10.0f;
+                float y = vFloat(bits) * 5.0f * 2.0f - 5.0f;
+                return fFloat(x, y);
+            }
+        };
+    }
+
+    /**
+     * {@link #f(double, double)} in float, the arithmetic of the GPU kernel
+     */
+    static boolean fFloat(float x, float y) {
+        // Wings bottom
+        if (x * x / 49.0f + y * y / 9.0f - 1.0f <= 0 && abs(x) >= 4.0f && -(3.0f * sqrtf(33.0f)) / 7.0f <= y && y <= 0) {
+            return true;
+        }
+        // Wings top
+        if (x * x / 49.0f + y * y / 9.0f - 1.0f <= 0 && abs(x) >= 3.0f && -(3.0f * sqrtf(33.0f)) / 7.0f <= y && y >= 0) {
+            return true;
+        }
+        // Tail
+        if (-3.0f <= y
+                && y <= 0
+                && -4.0f <= x
+                && x <= 4.0f
+                && (abs(x)) / 2.0f + sqrtf(1.0f - (abs(abs(x) - 2.0f) - 1.0f) * (abs(abs(x) - 2.0f) - 1.0f)) - 1.0f
+                        / 112.0f * (3.0f * sqrtf(33.0f) - 7.0f) * (x * x) - y - 3.0f <= 0) {
+            return true;
+        }
+        // Ears outside
+        if (y >= 0 && 3.0f / 4.0f <= abs(x) && abs(x) <= 1.0f && -8.0f * abs(x) - y + 9.0f >= 0) {
+            return true;
+        }
+        // Ears inside
+        if (1.0f / 2.0f <= abs(x) && abs(x) <= 3.0f / 4.0f && 3.0f * abs(x) - y + 3.0f / 4.0f >= 0 && y >= 0) {
+            return true;
+        }
+        // Chest
+        if (abs(x) <= 1.0f / 2.0f && y >= 0 && 9.0f / 4.0f - y >= 0) {
+            return true;
+        }
+        // Shoulders
+        if (abs(x) >= 1.0f
+                && y >= 0
+                && -(abs(x)) / 2.0f - 3.0f / 7.0f * sqrtf(10.0f) * sqrtf(4.0f - (abs(x) - 1.0f) * (abs(x) - 1.0f)) - y
+                        + (6.0f * sqrtf(10.0f)) / 7.0f + 3.0f / 2.0f >= 0) {
+            return true;
+        }
+        return false;
+    }
+
+    /** Square root rounded to a float, like the sqrt of OpenCL */
+    private static float sqrtf(float a) {
+        return (float) sqrt(a);
+    }
+
     @Override
     public Dimension getWindowDimension() {
         return WINDOW_DIMENSION;
@@ -122,4 +245,12 @@ public class BatmanMonteCarlo extends MonteCarloCalculator {
 		return FACTOR;
 	}
 
+    /**
+     * The ellipse of the wings, around the whole Batman
+     */
+    @Override
+    public ControlShape getControl() {
+        return new ControlShape("Ellipse", "x^2/49+y^2/9<=1", 7, 3, 21.0 * PI);
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.octo.montecarlo;
+
+/**
+ * The formula of the comment of {@link BatmanMonteCarlo}, compiled instead of written by hand. The top of the wings has
+ * the parenthesis missing in the original formula, like {@link BatmanMonteCarlo#f(double, double)}.
+ */
+public class BatmanShape extends ExpressionShape {
+
+    static final String FORMULA = "x^2/49+y^2/9-1<=0 and (abs(x)>=4 and -(3 sqrt(33))/7<=y<=0 or abs(x)>=3 and y>=0)"
+            + " or -3<=y<=0 and -4<=x<=4 and (abs(x))/2+sqrt(1-(abs(abs(x)-2)-1)^2)-1/112 (3 sqrt(33)-7) x^2-y-3<=0"
+            + " or y>=0 and 3/4<=abs(x)<=1 and -8 abs(x)-y+9>=0"
+            + " or 1/2<=abs(x)<=3/4 and 3 abs(x)-y+3/4>=0 and y>=0"
+            + " or abs(x)<=1/2 and y>=0 and 9/4-y>=0"
+            + " or abs(x)>=1 and y>=0 and -(abs(x))/2-3/7 sqrt(10) sqrt(4-(abs(x)-1)^2)-y+(6 sqrt(10))/7+3/2>=0";
+
+    public BatmanShape() {
+        super("BatmanFormula", FORMULA, 10, 5);
+    }
+}
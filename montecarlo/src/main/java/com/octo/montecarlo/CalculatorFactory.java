@@ -0,0 +1,13 @@
+package com.octo.montecarlo;
+
+/**
+ * Creates the calculator of each thread
+ */
+interface CalculatorFactory {
+
+    /**
+     * @param index
+     *            slot of the calculator, given back to the listener
+     */
+    MonteCarloCalculator create(int index);
+}
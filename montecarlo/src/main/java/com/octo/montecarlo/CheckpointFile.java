@@ -0,0 +1,454 @@
+package com.octo.montecarlo;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * State of a run in a memory-mapped file, to resume it after a crash, a kill or a timeout.
+ * <p>
+ * Each thread has a slot with its chunk, its position in the chunk and its counts for each replica, written after each
+ * batch. Writing is a few stores in the page cache, so the hot loop never waits for the disk: a killed JVM loses
+ * nothing, {@link #force()} is only needed against a crash of the machine. A slot has two copies written in turn, each
+ * one with a sequence number odd while it's written, so a write cut by a kill leaves the previous copy. The chunks are
+ * claimed one thread at a time by {@link #claim(int, ChunkScheduler, ChunkScheduler.Chunk, long[], long[])}, so every
+ * chunk before the frontier is in a slot or done.
+ * <p>
+ * The header has what is needed to compute the same points again (the algorithm, the sampling, the seed...), the
+ * counts and the holes of the run that was resumed, and the frontier of the chunks given. Since the points of an
+ * iteration only depend on the seed, the iterations left to do are everything that isn't in the done part of a slot,
+ * before the frontier or in a hole marked done.
+ */
+final class CheckpointFile {
+
+    private static final long MAGIC = 0x4d43_4241_544d_414eL; // MCBATMAN
+
+    private static final long VERSION = 1;
+
+    private static final int SEED = 16;
+
+    private static final int REPLICAS = 24;
+
+    private static final int GRID = 32;
+
+    private static final int DEPTH = 40;
+
+    private static final int THREADS = 48;
+
+    private static final int HOLES = 56;
+
+    private static final int FRONTIER = 64;
+
+    /** Ordinal of the {@link Precision}, 0 for double in the files written before it */
+    private static final int PRECISION = 72;
+
+    /** algorithm, type, sampling, rng */
+    private static final int STRINGS = 128;
+
+    private static final int STRING_LENGTH = 64;
+
+    private static final int BASE = STRINGS + 4 * STRING_LENGTH;
+
+    /** A copy of a slot is a multiple of this number of longs (128 bytes) so the threads don't share cache lines */
+    private static final int PADDING = 16;
+
+    /** Fields of a copy of a slot, before the counts */
+    private static final int SEQUENCE = 0;
+
+    private static final int START = 1;
+
+    private static final int END = 2;
+
+    private static final int POSITION = 3;
+
+    private static final int COUNTS = 4;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+
+    /** What is needed to compute the same points */
+    static final class Run {
+        String algorithm;
+
+        String type;
+
+        String sampling;
+
+        String rng;
+
+        long seed;
+
+        int replicas;
+
+        int grid;
+
+        int depth;
+
+        Precision precision = Precision.DOUBLE;
+    }
+
+    /** What a resumed run starts from */
+    static final class State {
+        Run run;
+
+        /** Counts of each replica */
+        long[] p;
+
+        long[] n;
+
+        /** Start and end of each range of iterations left, sorted, the last one possibly going to Long.MAX_VALUE */
+        long[] remaining;
+
+        /**
+         * @return the start of the last range, the one going to Long.MAX_VALUE
+         */
+        long frontier() {
+            return remaining[remaining.length - 2];
+        }
+
+        /**
+         * @return start and end of the other ranges, cut at the number of iterations of the run: the ones before come
+         *         first, the ones after are only kept for a later run with more iterations
+         */
+        long[] holes(long total) {
+            List<Long> holes = new ArrayList<>();
+            for (int i = 0; i < remaining.length - 2; i += 2) {
+                if (remaining[i] < total && total < remaining[i + 1]) {
+                    holes.add(remaining[i]);
+                    holes.add(total);
+                    holes.add(total);
+                } else {
+                    holes.add(remaining[i]);
+                }
+                holes.add(remaining[i + 1]);
+            }
+            long[] result = new long[holes.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = holes.get(i);
+            }
+            return result;
+        }
+    }
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final int replicas;
+
+    /** Offset of the holes: start, end and done for each one */
+    private final int holesOffset;
+
+    private final int slotsOffset;
+
+    /** Longs of a copy of a slot */
+    private final int copyLength;
+
+    /** Number of writes of each slot. Only read and written by the owner of the slot */
+    private final long[] writes;
+
+    private CheckpointFile(FileChannel channel, int replicas, int threads, int holes) throws IOException {
+        this.channel = channel;
+        this.replicas = replicas;
+        this.holesOffset = BASE + 16 * replicas;
+        this.copyLength = (COUNTS + 2 * replicas + PADDING - 1) / PADDING * PADDING;
+        int end = holesOffset + 24 * holes;
+        this.slotsOffset = (end + 8 * PADDING - 1) / (8 * PADDING) * (8 * PADDING);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotsOffset + 16L * copyLength * threads);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.writes = new long[threads];
+    }
+
+    /**
+     * Create the file of a new run, or of a resumed one, replacing the previous file only once the new one is complete
+     *
+     * @param threads
+     *            number of threads writing a slot
+     * @param p
+     *            counts of each replica before this run
+     * @param frontier
+     *            first iteration of the frontier
+     * @param holes
+     *            start and end of each range left before the frontier
+     */
+    static CheckpointFile create(Path path, Run run, int threads, long[] p, long[] n, long frontier, long[] holes)
+            throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            CheckpointFile file = new CheckpointFile(channel, run.replicas, threads, holes.length / 2);
+            ByteBuffer b = file.buffer;
+            b.putLong(0, MAGIC);
+            b.putLong(8, VERSION);
+            b.putLong(SEED, run.seed);
+            b.putLong(REPLICAS, run.replicas);
+            b.putLong(GRID, run.grid);
+            b.putLong(DEPTH, run.depth);
+            b.putLong(THREADS, threads);
+            b.putLong(HOLES, holes.length / 2);
+            b.putLong(FRONTIER, frontier);
+            b.putLong(PRECISION, run.precision.ordinal());
+            String[] strings = { run.algorithm, run.type, run.sampling, run.rng };
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = strings[i].getBytes(StandardCharsets.UTF_8);
+                if (bytes.length >= STRING_LENGTH) {
+                    throw new IllegalArgumentException("Too long for a checkpoint: " + strings[i]);
+                }
+                b.put(STRINGS + i * STRING_LENGTH, (byte) bytes.length);
+                b.put(STRINGS + i * STRING_LENGTH + 1, bytes);
+            }
+            for (int r = 0; r < run.replicas; r++) {
+                b.putLong(BASE + 8 * r, p[r]);
+                b.putLong(BASE + 8 * (run.replicas + r), n[r]);
+            }
+            for (int i = 0; i < holes.length / 2; i++) {
+                b.putLong(file.holesOffset + 24 * i, holes[2 * i]);
+                b.putLong(file.holesOffset + 24 * i + 8, holes[2 * i + 1]);
+            }
+            file.buffer.force();
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new CheckpointFile(channel, run.replicas, threads, holes.length / 2);
+    }
+
+    /**
+     * Read the last consistent state of a run
+     */
+    static State read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(BASE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            if (header.getLong(0) != MAGIC || header.getLong(8) != VERSION) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            int replicas = (int) header.getLong(REPLICAS);
+            int threads = (int) header.getLong(THREADS);
+            int holes = (int) header.getLong(HOLES);
+            CheckpointFile file = new CheckpointFile(channel, replicas, threads, holes);
+            ByteBuffer b = file.buffer;
+
+            State state = new State();
+            Run run = new Run();
+            String[] strings = new String[4];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[b.get(STRINGS + i * STRING_LENGTH)];
+                b.get(STRINGS + i * STRING_LENGTH + 1, bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            run.algorithm = strings[0];
+            run.type = strings[1];
+            run.sampling = strings[2];
+            run.rng = strings[3];
+            run.seed = b.getLong(SEED);
+            run.replicas = replicas;
+            run.grid = (int) b.getLong(GRID);
+            run.depth = (int) b.getLong(DEPTH);
+            run.precision = Precision.values()[(int) b.getLong(PRECISION)];
+            state.run = run;
+
+            state.p = new long[replicas];
+            state.n = new long[replicas];
+            for (int r = 0; r < replicas; r++) {
+                state.p[r] = b.getLong(BASE + 8 * r);
+                state.n[r] = b.getLong(BASE + 8 * (replicas + r));
+            }
+            // What is left: the frontier, the holes not done and the rest of the chunk of each slot...
+            List<long[]> left = new ArrayList<>();
+            left.add(new long[] { (long) LONGS.getVolatile(b, FRONTIER), Long.MAX_VALUE });
+            for (int i = 0; i < holes; i++) {
+                if (b.getLong(file.holesOffset + 24 * i + 16) == 0) {
+                    left.add(new long[] { b.getLong(file.holesOffset + 24 * i), b.getLong(file.holesOffset + 24 * i + 8) });
+                }
+            }
+            // ...but not what the slots did: a thread may have written its slot but not yet moved the frontier
+            List<long[]> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int copy = file.lastCopy(t);
+                if (copy < 0) {
+                    continue;
+                }
+                long start = b.getLong(copy + 8 * START);
+                long end = b.getLong(copy + 8 * END);
+                long position = b.getLong(copy + 8 * POSITION);
+                for (int r = 0; r < replicas; r++) {
+                    state.p[r] += b.getLong(copy + 8 * (COUNTS + r));
+                    state.n[r] += b.getLong(copy + 8 * (COUNTS + replicas + r));
+                }
+                left.add(new long[] { position, end });
+                done.add(new long[] { start, position });
+            }
+            state.remaining = subtract(union(left), done);
+            return state;
+        }
+    }
+
+    /**
+     * @return offset of the last copy of a slot completely written, -1 if the slot was never written
+     */
+    private int lastCopy(int thread) {
+        int best = -1;
+        long bestSequence = 0;
+        for (int c = 0; c < 2; c++) {
+            int copy = slotsOffset + 8 * copyLength * (2 * thread + c);
+            long sequence = buffer.getLong(copy + 8 * SEQUENCE);
+            if (sequence != 0 && (sequence & 1) == 0 && sequence > bestSequence) {
+                best = copy;
+                bestSequence = sequence;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Write the state of a thread. Only the owner of the slot may call it
+     *
+     * @param position
+     *            first iteration of the chunk not done yet
+     * @param p
+     *            counts of each replica of the thread since the start of this run
+     */
+    void write(int thread, ChunkScheduler.Chunk chunk, long position, long[] p, long[] n) {
+        long sequence = 2 * writes[thread] + 1;
+        writes[thread]++;
+        // The copies are written in turn so the other one is always complete
+        int copy = slotsOffset + 8 * copyLength * (2 * thread + (int) (writes[thread] & 1));
+        LONGS.setOpaque(buffer, copy + 8 * SEQUENCE, sequence);
+        VarHandle.storeStoreFence();
+        buffer.putLong(copy + 8 * START, chunk.start);
+        buffer.putLong(copy + 8 * END, chunk.end);
+        buffer.putLong(copy + 8 * POSITION, position);
+        for (int r = 0; r < replicas; r++) {
+            buffer.putLong(copy + 8 * (COUNTS + r), p[r]);
+            buffer.putLong(copy + 8 * (COUNTS + replicas + r), n[r]);
+        }
+        LONGS.setRelease(buffer, copy + 8 * SEQUENCE, sequence + 1);
+    }
+
+    /**
+     * Claim the next chunk for a thread, write it in the slot of the thread and move the frontier after it. No other
+     * thread claims in between: otherwise a later chunk could move the frontier while an earlier one is claimed but not
+     * in a slot yet, and a kill would leave it before the frontier as if it was done
+     *
+     * @param p
+     *            counts of each replica of the thread since the start of this run, as last written
+     * @return false if nothing remains
+     */
+    synchronized boolean claim(int thread, ChunkScheduler scheduler, ChunkScheduler.Chunk chunk, long[] p, long[] n) {
+        if (!scheduler.claim(chunk)) {
+            return false;
+        }
+        // The slot says the chunk is ours before the frontier moves after it
+        write(thread, chunk, chunk.start, p, n);
+        claimed(chunk);
+        return true;
+    }
+
+    /**
+     * Called after the slot of the thread has the new chunk: the frontier moves after it, or the hole is marked done
+     * once the chunk is finished
+     */
+    void claimed(ChunkScheduler.Chunk chunk) {
+        if (chunk.hole >= 0) {
+            return;
+        }
+        while (true) {
+            long frontier = (long) LONGS.getVolatile(buffer, FRONTIER);
+            if (frontier >= chunk.end || LONGS.compareAndSet(buffer, FRONTIER, frontier, chunk.end)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called when a hole is done, after the slot of the thread says so
+     */
+    void finished(ChunkScheduler.Chunk chunk) {
+        if (chunk.hole >= 0) {
+            LONGS.setRelease(buffer, holesOffset + 24 * chunk.hole + 16, 1L);
+        }
+    }
+
+    /**
+     * Write the pages to the disk, to survive a crash of the machine
+     */
+    void force() {
+        buffer.force();
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * @return sorted disjoint ranges covering the given ones
+     */
+    static List<long[]> union(List<long[]> ranges) {
+        List<long[]> sorted = new ArrayList<>();
+        for (long[] range : ranges) {
+            if (range[0] < range[1]) {
+                sorted.add(range.clone());
+            }
+        }
+        Collections.sort(sorted, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        List<long[]> union = new ArrayList<>();
+        for (long[] range : sorted) {
+            long[] last = union.isEmpty() ? null : union.get(union.size() - 1);
+            if (last != null && range[0] <= last[1]) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                union.add(range);
+            }
+        }
+        return union;
+    }
+
+    /**
+     * @return start and end of each part of the sorted disjoint ranges not in the removed ones
+     */
+    static long[] subtract(List<long[]> ranges, List<long[]> removed) {
+        List<long[]> left = ranges;
+        for (long[] cut : removed) {
+            List<long[]> next = new ArrayList<>();
+            for (long[] range : left) {
+                if (cut[1] <= range[0] || cut[0] >= range[1] || cut[0] >= cut[1]) {
+                    next.add(range);
+                    continue;
+                }
+                if (range[0] < cut[0]) {
+                    next.add(new long[] { range[0], cut[0] });
+                }
+                if (cut[1] < range[1]) {
+                    next.add(new long[] { cut[1], range[1] });
+                }
+            }
+            left = next;
+        }
+        long[] result = new long[2 * left.size()];
+        for (int i = 0; i < left.size(); i++) {
+            result[2 * i] = left.get(i)[0];
+            result[2 * i + 1] = left.get(i)[1];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,137 @@
+package com.octo.montecarlo;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the iterations to the threads by chunks (guided self-scheduling). Each claim takes a share of what remains,
+ * so the chunks are big at the beginning and get smaller near the end. A slow thread only holds back the end of the
+ * run by its last small chunk, the others take what it didn't claim.
+ * <p>
+ * The chunks are multiples of the minimum chunk, except the last one, so any number of iterations can be shared.
+ * <p>
+ * A resumed run starts further than 0 and may also have holes before its start, the iterations a stopped thread didn't
+ * do. The holes are given first, as they are.
+ */
+final class ChunkScheduler {
+
+    /** A range of iterations claimed by a thread */
+    static final class Chunk {
+        /** First iteration of the chunk */
+        long start;
+
+        /** Iteration after the last one of the chunk */
+        long end;
+
+        /** Index of the hole given as the chunk, -1 for a chunk of the frontier */
+        int hole = -1;
+
+        long size() {
+            return end - start;
+        }
+    }
+
+    /** Each claim takes 1 / (GUIDE * threads) of what remains */
+    private static final int GUIDE = 2;
+
+    private final long total;
+
+    private final long minChunk;
+
+    private final int threads;
+
+    private final AtomicLong next;
+
+    /** Start and end of each hole */
+    private final long[] holes;
+
+    /** Number of holes before the total, the first ones */
+    private final int holeCount;
+
+    private final AtomicInteger nextHole = new AtomicInteger();
+
+    private volatile boolean stopped;
+
+    /**
+     * @param total
+     *            number of iterations to share
+     * @param threads
+     *            number of threads claiming chunks
+     * @param minChunk
+     *            size under which the chunks are not split anymore
+     */
+    ChunkScheduler(long total, int threads, long minChunk) {
+        this(total, threads, minChunk, 0, new long[0]);
+    }
+
+    /**
+     * @param start
+     *            first iteration of the frontier, everything before it is done or in the holes
+     * @param holes
+     *            start and end of each range of iterations before the start to give, sorted. The ones after the total
+     *            are left
+     */
+    ChunkScheduler(long total, int threads, long minChunk, long start, long[] holes) {
+        this.total = total;
+        this.threads = threads;
+        this.minChunk = minChunk;
+        this.next = new AtomicLong(start);
+        this.holes = holes;
+        int count = 0;
+        while (count < holes.length / 2 && holes[2 * count + 1] <= total) {
+            count++;
+        }
+        this.holeCount = count;
+    }
+
+    /**
+     * Claim the next chunk
+     * 
+     * @param chunk
+     *            filled with the claimed range
+     * @return false if nothing remains
+     */
+    boolean claim(Chunk chunk) {
+        if (nextHole.get() < holeCount && !stopped) {
+            int hole = nextHole.getAndIncrement();
+            if (hole < holeCount) {
+                chunk.start = holes[2 * hole];
+                chunk.end = holes[2 * hole + 1];
+                chunk.hole = hole;
+                return true;
+            }
+        }
+        chunk.hole = -1;
+        while (true) {
+            long start = next.get();
+            long remaining = total - start;
+            if (remaining <= 0) {
+                return false;
+            }
+            long size = remaining / (GUIDE * threads);
+            size = Math.max(minChunk, size - size % minChunk);
+            size = Math.min(size, remaining);
+            if (next.compareAndSet(start, start + size)) {
+                chunk.start = start;
+                chunk.end = start + size;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Stop giving chunks. The threads should also check {@link #isStopped()} to leave the chunk they are working on
+     */
+    void stop() {
+        stopped = true;
+        next.set(total);
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    long getTotal() {
+        return total;
+    }
+}
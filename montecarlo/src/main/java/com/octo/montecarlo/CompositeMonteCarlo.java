@@ -0,0 +1,174 @@
+package com.octo.montecarlo;
+
+import static java.lang.Math.*;
+
+import java.awt.Dimension;
+
+/**
+ * Several calculators evaluated on the same points. Each point is drawn once in a domain covering all the
+ * calculators, then given to the function of each one, which has its own count. The generator and the loop are paid
+ * once instead of once per calculator.
+ * <p>
+ * The estimates share their points, so they are correlated: the error of the difference between two of them only
+ * comes from the points where they disagree, which is much less than for two independent runs. The number of these
+ * points is counted for each calculator against the first one.
+ * <p>
+ * The first calculator is the main one: its function is {@link #f(double, double)}, and its count is the one given to
+ * a listener that isn't a {@link MonteCarloMultiListener}.
+ */
+public class CompositeMonteCarlo extends MonteCarloCalculator {
+
+    private final MonteCarloCalculator[] calculators;
+
+    private final String[] names;
+
+    private final Dimension positiveRange;
+
+    /** The calculator giving the window, the one with the largest range */
+    private final MonteCarloCalculator window;
+
+    private final double factor;
+
+    /** Number of performed iterations */
+    protected long n = 0;
+
+    /** Number of "in" iterations of each calculator */
+    protected final long[] p;
+
+    /** Number of iterations where each calculator and the first one disagree */
+    protected final long[] d;
+
+    /**
+     * @param names
+     *            of the calculators, to be displayed
+     * @param calculators
+     *            only their functions and ranges are used
+     * @throws IllegalArgumentException
+     *             if a calculator has an offset, its estimate not being the area of its function
+     */
+    public CompositeMonteCarlo(int index, String[] names, MonteCarloCalculator[] calculators) {
+        super(index);
+        this.names = names;
+        this.calculators = calculators;
+        int width = 0, height = 0;
+        MonteCarloCalculator window = calculators[0];
+        for (MonteCarloCalculator calculator : calculators) {
+            if (calculator.getOffset() != 0) {
+                throw new IllegalArgumentException("Can't combine " + calculator.getClass().getSimpleName());
+            }
+            width = max(width, calculator.getPositiveRange().width);
+            height = max(height, calculator.getPositiveRange().height);
+            Dimension range = calculator.getPositiveRange();
+            if (range.width * range.height > window.getPositiveRange().width * window.getPositiveRange().height) {
+                window = calculator;
+            }
+        }
+        this.positiveRange = new Dimension(width, height);
+        this.window = window;
+        this.factor = 4.0 * width * height;
+        this.p = new long[calculators.length];
+        this.d = new long[calculators.length];
+        setPointGenerator(new RandomPointGenerator());
+    }
+
+    public String[] getNames() {
+        return names;
+    }
+
+    @Override
+    public void calculate() {
+        nextPoints(1);
+        double x = uBuffer[0] * positiveRange.width * 2.0 - positiveRange.width;
+        double y = vBuffer[0] * positiveRange.height * 2.0 - positiveRange.height;
+        n++;
+        boolean good = count(x, y);
+        listener.onPoint(x, y, good);
+        publish();
+    }
+
+    @Override
+    public void calculateBatch(long count) {
+        MonteCarloPointListener points = pointListener;
+        double width = positiveRange.width;
+        double height = positiveRange.height;
+        int length = 0;
+        for (long done = 0; done < count; done += GENERATOR_BUFFER) {
+            int drawn = (int) min(GENERATOR_BUFFER, count - done);
+            nextPoints(drawn);
+            for (int i = 0; i < drawn; i++) {
+                double x = uBuffer[i] * width * 2.0 - width;
+                double y = vBuffer[i] * height * 2.0 - height;
+                boolean good = count(x, y);
+                if (points != null) {
+                    length = addPoint(length, x, y, good);
+                }
+            }
+        }
+        if (points != null) {
+            flushPoints(length);
+        }
+        n += count;
+        publish();
+    }
+
+    /**
+     * Count a point for all the calculators
+     * 
+     * @return if the point is in the first one
+     */
+    private boolean count(double x, double y) {
+        boolean first = calculators[0].f(x, y);
+        if (first) {
+            p[0]++;
+        }
+        for (int k = 1; k < calculators.length; k++) {
+            boolean good = calculators[k].f(x, y);
+            if (good) {
+                p[k]++;
+            }
+            if (good != first) {
+                d[k]++;
+            }
+        }
+        return first;
+    }
+
+    private void publish() {
+        if (listener instanceof MonteCarloMultiListener) {
+            ((MonteCarloMultiListener) listener).onValues(index, p, d, n);
+        } else {
+            listener.onValue(index, p[0], n);
+        }
+    }
+
+    /**
+     * The function of the first calculator
+     */
+    @Override
+    public boolean f(double x, double y) {
+        return calculators[0].f(x, y);
+    }
+
+    @Override
+    public Dimension getWindowDimension() {
+        return window.getWindowDimension();
+    }
+
+    @Override
+    public Dimension getPositionOffset() {
+        return window.getPositionOffset();
+    }
+
+    @Override
+    public Dimension getPositiveRange() {
+        return positiveRange;
+    }
+
+    /**
+     * The same for all the calculators, the area of the domain
+     */
+    @Override
+    public double getFactor() {
+        return factor;
+    }
+}
@@ -1,40 +1,554 @@
 package com.octo.montecarlo;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * Contention of the aggregation of {@link MonteCarloCmd} with several designs. Each thread publishes its counts as
+ * fast as it can, like a calculator at each checkpoint, while another thread takes a snapshot of all the counts at a
+ * fixed interval, like the feedback and the convergence check. For each design and number of threads, it prints the
+ * publishes per second and the latency of the snapshots.
+ * <p>
+ * <code>Contention [--duration ms] [--threads 1,2,4] [--strategies synchronized,lock,...] [--snapshot-us us]
+ * [--work iterations]</code>
+ */
 public class Contention {
 
-    public static void main(String[] args) {
-        final Object o = new Object();
-        final Set<String> set = Collections.synchronizedSet(new HashSet<String>());
-        
-        ExecutorService threadExecutor = Executors.newFixedThreadPool(10);
-        Runnable r = new Runnable() {
+    /** Counts of one publish, like a checkpoint of a Batman calculator */
+    private static final long BATCH = 1_000;
+
+    private static final long IN = 242;
+
+    /** The counts of the threads, published by each thread and read together by another one */
+    interface Aggregation {
+
+        /**
+         * Publish the counts of a thread. Only this thread calls it with this index
+         */
+        void update(int index, long p, long n);
+
+        /**
+         * @return the counts of all the threads
+         */
+        Step snapshot();
+
+        /**
+         * @return number of times an update or a snapshot had to be done again
+         */
+        long retries();
+    }
+
+    enum Strategy {
+
+        /** Arrays guarded by the monitor of the aggregation */
+        SYNCHRONIZED {
             @Override
-            public void run() {
-                long now = System.currentTimeMillis();
-                while(System.currentTimeMillis() < now + 60_000) {
-                    synchronized (o) {
-                        set.add("" + System.currentTimeMillis());
-                        try {
-                            Thread.sleep(10);
-                        } catch(InterruptedException e) {
-                            throw new RuntimeException(e);
+            Aggregation create(int threads) {
+                return new Synchronized(threads);
+            }
+        },
+
+        /** Arrays guarded by a {@link ReentrantLock} */
+        LOCK {
+            @Override
+            Aggregation create(int threads) {
+                return new Locked(threads);
+            }
+        },
+
+        /** Arrays guarded by a {@link StampedLock}, the snapshots trying an optimistic read first */
+        STAMPED {
+            @Override
+            Aggregation create(int threads) {
+                return new Stamped(threads);
+            }
+        },
+
+        /** An immutable {@link Step} copied at each update and swapped by CAS, the original design */
+        COW {
+            @Override
+            Aggregation create(int threads) {
+                return new CopyOnWrite(threads);
+            }
+        },
+
+        /** Two {@link LongAdder}s of the whole run, the threads adding what they did since their last publish */
+        ADDER {
+            @Override
+            Aggregation create(int threads) {
+                return new Adder(threads);
+            }
+        },
+
+        /** A padded slot per thread with a seqlock, the {@link StepAggregator} of MonteCarloCmd */
+        PADDED {
+            @Override
+            Aggregation create(int threads) {
+                final StepAggregator aggregator = new StepAggregator(threads);
+                return new Aggregation() {
+                    @Override
+                    public void update(int index, long p, long n) {
+                        aggregator.update(index, p, n);
+                    }
+
+                    @Override
+                    public Step snapshot() {
+                        return aggregator.snapshot();
+                    }
+
+                    @Override
+                    public long retries() {
+                        return aggregator.retries();
+                    }
+                };
+            }
+        };
+
+        abstract Aggregation create(int threads);
+
+        /**
+         * @throws IllegalArgumentException
+         *             if the strategy is unknown
+         */
+        static Strategy of(String name) {
+            try {
+                return valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown strategy " + name
+                        + ". Should be synchronized, lock, stamped, cow, adder or padded");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    private static final class Synchronized implements Aggregation {
+
+        private final long[] p;
+
+        private final long[] n;
+
+        Synchronized(int threads) {
+            p = new long[threads];
+            n = new long[threads];
+        }
+
+        @Override
+        public synchronized void update(int index, long p, long n) {
+            this.p[index] = p;
+            this.n[index] = n;
+        }
+
+        @Override
+        public synchronized Step snapshot() {
+            return new Step(p.clone(), n.clone());
+        }
+
+        @Override
+        public long retries() {
+            return 0;
+        }
+    }
+
+    private static final class Locked implements Aggregation {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final long[] p;
+
+        private final long[] n;
+
+        Locked(int threads) {
+            p = new long[threads];
+            n = new long[threads];
+        }
+
+        @Override
+        public void update(int index, long p, long n) {
+            lock.lock();
+            try {
+                this.p[index] = p;
+                this.n[index] = n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Step snapshot() {
+            lock.lock();
+            try {
+                return new Step(p.clone(), n.clone());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public long retries() {
+            return 0;
+        }
+    }
+
+    private static final class Stamped implements Aggregation {
+
+        private final StampedLock lock = new StampedLock();
+
+        private final long[] p;
+
+        private final long[] n;
+
+        /** Optimistic reads that failed, only written by the snapshot thread */
+        private volatile long retries;
+
+        Stamped(int threads) {
+            p = new long[threads];
+            n = new long[threads];
+        }
+
+        @Override
+        public void update(int index, long p, long n) {
+            long stamp = lock.writeLock();
+            try {
+                this.p[index] = p;
+                this.n[index] = n;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        @Override
+        public Step snapshot() {
+            long stamp = lock.tryOptimisticRead();
+            long[] pList = p.clone();
+            long[] nList = n.clone();
+            if (lock.validate(stamp)) {
+                return new Step(pList, nList);
+            }
+            retries++;
+            stamp = lock.readLock();
+            try {
+                return new Step(p.clone(), n.clone());
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public long retries() {
+            return retries;
+        }
+    }
+
+    private static final class CopyOnWrite implements Aggregation {
+
+        private final AtomicReference<Step> step;
+
+        /** Failed CAS, only counted on failure so it doesn't add contention */
+        private final LongAdder retries = new LongAdder();
+
+        CopyOnWrite(int threads) {
+            step = new AtomicReference<Step>(new Step(threads));
+        }
+
+        @Override
+        public void update(int index, long p, long n) {
+            while (true) {
+                Step s = step.get();
+                if (step.compareAndSet(s, s.update(index, p, n))) {
+                    return;
+                }
+                retries.increment();
+            }
+        }
+
+        @Override
+        public Step snapshot() {
+            return step.get();
+        }
+
+        @Override
+        public long retries() {
+            return retries.sum();
+        }
+    }
+
+    private static final class Adder implements Aggregation {
+
+        private final LongAdder p = new LongAdder();
+
+        private final LongAdder n = new LongAdder();
+
+        /** Counts of the last publish of each thread, each one only used by its thread */
+        private final long[] lastP;
+
+        private final long[] lastN;
+
+        Adder(int threads) {
+            // A slot every 16 longs, so the threads don't share a cache line
+            lastP = new long[(threads + 1) * 16];
+            lastN = new long[(threads + 1) * 16];
+        }
+
+        @Override
+        public void update(int index, long p, long n) {
+            int slot = (index + 1) * 16;
+            this.p.add(p - lastP[slot]);
+            this.n.add(n - lastN[slot]);
+            lastP[slot] = p;
+            lastN[slot] = n;
+        }
+
+        /**
+         * The totals only. p and n are summed one after the other, so they may not be of the same publishes
+         */
+        @Override
+        public Step snapshot() {
+            return new Step(new long[] { p.sum() }, new long[] { n.sum() });
+        }
+
+        @Override
+        public long retries() {
+            return 0;
+        }
+    }
+
+    /** Measures of a strategy with a number of threads */
+    static final class Result {
+        Strategy strategy;
+
+        int threads;
+
+        /** Publishes of all the threads */
+        long updates;
+
+        double seconds;
+
+        /** Latencies of the snapshots in ns, sorted */
+        long[] snapshots;
+
+        long retries;
+
+        /** If the last snapshot has all the publishes */
+        boolean consistent;
+
+        double throughput() {
+            return updates / seconds;
+        }
+
+        /**
+         * @return latency of a snapshot in ns at this quantile, NaN without snapshot
+         */
+        double latency(double quantile) {
+            if (snapshots.length == 0) {
+                return Double.NaN;
+            }
+            return snapshots[(int) Math.min(snapshots.length - 1, Math.floor(quantile * snapshots.length))];
+        }
+
+        double meanLatency() {
+            double sum = 0;
+            for (long latency : snapshots) {
+                sum += latency;
+            }
+            return sum / snapshots.length;
+        }
+    }
+
+    /**
+     * Run the threads publishing and the thread taking snapshots
+     * 
+     * @param duration
+     *            in ms
+     * @param snapshotInterval
+     *            pause between two snapshots in ns
+     * @param work
+     *            iterations of a dummy calculation between two publishes, 0 to only publish
+     */
+    static Result run(Strategy strategy, final int threads, long duration, final long snapshotInterval,
+            final int work) throws InterruptedException {
+        final Aggregation aggregation = strategy.create(threads);
+        final long[] updates = new long[threads];
+        final long[] n = new long[threads];
+        final CountDownLatch ready = new CountDownLatch(threads + 1);
+        final CountDownLatch go = new CountDownLatch(1);
+        final List<long[]> latencies = new ArrayList<long[]>();
+        // The result of the dummy calculation, so it is not removed
+        final long[] sinks = new long[threads];
+
+        // The volatile flag of the threads is read at each publish, the same for all the strategies
+        final Stop flag = new Stop();
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int index = t;
+            workers[t] = new Thread("publisher " + t) {
+                @Override
+                public void run() {
+                    ready.countDown();
+                    await(go);
+                    long count = 0, p = 0, total = 0, dummy = 0;
+                    while (!flag.stopped) {
+                        for (int i = 0; i < work; i++) {
+                            dummy = dummy * 6364136223846793005L + 1442695040888963407L;
                         }
+                        total += BATCH;
+                        p += IN;
+                        aggregation.update(index, p, total);
+                        count++;
                     }
+                    updates[index] = count;
+                    n[index] = total;
+                    sinks[index] = dummy;
                 }
+            };
+            workers[t].start();
+        }
+        Thread reader = new Thread("snapshots") {
+            @Override
+            public void run() {
+                ready.countDown();
+                await(go);
+                long[] buffer = new long[1_024];
+                int length = 0;
+                while (!flag.stopped) {
+                    long start = System.nanoTime();
+                    aggregation.snapshot();
+                    long end = System.nanoTime();
+                    if (length == buffer.length) {
+                        latencies.add(buffer);
+                        buffer = new long[buffer.length];
+                        length = 0;
+                    }
+                    buffer[length++] = end - start;
+                    LockSupport.parkNanos(snapshotInterval);
+                }
+                latencies.add(Arrays.copyOf(buffer, length));
             }
         };
-        
-        for(int i = 0; i < 10; i++) {
-            threadExecutor.execute(r);
+        reader.start();
+
+        ready.await();
+        long start = System.nanoTime();
+        go.countDown();
+        Thread.sleep(duration);
+        flag.stopped = true;
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long end = System.nanoTime();
+        reader.join();
+
+        Result result = new Result();
+        result.strategy = strategy;
+        result.threads = threads;
+        result.seconds = (end - start) / 1e9;
+        long total = 0;
+        for (int t = 0; t < threads; t++) {
+            result.updates += updates[t];
+            total += n[t];
+        }
+        int count = 0;
+        for (long[] buffer : latencies) {
+            count += buffer.length;
+        }
+        result.snapshots = new long[count];
+        count = 0;
+        for (long[] buffer : latencies) {
+            System.arraycopy(buffer, 0, result.snapshots, count, buffer.length);
+            count += buffer.length;
+        }
+        Arrays.sort(result.snapshots);
+        result.retries = aggregation.retries();
+        result.consistent = aggregation.snapshot().loops() == total;
+        return result;
+    }
+
+    private static final class Stop {
+        volatile boolean stopped;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long duration = 2_000;
+        long snapshotMicros = 1_000;
+        int work = 0;
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> threads = new ArrayList<Integer>();
+        for (int t = 1; t <= 2 * processors; t *= 2) {
+            threads.add(t);
+        }
+        List<Strategy> strategies = new ArrayList<Strategy>(Arrays.asList(Strategy.values()));
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                if (!args[i].startsWith("--") || i + 1 == args.length) {
+                    throw new IllegalArgumentException("Invalid option: " + args[i]);
+                }
+                String value = args[i + 1];
+                switch (args[i].substring(2)) {
+                case "duration":
+                    duration = Long.parseLong(value);
+                    break;
+                case "snapshot-us":
+                    snapshotMicros = Long.parseLong(value);
+                    break;
+                case "work":
+                    work = Integer.parseInt(value);
+                    break;
+                case "threads":
+                    threads.clear();
+                    for (String t : value.split(",")) {
+                        threads.add(Integer.parseInt(t));
+                    }
+                    break;
+                case "strategies":
+                    strategies.clear();
+                    for (String s : value.split(",")) {
+                        strategies.add(Strategy.of(s));
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.printf("%s%n%nUsage: Contention [--duration ms] [--threads 1,2,4] [--strategies"
+                    + " synchronized,lock,stamped,cow,adder,padded] [--snapshot-us us] [--work iterations]%n",
+                    e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        System.out.printf("%d processors, %d ms per run after a warmup, a snapshot every %d us, %d iterations of work"
+                + " per publish%n%n", processors, duration, snapshotMicros, work);
+        System.out.printf("%-13s %7s %14s %14s %9s %10s %10s %10s %10s %s%n", "strategy", "threads", "publishes/s",
+                "per thread", "snapshots", "mean ns", "p50 ns", "p99 ns", "max ns", "retries");
+        for (Strategy strategy : strategies) {
+            for (int t : threads) {
+                // Same run, shorter, to get the code compiled before the measure
+                run(strategy, t, Math.max(1, duration / 4), snapshotMicros * 1_000, work);
+                Result r = run(strategy, t, duration, snapshotMicros * 1_000, work);
+                System.out.printf("%-13s %7d %14.0f %14.0f %9d %10.0f %10.0f %10.0f %10.0f %d%s%n", strategy,
+                        t, r.throughput(), r.throughput() / t, r.snapshots.length, r.meanLatency(), r.latency(0.5),
+                        r.latency(0.99), r.latency(1.0), r.retries, r.consistent ? "" : " LOST PUBLISHES");
+            }
         }
-        System.out.println("Started!");
-        threadExecutor.shutdown();
     }
 
 }
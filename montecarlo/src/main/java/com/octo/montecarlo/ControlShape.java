@@ -0,0 +1,27 @@
+package com.octo.montecarlo;
+
+/**
+ * A shape of known area, close to the one of a calculator so both are often decided the same way. Evaluated on the
+ * same points, the error of its estimate says how wrong the estimate of the calculator is likely to be, see
+ * {@link Estimator#CONTROL}.
+ */
+public class ControlShape extends ExpressionShape {
+
+    private final double area;
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the formula isn't a valid inequality
+     */
+    public ControlShape(String name, String formula, int width, int height, double area) {
+        super(name, formula, width, height);
+        this.area = area;
+    }
+
+    /**
+     * @return the exact area of the shape
+     */
+    public double getArea() {
+        return area;
+    }
+}
@@ -0,0 +1,198 @@
+package com.octo.montecarlo;
+
+/**
+ * Target precision of a run. The run can stop as soon as the confidence interval of the estimate is narrow enough,
+ * either in absolute value or relatively to the estimate.
+ */
+final class Convergence {
+
+    /** Under this number of iterations the variance estimate is not trusted */
+    private static final long MIN_LOOPS = 10_000L;
+
+    private final double error;
+
+    private final boolean relative;
+
+    private final double confidence;
+
+    /** Standard normal quantile giving the half width of the interval in standard errors */
+    private final double z;
+
+    /** Student quantile of the last number of replicas seen, as { replicas, quantile } */
+    private volatile double[] t = { 1, Double.NaN };
+
+    private Convergence(double error, boolean relative, double confidence) {
+        if (error <= 0) {
+            throw new IllegalArgumentException("The error should be positive: " + error);
+        }
+        if (confidence <= 0 || confidence >= 1) {
+            throw new IllegalArgumentException("The confidence should be between 0 and 1 excluded: " + confidence);
+        }
+        this.error = error;
+        this.relative = relative;
+        this.confidence = confidence;
+        this.z = normalQuantile((1.0 + confidence) / 2.0);
+    }
+
+    /**
+     * @param error
+     *            maximum half width of the confidence interval
+     * @param confidence
+     *            confidence level of the interval, e.g. 0.95
+     */
+    static Convergence absolute(double error, double confidence) {
+        return new Convergence(error, false, confidence);
+    }
+
+    /**
+     * @param error
+     *            maximum half width of the confidence interval divided by the estimate
+     * @param confidence
+     *            confidence level of the interval, e.g. 0.95
+     */
+    static Convergence relative(double error, double confidence) {
+        return new Convergence(error, true, confidence);
+    }
+
+    /**
+     * @return half width of the confidence interval around the current estimate
+     */
+    double halfWidth(Step step, double factor) {
+        return quantile(step.replicas) * step.standardError(factor);
+    }
+
+    /**
+     * The error of a single sample comes from millions of Bernoulli trials and is normal. With replicas it comes from
+     * the spread of a few estimates (8 by default), so the interval is wider: the Student quantile with replicas - 1
+     * degrees of freedom (2.365 instead of 1.96 at 95% for 8 replicas)
+     */
+    private double quantile(int replicas) {
+        if (replicas <= 1) {
+            return z;
+        }
+        double[] cached = t;
+        if (cached[0] != replicas) {
+            cached = new double[] { replicas, studentQuantile(confidence, replicas - 1) };
+            t = cached;
+        }
+        return cached[1];
+    }
+
+    /**
+     * @return if the confidence interval of the current estimate is within the target
+     */
+    boolean isReached(Step step, double factor) {
+        return isReached(step, factor, 0);
+    }
+
+    /**
+     * @param offset
+     *            part of the result known exactly, added to the estimate
+     * @return if the confidence interval of the current estimate is within the target
+     */
+    boolean isReached(Step step, double factor, double offset) {
+        if (step.loops() < MIN_LOOPS) {
+            return false;
+        }
+        double halfWidth = halfWidth(step, factor);
+        // A run that only found points "in" or only "out" so far has a null variance, it can't be trusted
+        if (halfWidth == 0) {
+            return false;
+        }
+        if (relative) {
+            return halfWidth <= error * Math.abs(offset + step.calculate(factor));
+        }
+        return halfWidth <= error;
+    }
+
+    double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * Inverse of the two-sided Student distribution, found by bisection on its exact form for an integer number of
+     * degrees of freedom (see Abramowitz and Stegun, 26.7.3 and 26.7.4)
+     * 
+     * @param confidence
+     *            probability between 0 and 1 excluded
+     * @param degrees
+     *            degrees of freedom, at least 1
+     * @return t such as P(-t <= T <= t) = confidence
+     */
+    static double studentQuantile(double confidence, int degrees) {
+        double high = 1;
+        while (studentProbability(high, degrees) < confidence) {
+            high *= 2;
+        }
+        double low = 0;
+        for (int i = 0; i < 100 && low < high; i++) {
+            double middle = (low + high) / 2;
+            if (studentProbability(middle, degrees) < confidence) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return (low + high) / 2;
+    }
+
+    /**
+     * @return P(-t <= T <= t) for a Student variable T of this number of degrees of freedom
+     */
+    static double studentProbability(double t, int degrees) {
+        double theta = Math.atan(t / Math.sqrt(degrees));
+        double sin = Math.sin(theta);
+        double cos2 = Math.cos(theta) * Math.cos(theta);
+        double sum = 1;
+        double term = 1;
+        if (degrees % 2 == 0) {
+            for (int k = 2; k <= degrees - 2; k += 2) {
+                term *= cos2 * (k - 1) / k;
+                sum += term;
+            }
+            return sin * sum;
+        }
+        if (degrees == 1) {
+            return 2 * theta / Math.PI;
+        }
+        for (int k = 3; k <= degrees - 2; k += 2) {
+            term *= cos2 * (k - 1) / k;
+            sum += term;
+        }
+        return 2 / Math.PI * (theta + sin * Math.cos(theta) * sum);
+    }
+
+    /**
+     * Inverse of the standard normal cumulative distribution (Acklam's algorithm, relative error under 1.2e-9)
+     * 
+     * @param p
+     *            probability between 0 and 1 excluded
+     * @return x such as P(X <= x) = p
+     */
+    static double normalQuantile(double p) {
+        final double[] a = { -3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00 };
+        final double[] b = { -5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01 };
+        final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00 };
+        final double[] d = { 7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00 };
+        final double low = 0.02425;
+
+        if (p < low) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        if (p > 1 - low) {
+            double q = Math.sqrt(-2 * Math.log(1 - p));
+            return -(((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
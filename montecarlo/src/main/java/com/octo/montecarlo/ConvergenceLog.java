@@ -0,0 +1,229 @@
+package com.octo.montecarlo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time series of the convergence of a run, written to a file for the machines: a CSV file with a header, or a JSON
+ * object per line.
+ * <p>
+ * The records are put in a bounded queue and written by a background thread, so whoever records never waits for the
+ * disk. When the writer is behind and the queue is full, the record is dropped and counted. The summary of the run is
+ * given to {@link #close(Record)}, which waits for room in the queue, so it is always written after the other records.
+ */
+final class ConvergenceLog implements Closeable {
+
+    enum Format {
+        CSV, JSON;
+
+        /**
+         * @throws IllegalArgumentException
+         *             if the format is unknown
+         */
+        static Format of(String name) {
+            try {
+                return valueOf(name.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown log format " + name + ". Should be csv or json");
+            }
+        }
+
+        /**
+         * @return JSON for a .json file, CSV otherwise
+         */
+        static Format of(Path path) {
+            return path.getFileName().toString().toLowerCase().endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    /** A point of the series, or the summary of the run */
+    static final class Record {
+        /** progress while the run goes, final for the summary */
+        String type;
+
+        /** Wall clock time in ms since the epoch */
+        long timestamp;
+
+        /** Nanoseconds since the start of the run */
+        long elapsed;
+
+        /** Iterations done, with the ones of a resumed run */
+        long samples;
+
+        /** Iterations done by each thread in this run, empty for a coordinator */
+        long[] workerSamples;
+
+        double estimate;
+
+        double standardError;
+
+        /** Reads of the aggregator retried because of a concurrent write */
+        long retries;
+
+        /** Workers that died on a chunk, for a coordinator */
+        long deaths;
+    }
+
+    private static final String HEADER = "type,timestamp,elapsed_ms,samples,estimate,standard_error,retries,deaths,"
+            + "dropped,worker_samples";
+
+    /** Marks the end of the records for the writer */
+    private static final Record END = new Record();
+
+    private final BlockingQueue<Record> queue;
+
+    private final Format format;
+
+    private final Writer writer;
+
+    private final Thread thread;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** First error of the writer, reported by {@link #close()} */
+    private volatile IOException error;
+
+    /**
+     * @param capacity
+     *            records waiting to be written before the next ones are dropped
+     */
+    ConvergenceLog(Path path, Format format, int capacity) throws IOException {
+        this.queue = new ArrayBlockingQueue<Record>(capacity);
+        this.format = format;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        if (format == Format.CSV) {
+            writer.write(HEADER);
+            writer.write('\n');
+        }
+        this.thread = new Thread("convergence log") {
+            @Override
+            public void run() {
+                write();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Give a record to the writer without waiting
+     * 
+     * @return false if the queue was full and the record dropped
+     */
+    boolean record(Record record) {
+        if (queue.offer(record)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * @return number of records dropped because the queue was full
+     */
+    long dropped() {
+        return dropped.get();
+    }
+
+    private void write() {
+        try {
+            while (true) {
+                Record record = queue.take();
+                if (record == END) {
+                    break;
+                }
+                if (error != null) {
+                    // Nothing can be written any more, the records are thrown away
+                    continue;
+                }
+                try {
+                    writer.write(format == Format.CSV ? csv(record) : json(record));
+                    writer.write('\n');
+                    // Flush when there is nothing else to write, so the file can be followed while the run goes
+                    if (queue.isEmpty()) {
+                        writer.flush();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String csv(Record r) {
+        StringBuilder b = new StringBuilder();
+        b.append(r.type).append(',').append(r.timestamp).append(',');
+        b.append(String.format(Locale.ROOT, "%.3f", r.elapsed / 1e6)).append(',');
+        b.append(r.samples).append(',').append(r.estimate).append(',').append(r.standardError);
+        b.append(',').append(r.retries).append(',').append(r.deaths).append(',').append(dropped.get()).append(',');
+        // A single column, the number of threads depending on the run
+        for (int i = 0; i < r.workerSamples.length; i++) {
+            b.append(i == 0 ? "" : ";").append(r.workerSamples[i]);
+        }
+        return b.toString();
+    }
+
+    private String json(Record r) {
+        StringBuilder b = new StringBuilder();
+        b.append("{\"type\":\"").append(r.type).append("\",\"timestamp\":").append(r.timestamp);
+        b.append(",\"elapsed_ms\":").append(String.format(Locale.ROOT, "%.3f", r.elapsed / 1e6));
+        b.append(",\"samples\":").append(r.samples);
+        b.append(",\"estimate\":").append(json(r.estimate));
+        b.append(",\"standard_error\":").append(json(r.standardError));
+        b.append(",\"retries\":").append(r.retries).append(",\"deaths\":").append(r.deaths);
+        b.append(",\"dropped\":").append(dropped.get()).append(",\"worker_samples\":[");
+        for (int i = 0; i < r.workerSamples.length; i++) {
+            b.append(i == 0 ? "" : ",").append(r.workerSamples[i]);
+        }
+        return b.append("]}").toString();
+    }
+
+    /**
+     * @return the value, or null for NaN and the infinities that JSON doesn't have
+     */
+    private static String json(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : Double.toString(value);
+    }
+
+    /**
+     * Write the records given so far and close the file
+     */
+    @Override
+    public void close() throws IOException {
+        close(null);
+    }
+
+    /**
+     * Write the records given so far, then the summary, and close the file
+     * 
+     * @param summary
+     *            last record, never dropped. Null for none
+     */
+    void close(Record summary) throws IOException {
+        try {
+            // The writer is taking, so there is room soon
+            if (summary != null) {
+                queue.put(summary);
+            }
+            queue.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writer.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
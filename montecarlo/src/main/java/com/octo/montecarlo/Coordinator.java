@@ -0,0 +1,359 @@
+package com.octo.montecarlo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Hands out chunks of iterations to {@link RemoteWorker}s over TCP and merges their counts.
+ * <p>
+ * Each connection is a worker working on a chunk at a time. It tells its counts on the chunk from time to time, and its
+ * final counts when the chunk is done. The counts of the done chunks are kept, the ones of a chunk in progress are only
+ * added to the feedback. When a worker dies or stops answering, its counts on the chunk are dropped and the chunk is
+ * given to another worker. Since the points of a chunk only depend on the seed, the result is the same as if the worker
+ * had not died.
+ * <p>
+ * Protocol, with {@link DataOutputStream} types:
+ * <ul>
+ * <li>on connection, the coordinator sends the algorithm, the sampling, the random algorithm (UTF), the seed (long) and
+ * the number of replicas (int)</li>
+ * <li>{@link #CLAIM}: the coordinator answers the start and end (long) of the next chunk, equal when there is nothing
+ * left</li>
+ * <li>{@link #PROGRESS} then p and n (long) on the chunk for each replica: the coordinator answers {@link #CONTINUE}
+ * or {@link #STOP}, in which case the counts are kept and the worker leaves</li>
+ * <li>{@link #DONE} then p and n (long) on the chunk for each replica: nothing is answered</li>
+ * </ul>
+ */
+final class Coordinator {
+
+    static final byte CLAIM = 1;
+
+    static final byte PROGRESS = 2;
+
+    static final byte DONE = 3;
+
+    static final byte CONTINUE = 0;
+
+    static final byte STOP = 1;
+
+    /** A worker that said nothing for so long is considered dead. It speaks every few hundred ms */
+    private static final int WORKER_TIMEOUT = 30_000; // in ms
+
+    private final String algorithm;
+
+    private final String sampling;
+
+    private final String rng;
+
+    private final long seed;
+
+    private final int replicas;
+
+    private final ChunkScheduler scheduler;
+
+    private final ServerSocket server;
+
+    /** Chunks of the dead workers, given before the ones of the scheduler */
+    private final Deque<ChunkScheduler.Chunk> reassigned = new ArrayDeque<>();
+
+    /** Counts of the done chunks, per replica */
+    private final long[] pList;
+
+    private final long[] nList;
+
+    private final List<Connection> connections = new ArrayList<>();
+
+    /** Open when all the iterations are done, or when the run is stopped and no worker is on a chunk */
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private long completed;
+
+    private int workers;
+
+    private int deaths;
+
+    /**
+     * @param workers
+     *            expected number of workers, for the size of the chunks
+     */
+    Coordinator(String algorithm, String sampling, String rng, long seed, int replicas, long iterations,
+            int workers, long minChunk, ServerSocket server) {
+        this.algorithm = algorithm;
+        this.sampling = sampling;
+        this.rng = rng;
+        this.seed = seed;
+        this.replicas = replicas;
+        this.scheduler = new ChunkScheduler(iterations, workers, minChunk);
+        this.server = server;
+        this.pList = new long[replicas];
+        this.nList = new long[replicas];
+    }
+
+    /**
+     * Accept the workers in a background thread
+     */
+    void start() {
+        Thread acceptor = new Thread("coordinator") {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        Socket socket = server.accept();
+                        socket.setSoTimeout(WORKER_TIMEOUT);
+                        socket.setTcpNoDelay(true);
+                        Connection connection = new Connection(socket);
+                        synchronized (Coordinator.this) {
+                            connections.add(connection);
+                            workers++;
+                        }
+                        connection.start();
+                    } catch (IOException e) {
+                        // Closed
+                    }
+                }
+            }
+        };
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return counts of the done chunks and of the chunks in progress, one slot per replica
+     */
+    synchronized Step snapshot() {
+        long[] p = pList.clone();
+        long[] n = nList.clone();
+        for (Connection connection : connections) {
+            for (int r = 0; r < replicas; r++) {
+                p[r] += connection.p[r];
+                n[r] += connection.n[r];
+            }
+        }
+        return new Step(p, n, replicas);
+    }
+
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    ChunkScheduler getScheduler() {
+        return scheduler;
+    }
+
+    CountDownLatch getDone() {
+        return done;
+    }
+
+    /**
+     * @return number of workers that connected
+     */
+    synchronized int workers() {
+        return workers;
+    }
+
+    /**
+     * @return number of workers that died on a chunk
+     */
+    synchronized int deaths() {
+        return deaths;
+    }
+
+    void close() {
+        try {
+            server.close();
+        } catch (IOException e) {
+            // Nothing to do
+        }
+        synchronized (this) {
+            for (Connection connection : connections) {
+                connection.close();
+            }
+            notifyAll();
+        }
+    }
+
+    /**
+     * Give a chunk of a dead worker or a new one. When there is none left but some workers are still on a chunk, wait in
+     * case one of them dies
+     * 
+     * @return false when the run is over
+     */
+    private synchronized boolean claim(ChunkScheduler.Chunk chunk) throws InterruptedException {
+        while (true) {
+            if (scheduler.isStopped() || server.isClosed() || done.getCount() == 0) {
+                return false;
+            }
+            if (!reassigned.isEmpty()) {
+                ChunkScheduler.Chunk dead = reassigned.poll();
+                chunk.start = dead.start;
+                chunk.end = dead.end;
+                return true;
+            }
+            if (scheduler.claim(chunk)) {
+                return true;
+            }
+            wait();
+        }
+    }
+
+    /**
+     * Keep the counts of a connection and forget its chunk
+     * 
+     * @param size
+     *            iterations done, 0 for a chunk left because of a stop
+     */
+    private synchronized void commit(Connection connection, long size) {
+        for (int r = 0; r < replicas; r++) {
+            pList[r] += connection.p[r];
+            nList[r] += connection.n[r];
+            connection.p[r] = 0;
+            connection.n[r] = 0;
+        }
+        connection.chunk = null;
+        completed += size;
+        checkDone();
+    }
+
+    /**
+     * Drop the counts of a dead connection and give its chunk to another one
+     */
+    private synchronized void drop(Connection connection) {
+        connections.remove(connection);
+        if (connection.chunk != null) {
+            reassigned.add(connection.chunk);
+            deaths++;
+        }
+        checkDone();
+    }
+
+    private void checkDone() {
+        // Wake up the workers waiting for a chunk
+        notifyAll();
+        if (completed >= scheduler.getTotal()) {
+            done.countDown();
+        } else if (scheduler.isStopped()) {
+            for (Connection connection : connections) {
+                if (connection.chunk != null) {
+                    return;
+                }
+            }
+            done.countDown();
+        }
+    }
+
+    /**
+     * Called when the scheduler is stopped, to release the workers waiting for a chunk
+     */
+    synchronized void stopped() {
+        checkDone();
+    }
+
+    /**
+     * Thread speaking with a worker
+     */
+    private final class Connection extends Thread {
+
+        private final Socket socket;
+
+        /** Counts of the worker on its chunk, per replica. Written with the lock of the coordinator */
+        final long[] p = new long[replicas];
+
+        final long[] n = new long[replicas];
+
+        /** Chunk of the worker, null between two chunks */
+        ChunkScheduler.Chunk chunk;
+
+        Connection(Socket socket) {
+            super("coordinator " + socket.getRemoteSocketAddress());
+            setDaemon(true);
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                out.writeUTF(algorithm);
+                out.writeUTF(sampling);
+                out.writeUTF(rng);
+                out.writeLong(seed);
+                out.writeInt(replicas);
+                out.flush();
+                long[] counts = new long[2 * replicas];
+                while (true) {
+                    byte message = in.readByte();
+                    switch (message) {
+                    case CLAIM:
+                        ChunkScheduler.Chunk claimed = new ChunkScheduler.Chunk();
+                        // Nothing is read while waiting for a chunk
+                        socket.setSoTimeout(0);
+                        boolean claimedOne = claim(claimed);
+                        socket.setSoTimeout(WORKER_TIMEOUT);
+                        if (!claimedOne) {
+                            claimed.start = claimed.end = 0;
+                        } else {
+                            synchronized (Coordinator.this) {
+                                chunk = claimed;
+                            }
+                        }
+                        out.writeLong(claimed.start);
+                        out.writeLong(claimed.end);
+                        out.flush();
+                        break;
+                    case PROGRESS:
+                    case DONE:
+                        for (int i = 0; i < counts.length; i++) {
+                            counts[i] = in.readLong();
+                        }
+                        boolean stop;
+                        synchronized (Coordinator.this) {
+                            if (chunk == null) {
+                                throw new IOException("Counts without a chunk");
+                            }
+                            for (int r = 0; r < replicas; r++) {
+                                p[r] = counts[2 * r];
+                                n[r] = counts[2 * r + 1];
+                            }
+                            stop = message == PROGRESS && scheduler.isStopped();
+                            if (message == DONE || stop) {
+                                commit(this, message == DONE ? chunk.size() : 0);
+                            }
+                        }
+                        if (message == PROGRESS) {
+                            out.writeByte(stop ? STOP : CONTINUE);
+                            out.flush();
+                        }
+                        break;
+                    default:
+                        throw new IOException("Unknown message " + message);
+                    }
+                }
+            } catch (IOException e) {
+                // The worker is dead, stopped answering or left
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+                drop(this);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing to do
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.octo.montecarlo;
+
+import java.awt.Dimension;
+
+/**
+ * How the result is estimated from the points. Apart from the plain hit-or-miss, each estimator evaluates a second
+ * function on the same points, with a {@link CompositeMonteCarlo}: the counts of both functions and the number of
+ * points where they disagree give the estimate and its variance, see {@link ReducedStep}.
+ * <p>
+ * The methods work on fractions of the iterations: p and q the "in" points of both functions, d the points where they
+ * disagree and c the known fraction of the domain in the control shape.
+ */
+enum Estimator {
+
+    /** Factor times p/n */
+    HIT_OR_MISS {
+        @Override
+        CalculatorFactory factory(CalculatorFactory factory, String name) {
+            return factory;
+        }
+
+        @Override
+        double mean(double p, double q, double d, double c) {
+            return p;
+        }
+
+        @Override
+        double variance(double p, double q, double d, double c) {
+            return p * (1 - p);
+        }
+    },
+
+    /**
+     * The function is also evaluated at the antithetic point. The shapes are symmetric around the vertical axis (the
+     * circle around both), so what matters is the distance of a point to the axes, and the antithetic point is at the
+     * other end of its quadrant: <code>x' = sign(x) (width - |x|)</code>, the same for y. It is still uniform, and the
+     * inside of the shapes being around the origin, a point in is paired with a point likely out and the other way
+     * around: the two decisions are negatively correlated and their mean varies less than two independent points. An
+     * iteration is the pair
+     */
+    ANTITHETIC {
+        @Override
+        CalculatorFactory factory(final CalculatorFactory factory, final String name) {
+            check(factory.create(0));
+            return new CalculatorFactory() {
+                @Override
+                public MonteCarloCalculator create(int index) {
+                    final MonteCarloCalculator target = factory.create(index);
+                    final Dimension range = target.getPositiveRange();
+                    Shape reflected = new Shape() {
+
+                        @Override
+                        public String getName() {
+                            return name + " antithetic";
+                        }
+
+                        @Override
+                        public Dimension getPositiveRange() {
+                            return range;
+                        }
+
+                        @Override
+                        public boolean contains(double x, double y) {
+                            return target.f(reflect(x, range.width), reflect(y, range.height));
+                        }
+                    };
+                    return new CompositeMonteCarlo(index, new String[] { name, reflected.getName() },
+                            new MonteCarloCalculator[] { target, new ShapeMonteCarlo(index, reflected) });
+                }
+            };
+        }
+
+        @Override
+        double mean(double p, double q, double d, double c) {
+            return (p + q) / 2;
+        }
+
+        @Override
+        double variance(double p, double q, double d, double c) {
+            // The mean of a pair is 1/2 when both disagree, 1 when both are in
+            double both = (p + q - d) / 2;
+            double mean = mean(p, q, d, c);
+            return d / 4 + both - mean * mean;
+        }
+    },
+
+    /**
+     * The {@link ControlShape} of the calculator is evaluated on the same points. Its estimate minus its known area is
+     * mostly the error of the points, so it is removed from the estimate of the function, scaled by the regression
+     * coefficient of both decisions. The variance left is the one of the function times 1 - r^2, r being the
+     * correlation of both decisions
+     */
+    CONTROL {
+        @Override
+        CalculatorFactory factory(final CalculatorFactory factory, final String name) {
+            final ControlShape control = check(factory.create(0)).getControl();
+            if (control == null) {
+                throw new IllegalArgumentException(name + " has no control shape");
+            }
+            return new CalculatorFactory() {
+                @Override
+                public MonteCarloCalculator create(int index) {
+                    return new CompositeMonteCarlo(index, new String[] { name, control.getName() },
+                            new MonteCarloCalculator[] { factory.create(index), new ShapeMonteCarlo(index, control) });
+                }
+            };
+        }
+
+        @Override
+        double mean(double p, double q, double d, double c) {
+            return p - beta(p, q, d) * (q - c);
+        }
+
+        @Override
+        double variance(double p, double q, double d, double c) {
+            double covariance = (p + q - d) / 2 - p * q;
+            return p * (1 - p) - beta(p, q, d) * covariance;
+        }
+
+        /**
+         * @return the coefficient minimizing the variance, covariance of both decisions over the variance of the
+         *         control, 0 while the control has no variance
+         */
+        private double beta(double p, double q, double d) {
+            double variance = q * (1 - q);
+            return variance > 0 ? ((p + q - d) / 2 - p * q) / variance : 0;
+        }
+    };
+
+    /**
+     * @param name
+     *            of the algorithm
+     * @return the calculators of this estimator from the ones of the algorithm
+     * @throws IllegalArgumentException
+     *             if the algorithm can't be estimated this way
+     */
+    abstract CalculatorFactory factory(CalculatorFactory factory, String name);
+
+    /**
+     * @return the estimated fraction of the domain in the function
+     */
+    abstract double mean(double p, double q, double d, double c);
+
+    /**
+     * @return the variance of an iteration
+     */
+    abstract double variance(double p, double q, double d, double c);
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the calculator has more than its function, or only estimates a part of the area
+     */
+    private static MonteCarloCalculator check(MonteCarloCalculator calculator) {
+        if (calculator instanceof CompositeMonteCarlo) {
+            throw new IllegalArgumentException("A composite has no variance reduction");
+        }
+        if (calculator.getOffset() != 0) {
+            throw new IllegalArgumentException(calculator.getClass().getSimpleName() + " has no variance reduction");
+        }
+        return calculator;
+    }
+
+    /**
+     * @return the point at the same distance from the end of the half range than the other one from the axis
+     */
+    static double reflect(double x, double width) {
+        return x >= 0 ? width - x : -width - x;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if there is no such estimator
+     */
+    static Estimator of(String name) {
+        for (Estimator estimator : values()) {
+            if (estimator.toString().equals(name)) {
+                return estimator;
+            }
+        }
+        throw new IllegalArgumentException("Unknown estimator " + name + ". Should be hit-or-miss, antithetic or control");
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase().replace('_', '-');
+    }
+}
@@ -0,0 +1,96 @@
+package com.octo.montecarlo;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executor running the workers of a run. Each worker is a long task claiming chunks until there is none left, so the
+ * number of threads is the number of cores the run uses.
+ */
+enum ExecutionBackend {
+
+    /** Work-stealing pool */
+    FORKJOIN {
+        @Override
+        ExecutorService create(int threads) {
+            return new ForkJoinPool(threads);
+        }
+    },
+
+    /** Platform threads of a fixed thread pool */
+    FIXED {
+        @Override
+        ExecutorService create(int threads) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    },
+
+    /**
+     * A virtual thread per worker (Java 21). The virtual threads are run by a pool of as many carrier threads as
+     * workers. The JDK has no carrier pool per executor, it reads the jdk.virtualThreadScheduler.parallelism system
+     * property once for the whole JVM, so all the virtual runs of a JVM must have the same number of workers
+     */
+    VIRTUAL {
+        @Override
+        ExecutorService create(int threads) {
+            Method factory;
+            try {
+                factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Virtual threads require Java 21: " + e);
+            }
+            carriers(threads);
+            try {
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private static final String PARALLELISM = "jdk.virtualThreadScheduler.parallelism";
+
+    /**
+     * @param threads
+     *            number of workers that will be running at the same time
+     */
+    abstract ExecutorService create(int threads);
+
+    /**
+     * Set the number of carrier threads of the virtual threads if nothing did it yet: the system property given on
+     * the command line or the first virtual run of the JVM
+     * 
+     * @throws IllegalArgumentException
+     *             if the virtual threads of the JVM have another number of carrier threads
+     */
+    private static synchronized void carriers(int threads) {
+        String parallelism = System.getProperty(PARALLELISM);
+        if (parallelism == null) {
+            System.setProperty(PARALLELISM, Integer.toString(threads));
+        } else if (!parallelism.equals(Integer.toString(threads))) {
+            throw new IllegalArgumentException("The virtual threads of this JVM run on " + parallelism
+                    + " carrier threads (" + PARALLELISM + "), not " + threads);
+        }
+    }
+
+    /**
+     * @param name
+     *            forkjoin, fixed or virtual
+     * @throws IllegalArgumentException
+     *             if the backend is unknown
+     */
+    static ExecutionBackend of(String name) {
+        try {
+            return valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown backend " + name + ". Should be forkjoin, fixed or virtual");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,52 @@
+package com.octo.montecarlo;
+
+import java.awt.Dimension;
+
+/**
+ * A shape defined by an inequality on x and y, like the formula of the Batman:
+ * <code>x^2/49+y^2/9-1&lt;=0 and abs(x)&gt;=4 and -(3 sqrt(33))/7&lt;=y&lt;=0 or ...</code>. The formula is compiled to
+ * bytecode when the shape is created, see {@link InequalityCompiler} for the syntax.
+ * <p>
+ * A provider only has to give the formula to the constructor of a subclass having a public constructor without
+ * parameter, and list it in <code>META-INF/services/com.octo.montecarlo.Shape</code>.
+ */
+public class ExpressionShape implements Shape {
+
+    private final String name;
+
+    private final String formula;
+
+    private final Dimension range;
+
+    private final Inequality inequality;
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the formula isn't a valid inequality
+     */
+    public ExpressionShape(String name, String formula, int width, int height) {
+        this.name = name;
+        this.formula = formula;
+        this.range = new Dimension(width, height);
+        this.inequality = InequalityCompiler.compile(formula);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public String getFormula() {
+        return formula;
+    }
+
+    @Override
+    public Dimension getPositiveRange() {
+        return range;
+    }
+
+    @Override
+    public boolean contains(double x, double y) {
+        return inequality.test(x, y);
+    }
+}
@@ -0,0 +1,89 @@
+package com.octo.montecarlo;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Halton low-discrepancy sequence in bases 2 and 3. The point i is the radical inverse of i in each base: its digits
+ * mirrored after the decimal point. A randomized generator adds the same random shift modulo 1 to all the points
+ * (Cranley-Patterson rotation), so the replicas are independent and each one is unbiased.
+ */
+public class HaltonPointGenerator implements PointGenerator {
+
+    private static final double TWO_POWER_MINUS_53 = 0x1.0p-53;
+
+    private final double shiftU;
+
+    private final double shiftV;
+
+    private long index;
+
+    /**
+     * Halton sequence without randomization
+     */
+    public HaltonPointGenerator() {
+        this(0.0, 0.0);
+    }
+
+    /**
+     * Halton sequence with a random shift
+     */
+    public HaltonPointGenerator(RandomGenerator rand) {
+        this(rand.nextDouble(), rand.nextDouble());
+    }
+
+    private HaltonPointGenerator(double shiftU, double shiftV) {
+        this.shiftU = shiftU;
+        this.shiftV = shiftV;
+    }
+
+    @Override
+    public void next(double[] u, double[] v, int length) {
+        for (int i = 0; i < length; i++) {
+            u[i] = shift(radicalInverse2(index), shiftU);
+            v[i] = shift(radicalInverse3(index), shiftV);
+            index++;
+        }
+    }
+
+    @Override
+    public void nextBits(long[] bits, int length) {
+        for (int i = 0; i < length; i++) {
+            // The first 32 bits of the same points, the radical inverses being computed in double anyway
+            long u = (long) (shift(radicalInverse2(index), shiftU) * 0x1.0p32);
+            long v = (long) (shift(radicalInverse3(index), shiftV) * 0x1.0p32);
+            bits[i] = u << 32 | v;
+            index++;
+        }
+    }
+
+    @Override
+    public void skipTo(long index) {
+        this.index = index;
+    }
+
+    @Override
+    public PointGenerator copy() {
+        return new HaltonPointGenerator(shiftU, shiftV);
+    }
+
+    private static double shift(double value, double shift) {
+        double shifted = value + shift;
+        return shifted >= 1.0 ? shifted - 1.0 : shifted;
+    }
+
+    /** Base 2 is a bit reversal, exact for the first 2^53 points */
+    static double radicalInverse2(long i) {
+        return (Long.reverse(i) >>> 11) * TWO_POWER_MINUS_53;
+    }
+
+    static double radicalInverse3(long i) {
+        double result = 0.0;
+        double digit = 1.0 / 3.0;
+        while (i > 0) {
+            result += (i % 3) * digit;
+            i /= 3;
+            digit /= 3.0;
+        }
+        return result;
+    }
+}
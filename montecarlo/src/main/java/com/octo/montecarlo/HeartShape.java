@@ -0,0 +1,11 @@
+package com.octo.montecarlo;
+
+/**
+ * The heart curve <code>(x^2+y^2-1)^3 = x^2 y^3</code>
+ */
+public class HeartShape extends ExpressionShape {
+
+    public HeartShape() {
+        super("Heart", "(x^2+y^2-1)^3-x^2 y^3<=0", 2, 2);
+    }
+}
@@ -0,0 +1,12 @@
+package com.octo.montecarlo;
+
+/**
+ * An inequality compiled by {@link InequalityCompiler}
+ */
+interface Inequality {
+
+    /**
+     * @return if the point satisfies the inequality
+     */
+    boolean test(double x, double y);
+}
@@ -0,0 +1,985 @@
+package com.octo.montecarlo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an inequality on x and y, written like the formula of the Batman, to the bytecode of an {@link Inequality}.
+ * The formula is parsed to a tree, the constant parts are computed, and the tree is turned into a method doing the same
+ * operations as a hand-written <code>f</code>: the JIT sees plain double arithmetic, calls to {@link Math} and
+ * branches, nothing is interpreted at run time.
+ * <p>
+ * The syntax:
+ * <ul>
+ * <li>numbers, <code>x</code>, <code>y</code>, <code>pi</code> and <code>e</code></li>
+ * <li><code>+ - * / ^</code>, the multiplication being implicit between two factors: <code>3 sqrt(33)</code></li>
+ * <li>the functions of {@link Math} taking one double, and <code>min</code>, <code>max</code>, <code>pow</code>,
+ * <code>atan2</code> and <code>hypot</code></li>
+ * <li><code>&lt; &lt;= &gt; &gt;=</code>, chained: <code>-3&lt;=y&lt;=0</code></li>
+ * <li><code>and</code> (or <code>&amp;&amp;</code>) before <code>or</code> (or <code>||</code>), and parenthesis</li>
+ * </ul>
+ * A comparison with a NaN is false, like in Java.
+ * <p>
+ * The class is defined as a hidden class of this package, so it can be unloaded with its instance. It is a class file of
+ * version 49, the last one that doesn't need stack map frames: they would only be useful to speed up the verification
+ * of a method of a few hundred bytes.
+ */
+final class InequalityCompiler {
+
+    private static final int VERSION = 49;
+
+    private static final String NAME = "com/octo/montecarlo/CompiledInequality";
+
+    /** Local variables of the method: this, x and y, then the temporaries */
+    private static final int X = 1;
+
+    private static final int Y = 3;
+
+    private static final int FIRST_TEMPORARY = 5;
+
+    private final String formula;
+
+    /** Tokens of the formula and index of the next one */
+    private final List<String> tokens = new ArrayList<>();
+
+    private final List<Integer> positions = new ArrayList<>();
+
+    private int next;
+
+    private InequalityCompiler(String formula) {
+        this.formula = formula;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the formula isn't a valid inequality
+     */
+    static Inequality compile(String formula) {
+        InequalityCompiler compiler = new InequalityCompiler(formula);
+        Condition node = compiler.parse();
+        byte[] bytes = new ClassWriter().write(node);
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (Inequality) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Can't load the inequality " + formula, e);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Parsing
+
+    private Condition parse() {
+        tokenize();
+        Node node = or();
+        if (next < tokens.size()) {
+            throw error("Unexpected " + tokens.get(next));
+        }
+        if (!(node instanceof Condition)) {
+            throw error("Not an inequality");
+        }
+        return (Condition) node;
+    }
+
+    private void tokenize() {
+        int i = 0;
+        while (i < formula.length()) {
+            char c = formula.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (Character.isDigit(c) || c == '.') {
+                while (i < formula.length() && (Character.isDigit(formula.charAt(i)) || formula.charAt(i) == '.')) {
+                    i++;
+                }
+                // An exponent, but not the e of an implicit multiplication like 2e
+                if (i + 1 < formula.length() && (formula.charAt(i) == 'e' || formula.charAt(i) == 'E')) {
+                    int j = i + 1;
+                    if (formula.charAt(j) == '+' || formula.charAt(j) == '-') {
+                        j++;
+                    }
+                    if (j < formula.length() && Character.isDigit(formula.charAt(j))) {
+                        i = j;
+                        while (i < formula.length() && Character.isDigit(formula.charAt(i))) {
+                            i++;
+                        }
+                    }
+                }
+            } else if (Character.isLetter(c)) {
+                while (i < formula.length() && Character.isLetterOrDigit(formula.charAt(i))) {
+                    i++;
+                }
+            } else if (formula.startsWith("<=", i) || formula.startsWith(">=", i) || formula.startsWith("&&", i)
+                    || formula.startsWith("||", i)) {
+                i += 2;
+            } else if ("+-*/^(),<>".indexOf(c) >= 0) {
+                i++;
+            } else {
+                throw new IllegalArgumentException("Unexpected " + c + " at " + i + " in " + formula);
+            }
+            tokens.add(formula.substring(start, i));
+            positions.add(start);
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        int position = next < positions.size() ? positions.get(next) : formula.length();
+        return new IllegalArgumentException(message + " at " + position + " in " + formula);
+    }
+
+    private boolean accept(String token) {
+        if (next < tokens.size() && tokens.get(next).equals(token)) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String token) {
+        if (!accept(token)) {
+            throw error("Expected " + token);
+        }
+    }
+
+    private Node or() {
+        Node node = and();
+        while (accept("or") || accept("||")) {
+            node = new Logic(false, bool(node), bool(and()));
+        }
+        return node;
+    }
+
+    private Node and() {
+        Node node = comparison();
+        while (accept("and") || accept("&&")) {
+            node = new Logic(true, bool(node), bool(comparison()));
+        }
+        return node;
+    }
+
+    private Node comparison() {
+        Node first = additive();
+        if (!isComparison()) {
+            return first;
+        }
+        Comparison comparison = new Comparison(number(first));
+        while (isComparison()) {
+            String operator = tokens.get(next++);
+            comparison.add(operator, number(additive()));
+        }
+        return comparison;
+    }
+
+    private boolean isComparison() {
+        if (next >= tokens.size()) {
+            return false;
+        }
+        String token = tokens.get(next);
+        return token.equals("<") || token.equals("<=") || token.equals(">") || token.equals(">=");
+    }
+
+    private Node additive() {
+        Node node = multiplicative();
+        while (true) {
+            if (accept("+")) {
+                node = Arithmetic.of('+', number(node), number(multiplicative()));
+            } else if (accept("-")) {
+                node = Arithmetic.of('-', number(node), number(multiplicative()));
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private Node multiplicative() {
+        Node node = unary();
+        while (true) {
+            if (accept("*")) {
+                node = Arithmetic.of('*', number(node), number(unary()));
+            } else if (accept("/")) {
+                node = Arithmetic.of('/', number(node), number(unary()));
+            } else if (startsFactor()) {
+                // Implicit multiplication, with the same precedence as the explicit one: 1/112 (3 sqrt(33)-7) x^2
+                node = Arithmetic.of('*', number(node), number(power()));
+            } else {
+                return node;
+            }
+        }
+    }
+
+    private boolean startsFactor() {
+        if (next >= tokens.size()) {
+            return false;
+        }
+        String token = tokens.get(next);
+        char c = token.charAt(0);
+        return token.equals("(") || Character.isDigit(c) || c == '.'
+                || Character.isLetter(c) && !token.equals("and") && !token.equals("or");
+    }
+
+    private Node unary() {
+        if (accept("-")) {
+            // -x^2 is -(x^2)
+            return Arithmetic.of('n', number(unary()), null);
+        }
+        if (accept("+")) {
+            return unary();
+        }
+        return power();
+    }
+
+    private Node power() {
+        Node base = primary();
+        if (accept("^")) {
+            // Right associative, and the exponent may be negative: x^-1
+            return Arithmetic.of('^', number(base), number(unary()));
+        }
+        return base;
+    }
+
+    private Node primary() {
+        if (next >= tokens.size()) {
+            throw error("Unexpected end");
+        }
+        String token = tokens.get(next);
+        char c = token.charAt(0);
+        if (accept("(")) {
+            Node node = or();
+            expect(")");
+            return node;
+        }
+        if (Character.isDigit(c) || c == '.') {
+            next++;
+            try {
+                return new Constant(Double.parseDouble(token));
+            } catch (NumberFormatException e) {
+                next--;
+                throw error("Not a number " + token);
+            }
+        }
+        if (!Character.isLetter(c)) {
+            throw error("Unexpected " + token);
+        }
+        next++;
+        switch (token) {
+        case "x":
+            return new Variable(X);
+        case "y":
+            return new Variable(Y);
+        case "pi":
+            return new Constant(Math.PI);
+        case "e":
+            return new Constant(Math.E);
+        default:
+            break;
+        }
+        Integer arity = FUNCTIONS.get(token);
+        if (arity == null) {
+            next--;
+            throw error("Unknown " + token);
+        }
+        expect("(");
+        Numeric[] arguments = new Numeric[arity];
+        for (int i = 0; i < arity; i++) {
+            if (i > 0) {
+                expect(",");
+            }
+            arguments[i] = number(or());
+        }
+        expect(")");
+        return Call.of(token, arguments);
+    }
+
+    private Numeric number(Node node) {
+        if (!(node instanceof Numeric)) {
+            throw error("A comparison is not a number");
+        }
+        return (Numeric) node;
+    }
+
+    private Condition bool(Node node) {
+        if (!(node instanceof Condition)) {
+            throw error("A number is not a comparison");
+        }
+        return (Condition) node;
+    }
+
+    /** Functions of Math and their number of arguments */
+    private static final Map<String, Integer> FUNCTIONS = new HashMap<>();
+
+    static {
+        for (String name : new String[] { "abs", "sqrt", "cbrt", "exp", "log", "log10", "sin", "cos", "tan", "asin",
+                "acos", "atan", "sinh", "cosh", "tanh", "floor", "ceil", "signum" }) {
+            FUNCTIONS.put(name, 1);
+        }
+        for (String name : new String[] { "min", "max", "pow", "atan2", "hypot" }) {
+            FUNCTIONS.put(name, 2);
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Tree
+
+    /** A number or a condition, until the parser knows which one it needs */
+    private abstract static class Node {
+    }
+
+    private abstract static class Numeric extends Node {
+
+        /** Value of a node without variable, NaN otherwise */
+        double constant() {
+            return Double.NaN;
+        }
+
+        boolean isConstant() {
+            return false;
+        }
+
+        /** Push the value of the number */
+        abstract void emit(Code code);
+    }
+
+    private abstract static class Condition extends Node {
+
+        /** Jump to the label if the condition is false, go on otherwise */
+        abstract void jumpIfFalse(Code code, Label label);
+
+        /** Jump to the label if the condition is true, go on otherwise */
+        abstract void jumpIfTrue(Code code, Label label);
+    }
+
+    private static final class Constant extends Numeric {
+
+        private final double value;
+
+        Constant(double value) {
+            this.value = value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+
+        @Override
+        double constant() {
+            return value;
+        }
+
+        @Override
+        void emit(Code code) {
+            code.constant(value);
+        }
+    }
+
+    private static final class Variable extends Numeric {
+
+        private final int local;
+
+        Variable(int local) {
+            this.local = local;
+        }
+
+        @Override
+        void emit(Code code) {
+            code.load(local);
+        }
+    }
+
+    private static final class Arithmetic extends Numeric {
+
+        private final char operator;
+
+        private final Numeric left;
+
+        private final Numeric right;
+
+        private Arithmetic(char operator, Numeric left, Numeric right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * @param operator
+         *            + - * / ^ or n for the negation, whose right is null
+         */
+        static Numeric of(char operator, Numeric left, Numeric right) {
+            if (left.isConstant() && (right == null || right.isConstant())) {
+                double a = left.constant();
+                double b = right == null ? 0 : right.constant();
+                switch (operator) {
+                case '+':
+                    return new Constant(a + b);
+                case '-':
+                    return new Constant(a - b);
+                case '*':
+                    return new Constant(a * b);
+                case '/':
+                    return new Constant(a / b);
+                case '^':
+                    return new Constant(Math.pow(a, b));
+                default:
+                    return new Constant(-a);
+                }
+            }
+            return new Arithmetic(operator, left, right);
+        }
+
+        @Override
+        void emit(Code code) {
+            left.emit(code);
+            if (operator == 'n') {
+                code.op(Code.DNEG, 0);
+                return;
+            }
+            if (operator == '^' && right.isConstant() && (right.constant() == 2 || right.constant() == 3)) {
+                // What the JIT does for pow(x, 2.0), for the cubes too
+                int temporary = code.temporary();
+                code.store(temporary);
+                code.load(temporary);
+                code.load(temporary);
+                code.op(Code.DMUL, -2);
+                if (right.constant() == 3) {
+                    code.load(temporary);
+                    code.op(Code.DMUL, -2);
+                }
+                return;
+            }
+            right.emit(code);
+            switch (operator) {
+            case '+':
+                code.op(Code.DADD, -2);
+                break;
+            case '-':
+                code.op(Code.DSUB, -2);
+                break;
+            case '*':
+                code.op(Code.DMUL, -2);
+                break;
+            case '/':
+                code.op(Code.DDIV, -2);
+                break;
+            default:
+                code.invokeMath("pow", 2);
+                break;
+            }
+        }
+    }
+
+    private static final class Call extends Numeric {
+
+        private final String function;
+
+        private final Numeric[] arguments;
+
+        private Call(String function, Numeric[] arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        static Numeric of(String function, Numeric[] arguments) {
+            Call call = new Call(function, arguments);
+            for (Numeric argument : arguments) {
+                if (!argument.isConstant()) {
+                    return call;
+                }
+            }
+            return new Constant(call.constant());
+        }
+
+        @Override
+        double constant() {
+            Class<?>[] types = new Class<?>[arguments.length];
+            Object[] values = new Object[arguments.length];
+            for (int i = 0; i < arguments.length; i++) {
+                types[i] = double.class;
+                values[i] = arguments[i].constant();
+            }
+            try {
+                return (Double) Math.class.getMethod(function, types).invoke(null, values);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void emit(Code code) {
+            for (Numeric argument : arguments) {
+                argument.emit(code);
+            }
+            code.invokeMath(function, arguments.length);
+        }
+    }
+
+    /** a op b op c..., each operand being computed once */
+    private static final class Comparison extends Condition {
+
+        private final List<Numeric> operands = new ArrayList<>();
+
+        private final List<String> operators = new ArrayList<>();
+
+        Comparison(Numeric first) {
+            operands.add(first);
+        }
+
+        void add(String operator, Numeric operand) {
+            operators.add(operator);
+            operands.add(operand);
+        }
+
+        @Override
+        void jumpIfFalse(Code code, Label label) {
+            int previous = -1;
+            for (int i = 0; i < operators.size(); i++) {
+                previous = compare(code, i, previous);
+                code.branch(falseOpcode(operators.get(i)), -1, label);
+            }
+        }
+
+        @Override
+        void jumpIfTrue(Code code, Label label) {
+            Label end = new Label();
+            int previous = -1;
+            int last = operators.size() - 1;
+            for (int i = 0; i < last; i++) {
+                previous = compare(code, i, previous);
+                code.branch(falseOpcode(operators.get(i)), -1, end);
+            }
+            compare(code, last, previous);
+            code.branch(trueOpcode(operators.get(last)), -1, label);
+            code.bind(end);
+        }
+
+        /**
+         * Push the comparison of the operands i and i + 1, keeping the second one in a temporary if it is needed by
+         * the next comparison
+         *
+         * @return the temporary
+         */
+        private int compare(Code code, int i, int previous) {
+            if (previous < 0) {
+                operands.get(i).emit(code);
+            } else {
+                code.load(previous);
+            }
+            operands.get(i + 1).emit(code);
+            int temporary = -1;
+            if (i + 1 < operators.size()) {
+                temporary = code.temporary();
+                code.op(Code.DUP2, 2);
+                code.store(temporary);
+            }
+            // NaN gives 1 with dcmpg and -1 with dcmpl: the comparison is false either way
+            String operator = operators.get(i);
+            code.op(operator.startsWith("<") ? Code.DCMPG : Code.DCMPL, -3);
+            return temporary;
+        }
+
+        private static int falseOpcode(String operator) {
+            switch (operator) {
+            case "<":
+                return Code.IFGE;
+            case "<=":
+                return Code.IFGT;
+            case ">":
+                return Code.IFLE;
+            default:
+                return Code.IFLT;
+            }
+        }
+
+        private static int trueOpcode(String operator) {
+            switch (operator) {
+            case "<":
+                return Code.IFLT;
+            case "<=":
+                return Code.IFLE;
+            case ">":
+                return Code.IFGT;
+            default:
+                return Code.IFGE;
+            }
+        }
+    }
+
+    /** and / or, short-circuited */
+    private static final class Logic extends Condition {
+
+        private final boolean and;
+
+        private final Condition left;
+
+        private final Condition right;
+
+        Logic(boolean and, Condition left, Condition right) {
+            this.and = and;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        void jumpIfFalse(Code code, Label label) {
+            if (and) {
+                left.jumpIfFalse(code, label);
+                right.jumpIfFalse(code, label);
+            } else {
+                Label end = new Label();
+                left.jumpIfTrue(code, end);
+                right.jumpIfFalse(code, label);
+                code.bind(end);
+            }
+        }
+
+        @Override
+        void jumpIfTrue(Code code, Label label) {
+            if (and) {
+                Label end = new Label();
+                left.jumpIfFalse(code, end);
+                right.jumpIfTrue(code, label);
+                code.bind(end);
+            } else {
+                left.jumpIfTrue(code, label);
+                right.jumpIfTrue(code, label);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------------------------------
+    // Class file
+
+    private static final class Label {
+
+        int position = -1;
+
+        /** Position of the branches to this label, before it is bound */
+        final List<Integer> branches = new ArrayList<>();
+    }
+
+    /** Bytecode of a method, with the depth of the stack and the local variables used */
+    private static final class Code {
+
+        static final int DCONST_0 = 0x0e;
+
+        static final int DCONST_1 = 0x0f;
+
+        static final int LDC2_W = 0x14;
+
+        static final int DLOAD = 0x18;
+
+        static final int DSTORE = 0x39;
+
+        static final int DUP2 = 0x5c;
+
+        static final int DADD = 0x63;
+
+        static final int DSUB = 0x67;
+
+        static final int DMUL = 0x6b;
+
+        static final int DDIV = 0x6f;
+
+        static final int DNEG = 0x77;
+
+        static final int DCMPL = 0x97;
+
+        static final int DCMPG = 0x98;
+
+        static final int IFLT = 0x9b;
+
+        static final int IFGE = 0x9c;
+
+        static final int IFGT = 0x9d;
+
+        static final int IFLE = 0x9e;
+
+        static final int ICONST_0 = 0x03;
+
+        static final int ICONST_1 = 0x04;
+
+        static final int IRETURN = 0xac;
+
+        static final int INVOKESTATIC = 0xb8;
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final ConstantPool pool;
+
+        /** Labels with branches to patch */
+        private final List<Label> labels = new ArrayList<>();
+
+        private int stack;
+
+        int maxStack;
+
+        int maxLocals = FIRST_TEMPORARY;
+
+        Code(ConstantPool pool) {
+            this.pool = pool;
+        }
+
+        void op(int opcode, int delta) {
+            bytes.write(opcode);
+            stack(delta);
+        }
+
+        private void stack(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u2(int value) {
+            bytes.write(value >>> 8);
+            bytes.write(value);
+        }
+
+        void constant(double value) {
+            // dconst_0 would also push -0.0 as 0.0
+            if (Double.doubleToRawLongBits(value) == 0) {
+                op(DCONST_0, 2);
+            } else if (value == 1) {
+                op(DCONST_1, 2);
+            } else {
+                op(LDC2_W, 2);
+                u2(pool.constant(value));
+            }
+        }
+
+        void load(int local) {
+            op(DLOAD, 2);
+            bytes.write(local);
+        }
+
+        void store(int local) {
+            op(DSTORE, -2);
+            bytes.write(local);
+        }
+
+        /**
+         * @return a new local variable for a double
+         */
+        int temporary() {
+            int local = maxLocals;
+            if (local + 2 > 255) {
+                throw new IllegalArgumentException("Formula too long");
+            }
+            maxLocals += 2;
+            return local;
+        }
+
+        void invokeMath(String name, int arity) {
+            op(INVOKESTATIC, 2 - 2 * arity);
+            u2(pool.method("java/lang/Math", name, arity == 1 ? "(D)D" : "(DD)D"));
+        }
+
+        void branch(int opcode, int delta, Label label) {
+            int position = bytes.size();
+            op(opcode, delta);
+            if (label.position >= 0) {
+                u2(label.position - position);
+            } else {
+                if (label.branches.isEmpty()) {
+                    labels.add(label);
+                }
+                label.branches.add(position);
+                u2(0);
+            }
+        }
+
+        void bind(Label label) {
+            label.position = bytes.size();
+        }
+
+        byte[] toByteArray() {
+            byte[] code = bytes.toByteArray();
+            for (Label label : labels) {
+                for (int branch : label.branches) {
+                    int offset = label.position - branch;
+                    code[branch + 1] = (byte) (offset >>> 8);
+                    code[branch + 2] = (byte) offset;
+                }
+            }
+            if (code.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Formula too long");
+            }
+            return code;
+        }
+    }
+
+    /** Constant pool, with the entries deduplicated */
+    private static final class ConstantPool {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        private final Map<String, Integer> entries = new HashMap<>();
+
+        /** Index of the next entry, starting at 1 */
+        private int count = 1;
+
+        private int add(String key, int size, Entry entry) {
+            Integer index = entries.get(key);
+            if (index != null) {
+                return index;
+            }
+            try {
+                entry.write(out);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = count;
+            count += size;
+            entries.put(key, index);
+            return index;
+        }
+
+        int utf8(final String value) {
+            return add("U" + value, 1, new Entry() {
+                @Override
+                public void write(DataOutputStream out) throws IOException {
+                    out.writeByte(1);
+                    out.writeUTF(value);
+                }
+            });
+        }
+
+        int type(String name) {
+            final int utf8 = utf8(name);
+            return add("C" + name, 1, new Entry() {
+                @Override
+                public void write(DataOutputStream out) throws IOException {
+                    out.writeByte(7);
+                    out.writeShort(utf8);
+                }
+            });
+        }
+
+        int constant(final double value) {
+            // Takes two entries
+            return add("D" + Double.doubleToRawLongBits(value), 2, new Entry() {
+                @Override
+                public void write(DataOutputStream out) throws IOException {
+                    out.writeByte(6);
+                    out.writeDouble(value);
+                }
+            });
+        }
+
+        int method(String owner, String name, String descriptor) {
+            final int type = type(owner);
+            final int nameIndex = utf8(name);
+            final int descriptorIndex = utf8(descriptor);
+            final int nameAndType = add("N" + name + descriptor, 1, new Entry() {
+                @Override
+                public void write(DataOutputStream out) throws IOException {
+                    out.writeByte(12);
+                    out.writeShort(nameIndex);
+                    out.writeShort(descriptorIndex);
+                }
+            });
+            return add("M" + owner + "." + name + descriptor, 1, new Entry() {
+                @Override
+                public void write(DataOutputStream out) throws IOException {
+                    out.writeByte(10);
+                    out.writeShort(type);
+                    out.writeShort(nameAndType);
+                }
+            });
+        }
+
+        private interface Entry {
+            void write(DataOutputStream out) throws IOException;
+        }
+    }
+
+    /**
+     * <code>final class CompiledInequality implements Inequality</code> with a constructor and <code>test</code>
+     */
+    private static final class ClassWriter {
+
+        private static final int ACC_PUBLIC = 0x0001;
+
+        private static final int ACC_FINAL = 0x0010;
+
+        private static final int ACC_SUPER = 0x0020;
+
+        private final ConstantPool pool = new ConstantPool();
+
+        byte[] write(Condition inequality) {
+            int thisClass = pool.type(NAME);
+            int superClass = pool.type("java/lang/Object");
+            int inequalityInterface = pool.type("com/octo/montecarlo/Inequality");
+            int codeName = pool.utf8("Code");
+
+            // <init>: aload_0, invokespecial Object.<init>, return
+            int objectInit = pool.method("java/lang/Object", "<init>", "()V");
+            byte[] init = { 0x2a, (byte) 0xb7, (byte) (objectInit >>> 8), (byte) objectInit, (byte) 0xb1 };
+
+            // test: jump to false if not satisfied, return 1, false: return 0
+            Code code = new Code(pool);
+            Label fail = new Label();
+            inequality.jumpIfFalse(code, fail);
+            code.op(Code.ICONST_1, 1);
+            code.op(Code.IRETURN, -1);
+            code.bind(fail);
+            code.op(Code.ICONST_0, 1);
+            code.op(Code.IRETURN, -1);
+            byte[] test = code.toByteArray();
+
+            int initName = pool.utf8("<init>");
+            int initDescriptor = pool.utf8("()V");
+            int testName = pool.utf8("test");
+            int testDescriptor = pool.utf8("(DD)Z");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(0xcafebabe);
+                out.writeShort(0);
+                out.writeShort(VERSION);
+                out.writeShort(pool.count);
+                pool.bytes.writeTo(out);
+                out.writeShort(ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(inequalityInterface);
+                out.writeShort(0); // fields
+                out.writeShort(2); // methods
+                method(out, initName, initDescriptor, codeName, 1, 1, init);
+                method(out, testName, testDescriptor, codeName, code.maxStack, code.maxLocals, test);
+                out.writeShort(0); // attributes
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static void method(DataOutputStream out, int name, int descriptor, int codeName, int maxStack,
+                int maxLocals, byte[] code) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+    }
+}
@@ -4,10 +4,58 @@ import java.awt.Dimension;
 
 public abstract class MonteCarloCalculator {
 
+    /** Maximum number of points given at once to a {@link MonteCarloPointListener} */
+    private static final int POINT_BUFFER = 1024;
+
+    /** Maximum number of points drawn at once from the generator */
+    protected static final int GENERATOR_BUFFER = 1024;
+
+    /**
+     * With a reduced precision, one point in SHADOW is also evaluated in double to measure the bias: the first of each
+     * group of SHADOW points of the buffers. A power of 2
+     */
+    protected static final int SHADOW = 8;
+
 	protected MonteCarloListener listener;
+
+	/** Same as listener when it wants the points, null otherwise */
+	protected MonteCarloPointListener pointListener;
+
+	private double[] xBuffer;
+
+	private double[] yBuffer;
+
+	private boolean[] goodBuffer;
+
+	/** Source of the points, in the unit square */
+	protected PointGenerator generator;
+
+	/** First coordinates drawn by {@link #nextPoints(int)} */
+	protected final double[] uBuffer = new double[GENERATOR_BUFFER];
+
+	/** Second coordinates drawn by {@link #nextPoints(int)} */
+	protected final double[] vBuffer = new double[GENERATOR_BUFFER];
+
+	/** Points drawn by {@link #nextBits(int)}, see {@link PointGenerator#nextBits(long[], int)} */
+	protected final long[] bitsBuffer = new long[GENERATOR_BUFFER];
 	
 	protected final int index;
 
+	/** Arithmetic of the function of the batches */
+	protected Precision precision = Precision.DOUBLE;
+
+	/** Function of the batches in the reduced {@link #precision}, null in double */
+	protected ReducedFunction reduced;
+
+	/** Points evaluated in the reduced precision and in double */
+	private long shadowPoints;
+
+	/** Sum over the shadow points of the reduced decision minus the double one, 1 for "in" and 0 for "out" */
+	private long shadowDifference;
+
+	/** Shadow points where both decisions differ */
+	private long shadowDisagreements;
+
     public MonteCarloCalculator(int index) {
     	this.index = index;
     }
@@ -19,10 +67,211 @@ public abstract class MonteCarloCalculator {
 
     public void setListener(MonteCarloListener listener) {
         this.listener = listener;
+        if (listener instanceof MonteCarloPointListener) {
+            pointListener = (MonteCarloPointListener) listener;
+            if (xBuffer == null) {
+                xBuffer = new double[POINT_BUFFER];
+                yBuffer = new double[POINT_BUFFER];
+                goodBuffer = new boolean[POINT_BUFFER];
+            }
+        } else {
+            pointListener = null;
+        }
     }
 
+    public void setPointGenerator(PointGenerator generator) {
+        this.generator = generator;
+    }
+
+    public PointGenerator getPointGenerator() {
+        return generator;
+    }
+
+    /**
+     * @throws IllegalArgumentException
+     *             if the calculator has no function in this precision
+     */
+    public void setPrecision(Precision precision) {
+        if (!supports(precision)) {
+            throw new IllegalArgumentException(getClass().getSimpleName() + " can't compute in " + precision);
+        }
+        this.precision = precision;
+        // Chosen once, the batches only check if there is one
+        this.reduced = precision == Precision.DOUBLE ? null : reducedFunction(precision);
+    }
+
+    public Precision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * @return if the calculator has a function in this precision, double or one given by
+     *         {@link #reducedFunction(Precision)}
+     */
+    protected final boolean supports(Precision precision) {
+        return precision == Precision.DOUBLE || reducedFunction(precision) != null;
+    }
+
+    /**
+     * @return the function of the calculator in a reduced precision, null if it has none. None by default
+     */
+    protected ReducedFunction reducedFunction(Precision precision) {
+        return null;
+    }
+
+    /**
+     * Evaluate in double, again in the reduced precision, one point in {@link #SHADOW} of the points drawn by
+     * {@link #nextBits(int)}, to measure the bias of the reduced precision. Done after the batch loop, so the loop
+     * only has the reduced function
+     * 
+     * @param length number of points drawn
+     */
+    protected final void shadow(int length) {
+        double width = getPositiveRange().width;
+        double height = getPositiveRange().height;
+        for (int i = 0; i < length; i += SHADOW) {
+            // Same point, 32 bits being exact in double, so the difference only comes from the arithmetic
+            long bits = bitsBuffer[i];
+            boolean good = reduced.f(bits);
+            if (good != f(u(bits) * width * 2.0 - width, v(bits) * height * 2.0 - height)) {
+                shadowDisagreements++;
+                shadowDifference += good ? 1 : -1;
+            }
+            shadowPoints++;
+        }
+    }
+
+    /**
+     * @return number of points evaluated in both precisions
+     */
+    public long getShadowPoints() {
+        return shadowPoints;
+    }
+
+    /**
+     * @return number of "in" points in the reduced precision minus in double, over the shadow points. The bias of the
+     *         result is the factor times this difference divided by the shadow points
+     */
+    public long getShadowDifference() {
+        return shadowDifference;
+    }
+
+    /**
+     * @return number of shadow points decided differently by both precisions
+     */
+    public long getShadowDisagreements() {
+        return shadowDisagreements;
+    }
+
+    /**
+     * Draw the next points from the generator in {@link #uBuffer} and {@link #vBuffer}
+     * 
+     * @param length number of points, at most {@link #GENERATOR_BUFFER}
+     */
+    protected final void nextPoints(int length) {
+        generator.next(uBuffer, vBuffer, length);
+    }
+
+    /**
+     * Draw the next points from the generator in {@link #bitsBuffer}, for the reduced precisions
+     * 
+     * @param length number of points, at most {@link #GENERATOR_BUFFER}
+     */
+    protected final void nextBits(int length) {
+        generator.nextBits(bitsBuffer, length);
+    }
+
+    /**
+     * @return the first coordinate of a point of {@link #bitsBuffer}, in [0, 1)
+     */
+    protected static double u(long bits) {
+        return (bits >>> 32) * 0x1.0p-32;
+    }
+
+    /**
+     * @return the second coordinate of a point of {@link #bitsBuffer}, in [0, 1)
+     */
+    protected static double v(long bits) {
+        return (bits & 0xffffffffL) * 0x1.0p-32;
+    }
+
+    /**
+     * @return the first coordinate of a point of {@link #bitsBuffer} in float, in [0, 1). Its 23 first bits are the
+     *         mantissa of a float in [1, 2), which is much cheaper than converting an integer
+     */
+    protected static float uFloat(long bits) {
+        return Float.intBitsToFloat(0x3f800000 | (int) (bits >>> 41)) - 1.0f;
+    }
+
+    /**
+     * @return the second coordinate of a point of {@link #bitsBuffer} in float, in [0, 1), like {@link #uFloat(long)}
+     */
+    protected static float vFloat(long bits) {
+        return Float.intBitsToFloat(0x3f800000 | ((int) bits >>> 9)) - 1.0f;
+    }
+
+    /**
+     * Calculate one point and tell the listener about it and about the new value
+     */
     public abstract void calculate();
 
+    /**
+     * Calculate <code>count</code> points. The listener is told about the new value only once at the end of the batch.
+     * The points are only given to a {@link MonteCarloPointListener}, by chunks.
+     * 
+     * @param count number of points to calculate
+     */
+    public abstract void calculateBatch(long count);
+
+    /**
+     * The function of the calculator, without drawing or counting anything
+     * 
+     * @return if the point is "in"
+     */
+    public abstract boolean f(double x, double y);
+
+    /**
+     * Record a point of the current batch for the {@link #pointListener}. Must only be called when there is one
+     * 
+     * @param length number of points already recorded
+     * @return the new number of recorded points
+     */
+    protected final int addPoint(int length, double x, double y, boolean good) {
+        xBuffer[length] = x;
+        yBuffer[length] = y;
+        goodBuffer[length] = good;
+        if (++length == POINT_BUFFER) {
+            return flushPoints(length);
+        }
+        return length;
+    }
+
+    /**
+     * Give the recorded points to the {@link #pointListener}
+     * 
+     * @param length number of points recorded
+     * @return 0, the number of recorded points after the flush
+     */
+    protected final int flushPoints(int length) {
+        if (length > 0) {
+            pointListener.onPoints(xBuffer, yBuffer, goodBuffer, length);
+        }
+        return 0;
+    }
+
+    /**
+     * The function of a calculator in a reduced precision, without drawing or counting anything
+     */
+    protected interface ReducedFunction {
+
+        /**
+         * @param bits both coordinates of the point in the unit square, as drawn by
+         *            {@link PointGenerator#nextBits(long[], int)}
+         * @return if the point is "in"
+         */
+        boolean f(long bits);
+    }
+
     public abstract Dimension getWindowDimension();
 
     public abstract Dimension getPositiveRange();
@@ -33,4 +282,18 @@ public abstract class MonteCarloCalculator {
      * @return factor multiplying p/n to get the result
      */
     public abstract double getFactor();
+
+    /**
+     * @return area known exactly, added to the factor times p/n to get the result
+     */
+    public double getOffset() {
+        return 0;
+    }
+
+    /**
+     * @return a shape of known area close to the function, for {@link Estimator#CONTROL}. Null if there is none
+     */
+    public ControlShape getControl() {
+        return null;
+    }
 }
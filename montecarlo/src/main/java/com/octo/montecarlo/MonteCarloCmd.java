@@ -1,111 +1,125 @@
 package com.octo.montecarlo;
 
-import java.lang.reflect.Constructor;
-import java.util.Arrays;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
 
 public class MonteCarloCmd implements Runnable {
 
-    private static class Step {
-        long[] pList;
-
-        long[] nList;
-
-        private Step() {
-        }
-
-        public Step(int length) {
-            pList = new long[length];
-            nList = new long[length];
-            Arrays.fill(pList, 0);
-            Arrays.fill(nList, 0);
-        }
-
-        /**
-         * Update the current status for a thread
-         * 
-         * @param index
-         *            index of the thread calling the listener
-         * @param p
-         *            total number of result "in" for the thread
-         * @param n
-         *            total number of iterations performed by the thread
-         * @return
-         */
-        public Step update(int index, long p, long n) {
-            // We don't want to do the update in-place because if the calculate() is called during the update
-            // it might return false results
-            Step s = new Step();
-            s.pList = Arrays.copyOf(pList, pList.length);
-            s.nList = Arrays.copyOf(nList, nList.length);
-            s.pList[index] = p;
-            s.nList[index] = n;
-            return s;
-        }
-
-        /**
-         * Calculate the current answer
-         * 
-         * @param factor
-         *            multiplicative factor for the current formula
-         * @return the current answer
-         */
-        public double calculate(double factor) {
-            long p = 0;
-            long n = 0;
-            for (int i = 0; i < pList.length; i++) {
-                p += pList[i];
-                n += nList[i];
-            }
-            return factor * p / n;
-        }
-
-        /**
-         * @return the sum of all iterations performed by the threads
-         */
-        public long loops() {
-            long n = 0;
-            for (int i = 0; i < pList.length; i++) {
-                n += nList[i];
-            }
-            return n;
-        }
-    }
-
-    private static final long CHECKPOINT = 1_000L; // iterations
+    private static final long CHECKPOINT = RandomPointGenerator.BLOCK; // iterations
 
     private static final long FEEDBACK = 5_000L; // in ms
 
+    private static final int LOG_QUEUE = 1_024; // records waiting for the disk
+
+    private static final long CONVERGENCE_CHECK = 10L; // in ms
+
+    private static final long WORKERS_TERMINATION = 60L; // in seconds
+
+    private static final double DEFAULT_CONFIDENCE = 0.95;
+
     private static long ITERATIONS;
 
     private static long TIMEOUT; // in seconds
 
-    private static final AtomicReference<Step> stepRef = new AtomicReference<>();
+    private static double FACTOR; // of the calculator
+
+    private static double OFFSET; // of the calculator
+
+    private static int REPLICAS = 1; // independent estimates of the result
+
+    private static Precision PRECISION = Precision.DOUBLE; // of the function of the calculators
+
+    private static Estimator ESTIMATOR = Estimator.HIT_OR_MISS; // of the result from the points
+
+    private static double CONTROL; // known fraction of the domain in the control shape
+
+    /** Sequence of each replica, copied for each thread */
+    private static PointGenerator[] generators;
+
+    private static StepAggregator aggregator;
 
-    private static AtomicInteger concurrencyCount = new AtomicInteger(0);
+    /** Names of the calculators of a {@link CompositeMonteCarlo}, null for a single calculator */
+    private static String[] COMPONENTS;
+
+    /** Counts of each calculator of a composite, the first one being the aggregator. Same slots as the aggregator */
+    private static StepAggregator[] componentCounts;
+
+    /** Points where each calculator of a composite and the first one disagree, null for the first one */
+    private static StepAggregator[] disagreements;
+
+    /** Metrics of a local run, registered as an MBean while it runs. Set after the aggregator */
+    private static volatile RunMonitor monitor;
+
+    /** Target precision to stop before the end of the iterations. Null to run all of them */
+    private static Convergence convergence;
+
+    /** If the run was stopped because the target precision was reached */
+    private static volatile boolean converged;
 
     private static CountDownLatch latch;
 
-    private final MonteCarloCalculator calculator;
+    /** Merges the counts of the remote workers. Null for a local run */
+    private static Coordinator coordinator;
+
+    private static final int DEFAULT_PORT = 7_000;
+
+    private static final int DEFAULT_WORKERS = 4;
+
+    /** State of the run written by the threads. Null if the run isn't checkpointed */
+    private static CheckpointFile checkpoint;
+
+    /** State of the run that is resumed. Null for a new run */
+    private static CheckpointFile.State resumed;
+
+    /** Convergence of the run for the machines. Null if not asked */
+    private static ConvergenceLog log;
+
+    /** Workers of a local run, read at the end for the bias of the precision */
+    private static MonteCarloCmd[] workers;
+
+    /** One calculator per replica */
+    private final MonteCarloCalculator[] calculators;
+
+    private final ChunkScheduler scheduler;
+
+    /** Index of the thread */
+    private final int index;
 
-    private final long iterations;
+    /** Slot of each calculator in the aggregator */
+    private final int[] slots;
 
-    public MonteCarloCmd(MonteCarloCalculator calculator, long iterations) {
-        this.calculator = calculator;
-        this.iterations = iterations;
+    public MonteCarloCmd(MonteCarloCalculator[] calculators, ChunkScheduler scheduler, int index, int[] slots) {
+        this.calculators = calculators;
+        this.scheduler = scheduler;
+        this.index = index;
+        this.slots = slots;
     }
 
     public static void main(String[] args) {
 
-        if (args.length != 4) {
+        if (args.length > 0 && args[0].equals("worker")) {
+            remoteWorkers(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("sweep")) {
+            Sweep.main(options(args, 1));
+            return;
+        }
+        if (args.length < 4) {
             usage("Missing parameters");
             return;
         }
@@ -115,175 +129,825 @@ public class MonteCarloCmd implements Runnable {
         ITERATIONS = Long.parseLong(args[2]);
         TIMEOUT = Long.parseLong(args[3]);
 
-        final Constructor<MonteCarloCalculator> constructor = retrieveAlgorithm(algoName);
+        Map<String, String> options = options(args, 4);
+        Path checkpointPath = null;
+        if (options.containsKey("resume")) {
+            checkpointPath = Paths.get(options.get("resume"));
+            try {
+                resumed = CheckpointFile.read(checkpointPath);
+            } catch (IOException e) {
+                usage("Can't resume: " + e);
+                return;
+            }
+            CheckpointFile.Run run = resumed.run;
+            if (!run.algorithm.equals(algoName) || !run.type.equals(algoType)) {
+                usage("The checkpoint is of a " + run.algorithm + " " + run.type + " run");
+                return;
+            }
+            // The same points as the resumed run
+            options.put("sampling", run.sampling);
+            options.put("rng", run.rng);
+            options.put("seed", Long.toString(run.seed));
+            options.put("replicas", Integer.toString(run.replicas));
+            options.put("grid", Integer.toString(run.grid));
+            options.put("depth", Integer.toString(run.depth));
+            options.put("precision", run.precision.toString());
+        } else if (options.containsKey("checkpoint")) {
+            checkpointPath = Paths.get(options.get("checkpoint"));
+        }
+        double confidence = options.containsKey("confidence") ? Double.parseDouble(options.get("confidence"))
+                : DEFAULT_CONFIDENCE;
+        if (options.containsKey("abs-error") && options.containsKey("rel-error")) {
+            usage("Only one of --abs-error and --rel-error can be given");
+            return;
+        }
+        try {
+            if (options.containsKey("abs-error")) {
+                convergence = Convergence.absolute(Double.parseDouble(options.get("abs-error")), confidence);
+            } else if (options.containsKey("rel-error")) {
+                convergence = Convergence.relative(Double.parseDouble(options.get("rel-error")), confidence);
+            }
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+        String sampling = options.containsKey("sampling") ? options.get("sampling") : "random";
+        if (!sampling.equals("random")) {
+            // Randomized quasi-Monte Carlo: the spread of the replicas gives the error
+            REPLICAS = 8;
+        }
+        if (options.containsKey("replicas")) {
+            REPLICAS = Integer.parseInt(options.get("replicas"));
+        }
+        String rng = options.containsKey("rng") ? options.get("rng") : RandomPointGenerator.DEFAULT_ALGORITHM;
+        // A run is reproducible from its seed, so one is drawn when none is given
+        long seed = options.containsKey("seed") ? Long.parseLong(options.get("seed"))
+                : RandomGenerator.getDefault().nextLong();
+        try {
+            generators = generators(sampling, REPLICAS, rng, seed);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+        System.out.printf("Seed: %d with %s%n", seed, rng);
+
+        int threads;
+        ExecutionBackend backend;
+        try {
+            switch (algoType) {
+            case "sequential":
+                // The sequential process is started with an executor to allow us to have a timeout
+                threads = 1;
+                if (options.containsKey("threads") && Integer.parseInt(options.get("threads")) != 1) {
+                    usage("A sequential run has a single thread");
+                    return;
+                }
+                backend = options.containsKey("backend") ? ExecutionBackend.of(options.get("backend"))
+                        : ExecutionBackend.FIXED;
+                break;
+            case "parallel":
+            case "stratified":
+                threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads"))
+                        : Runtime.getRuntime().availableProcessors();
+                backend = options.containsKey("backend") ? ExecutionBackend.of(options.get("backend"))
+                        : ExecutionBackend.FORKJOIN;
+                break;
+            case "coordinator":
+                // Expected workers, only for the size of the chunks
+                threads = options.containsKey("workers") ? Integer.parseInt(options.get("workers")) : DEFAULT_WORKERS;
+                backend = null;
+                break;
+            default:
+                usage("Unknown algorithm type. Should be parallel, sequential, stratified or coordinator");
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+        if (threads < 1) {
+            usage("The number of threads should be positive: " + threads);
+            return;
+        }
+        if (checkpointPath != null && algoType.equals("coordinator")) {
+            usage("A coordinator can't be checkpointed");
+            return;
+        }
+
+        CalculatorFactory factory = retrieveAlgorithm(algoName);
+        int grid = options.containsKey("grid") ? Integer.parseInt(options.get("grid")) : Stratification.GRID;
+        int depth = options.containsKey("depth") ? Integer.parseInt(options.get("depth")) : Stratification.DEPTH;
+        if (algoType.equals("stratified")) {
+            factory = stratified(factory, grid, depth);
+        }
+        ControlShape control = null;
+        try {
+            if (options.containsKey("estimator")) {
+                ESTIMATOR = Estimator.of(options.get("estimator"));
+            }
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+        if (ESTIMATOR != Estimator.HIT_OR_MISS) {
+            // Checked before the estimator makes a composite of the calculator, which has the same limits
+            if (!algoType.equals("sequential") && !algoType.equals("parallel")) {
+                usage("The " + ESTIMATOR + " estimator only runs sequential or parallel");
+                return;
+            }
+            if (checkpointPath != null) {
+                usage("The " + ESTIMATOR + " estimator can't be checkpointed");
+                return;
+            }
+            if (REPLICAS > 1) {
+                // The error comes from the variance of the estimator, not from the spread of the replicas
+                usage("The " + ESTIMATOR + " estimator only runs with a single replica");
+                return;
+            }
+            try {
+                control = factory.create(0).getControl();
+                factory = ESTIMATOR.factory(factory, algoName);
+            } catch (IllegalArgumentException e) {
+                usage(e.getMessage());
+                return;
+            }
+        }
         // This instance is only used to get the variables specific to this calculator
-        final MonteCarloCalculator calculator = instantiateAlgorithm(constructor, 0);
+        final MonteCarloCalculator calculator = factory.create(0);
+        FACTOR = calculator.getFactor();
+        OFFSET = calculator.getOffset();
+        CONTROL = control == null ? 0 : control.getArea() / FACTOR;
+        try {
+            if (options.containsKey("precision")) {
+                PRECISION = Precision.of(options.get("precision"));
+            }
+            calculator.setPrecision(PRECISION);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return;
+        }
+        if (PRECISION != Precision.DOUBLE && algoType.equals("coordinator")) {
+            // The workers get the algorithm from the coordinator and compute in double
+            usage("A coordinator only runs in double");
+            return;
+        }
+        if (calculator instanceof CompositeMonteCarlo) {
+            // Only the counts of the first calculator would be saved or sent
+            if (!algoType.equals("sequential") && !algoType.equals("parallel")) {
+                usage("A composite only runs sequential or parallel");
+                return;
+            }
+            if (checkpointPath != null) {
+                usage("A composite can't be checkpointed");
+                return;
+            }
+            COMPONENTS = ((CompositeMonteCarlo) calculator).getNames();
+        }
 
-        MonteCarloListener listener = new MonteCarloListener() {
+        MonteCarloListener listener = listener();
+        calculator.setListener(listener);
 
-            @Override
-            public void onPoint(double x, double y, boolean good) {
+        if (algoType.equals("coordinator")) {
+            int port = options.containsKey("port") ? Integer.parseInt(options.get("port")) : DEFAULT_PORT;
+            try {
+                coordinator = new Coordinator(algoName, sampling, rng, seed, REPLICAS, ITERATIONS, threads, CHECKPOINT,
+                        new ServerSocket(port));
+            } catch (IOException e) {
+                usage("Can't listen on port " + port + ": " + e.getMessage());
+                return;
             }
+            System.out.printf("Coordinator listening on port %d%n", port);
+        }
 
-            @Override
-            public void onValue(int index, long p, long n) {
-                // Note here that to get the final result, the iterations per thread need to be
-                // perfectly divided by the checkpoint
-                if (n % CHECKPOINT == 0) {
-                    while (true) {
-                        // Try to update until we are successful. This prevents a synchronized
-                        // It's a manual STM, we rollback and retry each time we fail
-                        Step s = stepRef.get();
-                        Step updated = s.update(index, p, n);
-                        if (stepRef.compareAndSet(s, updated)) {
-                            break;
-                        }
-                        // This counter shows how many rollback we had to performed because of contingency
-                        concurrencyCount.incrementAndGet();
-                    }
-                }
+        long resumedLoops = 0;
+        if (resumed != null) {
+            for (long n : resumed.n) {
+                resumedLoops += n;
             }
+            System.out.printf("Resumed from %s with %d iterations done%n", checkpointPath, resumedLoops);
+        }
+        if (checkpointPath != null) {
+            CheckpointFile.Run run = new CheckpointFile.Run();
+            run.algorithm = algoName;
+            run.type = algoType;
+            run.sampling = sampling;
+            run.rng = rng;
+            run.seed = seed;
+            run.replicas = REPLICAS;
+            run.grid = grid;
+            run.depth = depth;
+            run.precision = PRECISION;
+            try {
+                checkpoint = resumed == null
+                        ? CheckpointFile.create(checkpointPath, run, threads, new long[REPLICAS], new long[REPLICAS], 0,
+                                new long[0])
+                        : CheckpointFile.create(checkpointPath, run, threads, resumed.p, resumed.n,
+                                resumed.frontier(), resumed.holes(ITERATIONS));
+            } catch (IOException e) {
+                usage("Can't write the checkpoint: " + e);
+                return;
+            }
+        }
 
-        };
-        calculator.setListener(listener);
+        long feedback = options.containsKey("feedback-ms") ? Long.parseLong(options.get("feedback-ms")) : FEEDBACK;
+        if (feedback < 1) {
+            usage("The feedback should be at least 1 ms: " + feedback);
+            return;
+        }
+        if (options.containsKey("log")) {
+            Path logPath = Paths.get(options.get("log"));
+            try {
+                ConvergenceLog.Format format = options.containsKey("log-format")
+                        ? ConvergenceLog.Format.of(options.get("log-format")) : ConvergenceLog.Format.of(logPath);
+                log = new ConvergenceLog(logPath, format, LOG_QUEUE);
+            } catch (IOException e) {
+                usage("Can't write the log: " + e);
+                return;
+            } catch (IllegalArgumentException e) {
+                usage(e.getMessage());
+                return;
+            }
+        }
+        // With a log, the screen still gets a line every FEEDBACK at most
+        final long screenEvery = log == null ? 1 : Math.max(1, FEEDBACK / feedback);
+        final long start = System.nanoTime();
 
         TimerTask taskPerformer = new TimerTask() {
+
+            private long ticks;
+
             @Override
             public void run() {
-                Step step = stepRef.get();
-                double area = step.calculate(calculator.getFactor());
+                if (checkpoint != null) {
+                    // The threads only write in memory, the disk is the job of this thread
+                    checkpoint.force();
+                }
+                if (coordinator == null && monitor == null) {
+                    // The threads are not started yet
+                    return;
+                }
+                Step step = snapshot();
+                double area = OFFSET + step.calculate(FACTOR);
+                if (log != null) {
+                    log.record(record("progress", start, step));
+                }
+                if (++ticks % screenEvery != 0) {
+                    return;
+                }
+                if (coordinator != null) {
+                    System.out.printf("%s = %1.10f on iteration %d from %d workers with %d dead%n", algoName, area,
+                            step.loops(), coordinator.workers(), coordinator.deaths());
+                    return;
+                }
+                // The concurrent writes are the reads of the snapshot that had to be retried because of a thread update
                 System.out.printf("%s = %1.10f on iteration %d with %d concurrent writes%n", algoName, area, step.loops(),
-                        concurrencyCount.get());
+                        aggregator.retries());
             }
         };
 
         Timer timer = new Timer("screen feedback", true);
-        timer.scheduleAtFixedRate(taskPerformer, FEEDBACK, FEEDBACK);
-
-        long start = System.currentTimeMillis();
-        switch (algoType) {
-        case "sequential":
-            sequential(calculator);
-            break;
-        case "parallel":
-            parallel(constructor, listener);
-            break;
-        default:
-            usage("Unknown algorithm type. Should be parallel or sequential");
+        timer.scheduleAtFixedRate(taskPerformer, feedback, feedback);
+
+        long startCpu = processCpuTime();
+        try {
+            if (coordinator != null) {
+                coordinate();
+            } else {
+                execute(algoName, factory, listener, threads, backend);
+            }
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
             return;
         }
+        long end = System.nanoTime();
+        long endCpu = processCpuTime();
+        timer.cancel();
+
+        Step step = snapshot();
+        double area = OFFSET + step.calculate(FACTOR);
+        double seconds = (end - start) / 1e9;
+        // The iterations of this run only
+        long loops = step.loops() - resumedLoops;
+        if (coordinator != null) {
+            System.out.printf("Final: %s = %1.10f with %d iterations from %d workers with %d dead in %d seconds%n",
+                    algoName, area, step.loops(), coordinator.workers(), coordinator.deaths(),
+                    TimeUnit.NANOSECONDS.toSeconds(end - start));
+            System.out.printf("Throughput: %.0f iterations/s%n", step.loops() / seconds);
+        } else {
+            System.out.printf("Final: %s = %1.10f with %d iterations and %d concurrent writes in %d seconds%n",
+                    algoName, area, step.loops(), aggregator.retries(), TimeUnit.NANOSECONDS.toSeconds(end - start));
+            // The process CPU time also counts the JIT and the GC, but it shows if the threads really had their cores
+            System.out.printf("Throughput: %.0f iterations/s, %.0f per thread, with %d threads on the %s backend using"
+                    + " %.2f cores%n", loops / seconds, loops / seconds / threads, threads, backend,
+                    startCpu < 0 ? Double.NaN : (endCpu - startCpu) / 1e9 / seconds);
+        }
+        if (checkpoint != null) {
+            try {
+                checkpoint.close();
+            } catch (IOException e) {
+                System.err.printf("Can't write the checkpoint: %s%n", e);
+            }
+            if (step.loops() < ITERATIONS) {
+                System.out.printf("Stopped before the end, continue with --resume %s%n", checkpointPath);
+            }
+        }
+        if (REPLICAS > 1) {
+            System.out.printf("Standard error: %1.10f from %d replicas%n", step.standardError(FACTOR),
+                    REPLICAS);
+        }
+        if (PRECISION != Precision.DOUBLE) {
+            printBias();
+        }
+        if (COMPONENTS != null) {
+            printComponents();
+        }
+        if (ESTIMATOR != Estimator.HIT_OR_MISS) {
+            System.out.printf("Estimator: %s with a standard error of %1.10f, each iteration worth %.2f of hit-or-miss%n",
+                    ESTIMATOR, step.standardError(FACTOR), ((ReducedStep) step).gain());
+        }
+        if (convergence != null) {
+            double halfWidth = convergence.halfWidth(step, FACTOR);
+            System.out.printf("%s: %s = %1.10f +/- %1.10f at %.3g%% confidence%n",
+                    converged || convergence.isReached(step, FACTOR, OFFSET) ? "Converged" : "Not converged",
+                    algoName, area, halfWidth, convergence.getConfidence() * 100);
+        }
+        if (log != null) {
+            try {
+                log.close(record("final", start, step));
+            } catch (IOException e) {
+                System.err.printf("Can't write the log: %s%n", e);
+            }
+            if (log.dropped() > 0) {
+                System.out.printf("%d records dropped from the log, the disk was too slow%n", log.dropped());
+            }
+        }
+    }
 
-        long end = System.currentTimeMillis();
+    /**
+     * @return a record of the log for a snapshot
+     */
+    private static ConvergenceLog.Record record(String type, long start, Step step) {
+        ConvergenceLog.Record record = new ConvergenceLog.Record();
+        record.type = type;
+        record.timestamp = System.currentTimeMillis();
+        record.elapsed = System.nanoTime() - start;
+        record.samples = step.loops();
+        record.estimate = OFFSET + step.calculate(FACTOR);
+        record.standardError = step.standardError(FACTOR);
+        if (coordinator != null) {
+            record.workerSamples = new long[0];
+            record.deaths = coordinator.deaths();
+        } else {
+            record.workerSamples = monitor.workerSamples(step);
+            record.retries = aggregator.retries();
+        }
+        return record;
+    }
 
-        Step step = stepRef.get();
-        double area = step.calculate(calculator.getFactor());
-        System.out.printf("Final: %s = %1.10f with %d iterations and %d concurrent writes in %d seconds%n", algoName, area,
-                step.loops(), concurrencyCount.get(), (end - start) / 1000);
+    /**
+     * The sequences only depend on the seed, and the pseudo-random ones restart from it at each checkpoint. So a run with
+     * a given seed finds the same result whatever the number of threads, provided it is not stopped before the end
+     */
+    static PointGenerator[] generators(String sampling, int replicas, String rng, long seed) {
+        RandomGenerator rand = RandomGeneratorFactory.of(rng).create(seed);
+        PointGenerator[] generators = new PointGenerator[replicas];
+        for (int i = 0; i < replicas; i++) {
+            switch (sampling) {
+            case "random":
+                generators[i] = new RandomPointGenerator(rng, rand.nextLong());
+                break;
+            case "halton":
+                generators[i] = new HaltonPointGenerator(rand);
+                break;
+            case "sobol":
+                generators[i] = new SobolPointGenerator(rand);
+                break;
+            default:
+                usage("Unknown sampling. Should be random, halton or sobol");
+                return null;
+            }
+        }
+        return generators;
     }
 
-    private static void sequential(MonteCarloCalculator calculator) {
+    private static Map<String, String> options(String[] args, int from) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = from; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                usage("Invalid option: " + args[i]);
+                return null;
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
 
-        // Validate we have suitable parameters
-        // We want to reach a checkpoint on the last iteration to get the final result. This is just to simplify the code
-        if (ITERATIONS % CHECKPOINT != 0) {
-            usage(String.format("Number of iterations should be perfectly divided by %d", CHECKPOINT));
+    /**
+     * Wait for the threads to finish, the timeout or the target precision, whichever happens first
+     */
+    private static void await(ChunkScheduler scheduler) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        if (convergence == null) {
+            latch.await(TIMEOUT, TimeUnit.SECONDS);
             return;
         }
-        
-        stepRef.set(new Step(1));
-        // The sequential process is started with an ExecutorService to allow us to have a timeout
-        ExecutorService service = Executors.newSingleThreadExecutor();
-        MonteCarloCmd cmd = new MonteCarloCmd(calculator, ITERATIONS);
-        latch = new CountDownLatch(1);
-        service.execute(cmd);
+        while (!latch.await(CONVERGENCE_CHECK, TimeUnit.MILLISECONDS)) {
+            long now = System.currentTimeMillis();
+            if (now >= deadline) {
+                return;
+            }
+            if (convergence.isReached(snapshot(), FACTOR, OFFSET)) {
+                // The threads leave at their next checkpoint
+                converged = true;
+                scheduler.stop();
+                if (coordinator != null) {
+                    coordinator.stopped();
+                }
+                latch.await(deadline - now, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the listener of the local threads, giving their counts to the aggregators
+     */
+    private static MonteCarloListener listener() {
+        return new MonteCarloMultiListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                long start = System.nanoTime();
+                // The calculators work by batch of CHECKPOINT iterations so each call is a checkpoint
+                // Each thread has its own slot so there is nothing to retry or allocate
+                aggregator.update(index, p, n);
+                monitor.listener(index, System.nanoTime() - start);
+            }
+
+            @Override
+            public void onValues(int index, long[] p, long[] d, long n) {
+                long start = System.nanoTime();
+                aggregator.update(index, p[0], n);
+                for (int k = 1; k < p.length; k++) {
+                    componentCounts[k].update(index, p[k], n);
+                    disagreements[k].update(index, d[k], n);
+                }
+                monitor.listener(index, System.nanoTime() - start);
+            }
+
+        };
+    }
+
+    /**
+     * Run the workers, each one with its slots in the aggregator
+     */
+    private static void execute(String algoName, CalculatorFactory factory, MonteCarloListener listener, int threads,
+            ExecutionBackend backend) {
+
+        ExecutorService service = backend.create(threads);
+
+        // The threads claim chunks of iterations until there is none left, so a slow one doesn't hold back the others
+        ChunkScheduler scheduler = resumed == null ? new ChunkScheduler(ITERATIONS, threads, CHECKPOINT)
+                : new ChunkScheduler(ITERATIONS, threads, CHECKPOINT, Math.min(resumed.frontier(), ITERATIONS),
+                        resumed.holes(ITERATIONS));
+        // The last slot of each replica has the counts of the resumed run
+        aggregator = new StepAggregator((threads + 1) * REPLICAS, REPLICAS);
+        long resumedLoops = 0;
+        if (resumed != null) {
+            for (int replica = 0; replica < REPLICAS; replica++) {
+                aggregator.update(replica * (threads + 1) + threads, resumed.p[replica], resumed.n[replica]);
+                resumedLoops += resumed.n[replica];
+            }
+        }
+        if (COMPONENTS != null) {
+            componentCounts = new StepAggregator[COMPONENTS.length];
+            disagreements = new StepAggregator[COMPONENTS.length];
+            componentCounts[0] = aggregator;
+            for (int k = 1; k < COMPONENTS.length; k++) {
+                componentCounts[k] = new StepAggregator(aggregator.length(), REPLICAS);
+                disagreements[k] = new StepAggregator(aggregator.length(), REPLICAS);
+            }
+        }
+        // The same counts as the console, so the estimate and the error are the ones of the estimator
+        monitor = new RunMonitor(aggregator, new Supplier<Step>() {
+            @Override
+            public Step get() {
+                return snapshot();
+            }
+        }, algoName, ITERATIONS, threads, FACTOR, OFFSET, resumedLoops);
+        monitor.register();
+        latch = new CountDownLatch(threads);
+        workers = new MonteCarloCmd[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = worker(factory, listener, i, threads, scheduler);
+            service.execute(workers[i]);
+        }
         try {
-            latch.await(TIMEOUT, TimeUnit.SECONDS);
+            await(scheduler);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
             service.shutdownNow();
+            try {
+                // After a timeout or the convergence, the threads stop at their next batch. The counters of their
+                // calculators, like the shadow points, are plain fields only read once they are done
+                if (!service.awaitTermination(WORKERS_TERMINATION, TimeUnit.SECONDS)) {
+                    System.err.println("The threads didn't stop, the final counts may be incomplete");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            monitor.unregister();
         }
     }
 
-    private static void parallel(Constructor<MonteCarloCalculator> constructor, MonteCarloListener listener) {
-        
-        int p = Runtime.getRuntime().availableProcessors();
+    /**
+     * Run all the iterations of a cell of a {@link Sweep} locally, with a single replica and without any output. A
+     * snapshot is taken at each interval like the feedback does, so the aggregation has the same contention as in a
+     * real run
+     *
+     * @throws IllegalArgumentException
+     *             if the backend can't run here
+     */
+    static void measure(Sweep.Cell cell, CalculatorFactory factory, ExecutionBackend backend, long seed,
+            long snapshotMillis) {
+        MonteCarloCalculator calculator = factory.create(0);
+        ITERATIONS = cell.iterations;
+        TIMEOUT = TimeUnit.DAYS.toSeconds(1);
+        FACTOR = calculator.getFactor();
+        OFFSET = calculator.getOffset();
+        generators = generators("random", REPLICAS, RandomPointGenerator.DEFAULT_ALGORITHM, seed);
+        // The previous cell is over, its aggregator isn't read anymore
+        monitor = null;
+
+        TimerTask snapshots = new TimerTask() {
 
-        // Validate we have suitable parameters
-        // We want the same amount of iterations on each processor. This is just to simplify the code
-        if (ITERATIONS % p != 0) {
-            usage(String.format("Number of iterations should be perfectly divided by the number of processors (%d)",
-                    p));
-            return;
+            @Override
+            public void run() {
+                if (monitor != null) {
+                    aggregator.snapshot();
+                }
+            }
+        };
+        Timer timer = new Timer("sweep snapshots", true);
+        timer.scheduleAtFixedRate(snapshots, snapshotMillis, snapshotMillis);
+        long startCpu = processCpuTime();
+        long start = System.nanoTime();
+        try {
+            execute(cell.algorithm, factory, listener(), cell.threads, backend);
+        } finally {
+            timer.cancel();
+        }
+        long end = System.nanoTime();
+        long endCpu = processCpuTime();
+
+        Step step = aggregator.snapshot();
+        cell.loops = step.loops();
+        cell.seconds = (end - start) / 1e9;
+        cell.cores = startCpu < 0 ? Double.NaN : (endCpu - startCpu) / 1e9 / cell.seconds;
+        cell.estimate = OFFSET + step.calculate(FACTOR);
+        cell.retries = aggregator.retries();
+        cell.calculationNanos = monitor.getCalculationNanos();
+        cell.listenerNanos = monitor.getListenerNanos();
+    }
+
+    /**
+     * Wait for the remote workers to do all the iterations, or for the timeout or the target precision
+     */
+    private static void coordinate() {
+        coordinator.start();
+        latch = coordinator.getDone();
+        try {
+            await(coordinator.getScheduler());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            coordinator.close();
         }
+    }
 
-        // We want to reach a checkpoint on the last iteration to get the final result. This is just to simplify the code
-        if ((ITERATIONS / p) % CHECKPOINT != 0) {
-            usage(String.format("Number of iterations per processors (%d) should be perfectly divided by %d",
-                    p, CHECKPOINT));
+    /**
+     * <code>MonteCarloCmd worker host port [--threads count]</code>: connect to a coordinator and work until it has
+     * nothing left. Each thread is a worker with its own connection
+     */
+    private static void remoteWorkers(String[] args) {
+        if (args.length < 3) {
+            usage("Missing parameters");
             return;
         }
-        
-        ForkJoinPool pool = new ForkJoinPool(p);
-        
-        long iterationsPerThread = ITERATIONS / p;
-        stepRef.set(new Step(p));
-        latch = new CountDownLatch(p);
-        for (int i = 0; i < p; i++) {
-            MonteCarloCalculator calculator = instantiateAlgorithm(constructor, i);
-            calculator.setListener(listener);
-            pool.execute(new MonteCarloCmd(calculator, iterationsPerThread));
+        String host = args[1];
+        int port = Integer.parseInt(args[2]);
+        Map<String, String> options = options(args, 3);
+        int threads = options.containsKey("threads") ? Integer.parseInt(options.get("threads"))
+                : Runtime.getRuntime().availableProcessors();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new RemoteWorker(host, port, CHECKPOINT), "worker " + i);
+            workers[i].start();
         }
         try {
-            latch.await(TIMEOUT, TimeUnit.SECONDS);
+            for (Thread worker : workers) {
+                worker.join();
+            }
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
-        } finally {
-            pool.shutdownNow();
         }
     }
 
-    @SuppressWarnings("unchecked")
-    protected static Constructor<MonteCarloCalculator> retrieveAlgorithm(String prefix) {
-        String algo = MonteCarloGui.class.getPackage().getName() + "." + prefix + "MonteCarlo";
-        Class<MonteCarloCalculator> algoClass;
-        try {
-            algoClass = (Class<MonteCarloCalculator>) Class.forName(algo);
-        } catch (ClassNotFoundException e) {
-            usage("Algorithm doesn't exist: " + algo);
-            return null;
+    /**
+     * @return counts of all the threads, or of all the remote workers
+     */
+    private static Step snapshot() {
+        if (coordinator != null) {
+            return coordinator.snapshot();
         }
-        try {
-            return algoClass.getConstructor(Integer.TYPE);
-        } catch (NoSuchMethodException e) {
-            usage("Constructor taking 'int' in parameter required for : " + algo);
-            return null;
+        if (ESTIMATOR != Estimator.HIT_OR_MISS) {
+            return new ReducedStep(ESTIMATOR, aggregator.snapshot(), componentCounts[1].snapshot(),
+                    disagreements[1].snapshot(), CONTROL);
+        }
+        return aggregator.snapshot();
+    }
+
+    /**
+     * @return CPU time used by the process in ns, -1 if the JVM doesn't tell
+     */
+    private static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
         }
+        return -1;
     }
 
-    protected static MonteCarloCalculator instantiateAlgorithm(Constructor<MonteCarloCalculator> cons, int index) {
+    /**
+     * Create a thread with a calculator for each replica. The slot of a calculator in the aggregator is
+     * <code>replica * (threads + 1) + index</code> so the slots of a replica are contiguous
+     */
+    private static MonteCarloCmd worker(CalculatorFactory factory, MonteCarloListener listener,
+            int index, int threads, ChunkScheduler scheduler) {
+        MonteCarloCalculator[] calculators = new MonteCarloCalculator[REPLICAS];
+        int[] slots = new int[REPLICAS];
+        for (int replica = 0; replica < REPLICAS; replica++) {
+            slots[replica] = replica * (threads + 1) + index;
+            calculators[replica] = factory.create(slots[replica]);
+            calculators[replica].setListener(listener);
+            calculators[replica].setPointGenerator(generators[replica].copy());
+            calculators[replica].setPrecision(PRECISION);
+        }
+        return new MonteCarloCmd(calculators, scheduler, index, slots);
+    }
+
+    /**
+     * Print the bias of the precision against double, from the points of all the calculators that were also evaluated
+     * in double. Each of these points gives a difference of -1, 0 or 1 between both decisions
+     */
+    private static void printBias() {
+        long points = 0, difference = 0, disagreements = 0;
+        for (MonteCarloCmd worker : workers) {
+            for (MonteCarloCalculator calculator : worker.calculators) {
+                points += calculator.getShadowPoints();
+                difference += calculator.getShadowDifference();
+                disagreements += calculator.getShadowDisagreements();
+            }
+        }
+        double mean = difference / (double) points;
+        double error = Math.sqrt((disagreements / (double) points - mean * mean) / points);
+        System.out.printf("Precision: %s with a bias of %1.10f +/- %1.10f from %d points also in double, %d decided"
+                + " differently%n", PRECISION, FACTOR * mean, FACTOR * error, points, disagreements);
+    }
+
+    /**
+     * Print the estimate of each calculator of a composite and its difference with the first one. The points are the
+     * same, so the difference only varies with the points where both disagree, each one giving -1 or 1. Its error is
+     * compared to the one of two independent runs of the same length, the sum of the variances of both estimates
+     */
+    private static void printComponents() {
+        // The slots are written by the threads, only their snapshots can be read from here
+        long n = aggregator.snapshot().loops();
+        long[] p = new long[COMPONENTS.length];
+        long[] d = new long[COMPONENTS.length];
+        for (int k = 0; k < COMPONENTS.length; k++) {
+            p[k] = sum(componentCounts[k].snapshot().pList);
+            if (k > 0) {
+                d[k] = sum(disagreements[k].snapshot().pList);
+            }
+        }
+        double[] error = new double[COMPONENTS.length];
+        for (int k = 0; k < COMPONENTS.length; k++) {
+            double q = p[k] / (double) n;
+            error[k] = FACTOR * Math.sqrt(q * (1 - q) / n);
+            System.out.printf("Component: %s = %1.10f +/- %1.10f%n", COMPONENTS[k], FACTOR * q, error[k]);
+        }
+        for (int k = 1; k < COMPONENTS.length; k++) {
+            double mean = (p[k] - p[0]) / (double) n;
+            double paired = FACTOR * Math.sqrt((d[k] / (double) n - mean * mean) / n);
+            double independent = Math.sqrt(error[0] * error[0] + error[k] * error[k]);
+            System.out.printf("Difference: %s - %s = %1.10f +/- %1.10f from %d points decided differently, +/- %1.10f"
+                    + " with independent points%n", COMPONENTS[k], COMPONENTS[0], FACTOR * mean, paired, d[k],
+                    independent);
+        }
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /**
+     * Sample only the boundary of the shape. The stratification is done once and shared by all the calculators
+     */
+    static CalculatorFactory stratified(final CalculatorFactory factory, int grid, int depth) {
+        final Stratification stratification = new Stratification(factory.create(0), grid, depth);
+        System.out.printf("Stratification: %d boundary cells of %1.10f, interior area %1.10f%n",
+                stratification.getCells(), stratification.getBoundaryArea(), stratification.getInteriorArea());
+        return new CalculatorFactory() {
+            @Override
+            public MonteCarloCalculator create(int index) {
+                return new StratifiedMonteCarlo(index, factory.create(index), stratification);
+            }
+        };
+    }
+
+    /**
+     * @return the calculators of a <code>*MonteCarlo</code> class, or of a {@link Shape} found by the ServiceLoader
+     */
+    protected static CalculatorFactory retrieveAlgorithm(String prefix) {
         try {
-            return cons.newInstance(index);
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException(e);
+            return Algorithms.retrieve(prefix);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return null;
         }
     }
 
+    protected static MonteCarloCalculator instantiateAlgorithm(CalculatorFactory factory, int index) {
+        return factory.create(index);
+    }
+
     protected static void usage(String message) {
-        System.err.printf("%s%n%nUsage: MonteCarloCmd Batman|Pi sequential|parallel loop timeout%n", message);
+        System.err.printf("%s%n%nUsage: MonteCarloCmd Batman|FastBatman|Pi|<shape>[+...] sequential|parallel|stratified|coordinator"
+                + " loop timeout"
+                + " [--abs-error error|--rel-error error] [--confidence level] [--sampling random|halton|sobol]"
+                + " [--replicas count] [--seed seed] [--rng algorithm] [--grid cells] [--depth splits]"
+                + " [--threads count] [--backend forkjoin|fixed|virtual] [--port port] [--workers count]"
+                + " [--checkpoint file|--resume file] [--precision double|float|fixed] [--log file]"
+                + " [--log-format csv|json] [--feedback-ms ms] [--estimator hit-or-miss|antithetic|control]%n"
+                + "   or: MonteCarloCmd worker host port [--threads count]%n"
+                + "   or: MonteCarloCmd sweep [--algorithms Batman,Pi] [--types sequential,parallel,stratified]"
+                + " [--threads 1,2,4] [--iterations 10000000,...] [--scaling strong,weak] [--warmup iterations]"
+                + " [--runs count] [--backend forkjoin|fixed] [--seed seed] [--snapshot-ms ms]"
+                + " [--output file]%n", message);
         System.exit(1);
         return;
     }
 
     @Override
     public void run() {
-        for (int i = 0; i < iterations; i++) {
-            calculator.calculate();
-            // Check if we are interrupted but don't do it too often to prevent slowing down the process
-            if(i % CHECKPOINT == 0 && Thread.currentThread().isInterrupted()) {
-                break;
+        ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+        long[] p = new long[REPLICAS];
+        long[] n = new long[REPLICAS];
+        work: while (checkpoint == null ? scheduler.claim(chunk) : checkpoint.claim(index, scheduler, chunk, p, n)) {
+            for (long i = chunk.start; i < chunk.end; i += CHECKPOINT) {
+                // The checkpoints are dealt to the replicas in turn so they all progress together. Each replica
+                // goes through its sequence without gap, the threads working on disjoint segments of it
+                long block = i / CHECKPOINT;
+                MonteCarloCalculator calculator = calculators[(int) (block % REPLICAS)];
+                calculator.getPointGenerator().skipTo(block / REPLICAS * CHECKPOINT);
+                // The last batch is shorter when the iterations are not a multiple of the checkpoint
+                long start = System.nanoTime();
+                calculator.calculateBatch(Math.min(CHECKPOINT, chunk.end - i));
+                long end = System.nanoTime();
+                monitor.batch(index, end - start, end);
+                if (checkpoint != null) {
+                    save(chunk, Math.min(i + CHECKPOINT, chunk.end), p, n);
+                }
+                // Check if we are interrupted or converged but don't do it too often to prevent slowing down the process
+                if (Thread.currentThread().isInterrupted() || scheduler.isStopped()) {
+                    break work;
+                }
+            }
+            if (checkpoint != null) {
+                checkpoint.finished(chunk);
             }
         }
         latch.countDown();
     }
+
+    /**
+     * Write the counts of the calculators of this thread in the checkpoint
+     */
+    private void save(ChunkScheduler.Chunk chunk, long position, long[] p, long[] n) {
+        for (int replica = 0; replica < REPLICAS; replica++) {
+            p[replica] = aggregator.getP(slots[replica]);
+            n[replica] = aggregator.getN(slots[replica]);
+        }
+        checkpoint.write(index, chunk, position, p, n);
+    }
 }
\ No newline at end of file
@@ -1,17 +1,15 @@
 package com.octo.montecarlo;
 
 import java.awt.BorderLayout;
-import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
-import java.lang.reflect.Constructor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -24,57 +22,67 @@ public class MonteCarloGui implements Runnable {
 
     private static final Dimension SCREEN_DIMENSION = Toolkit.getDefaultToolkit().getScreenSize();
 
-    private static final int SLEEP = 10;
+    /** Only there to let the screen follow, plotting a point is a store in the image */
+    private static final int SLEEP = 1;
+
+    /** Number of points calculated between two sleeps */
+    private static final int BATCH = 10_000;
+
+    /** Points of each producer waiting for the renderer, about a frame of a fast producer */
+    private static final int RING = 1 << 18;
 
     private MonteCarloCalculator calculator;
 
+    /** Pause between two batches, in ms */
+    private final int sleep;
+
     private static volatile boolean paused = false;
 
     private static Object mutex = new Object();
 
     public MonteCarloGui(MonteCarloCalculator calculator) {
+        this(calculator, SLEEP);
+    }
+
+    private MonteCarloGui(MonteCarloCalculator calculator, int sleep) {
         this.calculator = calculator;
+        this.sleep = sleep;
     }
 
     public static void main(String[] args) {
 
-        if (args.length != 1) {
+        if (args.length != 1 && args.length != 2) {
             usage("Algoritm not provided");
             return;
         }
+        // 0 for the original mode, a single calculator plotting its own points
+        final int threads = args.length == 2 ? Integer.parseInt(args[1]) : 0;
+        if (threads < 0) {
+            usage("The number of threads should be positive: " + threads);
+            return;
+        }
 
         final String algoName = args[0];
-        final Constructor<MonteCarloCalculator> constructor = retrieveAlgorithm(algoName);
+        final CalculatorFactory factory = retrieveAlgorithm(algoName);
         // This instance is only used to get the variables specific to this calculator
-        final MonteCarloCalculator calculator = instantiateAlgorithm(constructor, Integer.MIN_VALUE);
+        final MonteCarloCalculator calculator = factory.create(Integer.MIN_VALUE);
 
         final AtomicReference<Double> val = new AtomicReference<>(0.0);
         final AtomicLong l = new AtomicLong(0);
 
-        final BufferedImage image = new BufferedImage(calculator.getWindowDimension().width,
-                calculator.getWindowDimension().height, BufferedImage.TYPE_INT_RGB);
-        Graphics g = image.createGraphics();
-        g.setColor(Color.BLACK);
-        g.fillRect(0, 0, calculator.getWindowDimension().width, calculator.getWindowDimension().height);
-        g.dispose();
+        final PointRaster raster = new PointRaster(calculator);
+        final BufferedImage image = raster.getImage();
 
-        MonteCarloListener listener = new MonteCarloListener() {
+        MonteCarloPointListener listener = new MonteCarloPointListener() {
+
+            @Override
+            public void onPoints(double[] x, double[] y, boolean[] good, int length) {
+                raster.plot(x, y, good, length);
+            }
 
             @Override
             public void onPoint(double x, double y, boolean good) {
-                int dotX = (int) (x * calculator.getWindowDimension().width / 2.0 / calculator.getPositiveRange().width + calculator
-                        .getPositionOffset().width);
-                int dotY = (int) (y * calculator.getWindowDimension().height / 2.0 / calculator.getPositiveRange().height + calculator
-                        .getPositionOffset().height);
-
-                // Now the image is upside down, so reverse it
-                dotX = calculator.getWindowDimension().width - dotX;
-                dotY = calculator.getWindowDimension().height - dotY;
-
-                Graphics2D g = image.createGraphics();
-                g.setColor(good ? Color.BLUE : Color.YELLOW);
-                g.drawLine(dotX, dotY, dotX, dotY);
-                g.dispose();
+                raster.plot(x, y, good);
             }
 
             @Override
@@ -84,7 +92,15 @@ public class MonteCarloGui implements Runnable {
             }
 
         };
-        calculator.setListener(listener);
+        final StepAggregator aggregator = threads > 0 ? new StepAggregator(threads) : null;
+        if (aggregator == null) {
+            calculator.setListener(listener);
+        }
+        // One per producer, none when sequential
+        final PointRing[] rings = new PointRing[threads];
+        for (int i = 0; i < threads; i++) {
+            rings[i] = new PointRing(RING);
+        }
 
         JFrame frame = new JFrame("Monte Carlo");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -101,25 +117,16 @@ public class MonteCarloGui implements Runnable {
                         }
                     }
                 } else if (e.getKeyChar() == 'c') {
-                    check(image);
+                    check();
                 }
             }
 
-            private void check(BufferedImage image) {
-                int total = image.getHeight() * image.getWidth();
-                int black = 0, blue = 0;
-                for (int i = 0; i < image.getHeight(); i++) {
-                    for (int j = 0; j < image.getWidth(); j++) {
-                        int rgb = image.getRGB(j, i);
-                        if (rgb == Color.BLACK.getRGB()) {
-                            black++;
-                        } else if (rgb == Color.BLUE.getRGB()) {
-                            blue++;
-                        }
-                    }
-                }
-                System.out.println("Percentage of black: " + ((double) black / (double) total));
-                System.out.println("Percentage of blue: " + ((double) blue / (double) total));
+            private void check() {
+                int total = raster.size();
+                System.out.println("Percentage of black: " + ((double) raster.getBackground() / total));
+                System.out.println("Percentage of blue: " + ((double) raster.getGood() / total));
+                System.out.println("Percentage of yellow: " + ((double) raster.getBad() / total));
+                System.out.println("Area from the pixels: " + raster.area());
             }
         });
 
@@ -147,55 +154,134 @@ public class MonteCarloGui implements Runnable {
         frame.setVisible(true);
 
         ActionListener taskPerformer = new ActionListener() {
+
+            /** Iterations and time of the previous tick, for the speed */
+            private long loops, time = System.nanoTime();
+
             @Override
             public void actionPerformed(ActionEvent evt) {
-                fld.setText(String.format("%s = %1.10f on iteration %d", algoName, val.get(), l.get()));
-                panel.repaint();
+                String text;
+                if (aggregator == null) {
+                    text = String.format("%s = %1.10f on iteration %d", algoName, val.get(), l.get());
+                } else {
+                    Step step = aggregator.snapshot();
+                    long now = System.nanoTime();
+                    // Points a producer couldn't publish because the renderer was behind: counted, not drawn
+                    long dropped = 0;
+                    for (PointRing ring : rings) {
+                        dropped += ring.dropped();
+                    }
+                    text = String.format("%s = %1.10f on iteration %d with %d threads, %.0f iterations/s,"
+                            + " %d points not drawn", algoName,
+                            calculator.getOffset() + step.calculate(calculator.getFactor()), step.loops(), threads,
+                            (step.loops() - loops) * 1e9 / (now - time), dropped);
+                    loops = step.loops();
+                    time = now;
+                }
+                // Counted while plotting, nothing to read in the image
+                double total = raster.size();
+                fld.setText(String.format("%s - black %.1f%%, blue %.1f%%, yellow %.1f%%, %1.4f from the pixels", text,
+                        100 * raster.getBackground() / total, 100 * raster.getGood() / total,
+                        100 * raster.getBad() / total, raster.area()));
+                // Swing clips the painting to the area, so the rest of the image isn't copied again
+                Rectangle dirty = raster.dirty();
+                if (dirty != null) {
+                    panel.repaint(dirty);
+                }
             }
         };
         Timer timer = new Timer(20, taskPerformer);
         timer.setCoalesce(true);
         timer.start();
 
+        if (aggregator != null) {
+            parallel(factory, raster, aggregator, rings);
+            return;
+        }
         MonteCarloGui m = new MonteCarloGui(calculator);
         m.run();
     }
 
-    @SuppressWarnings("unchecked")
-    private static Constructor<MonteCarloCalculator> retrieveAlgorithm(String prefix) {
-        String algo = MonteCarloGui.class.getPackage().getName() + "." + prefix + "MonteCarlo";
-        Class<MonteCarloCalculator> algoClass;
-        try {
-            algoClass = (Class<MonteCarloCalculator>) Class.forName(algo);
-        } catch (ClassNotFoundException e) {
-            usage("Algorithm doesn't exist: " + algo);
-            return null;
+    /**
+     * Start the producers, each one a calculator running flat out and publishing the pixels of its points in its own
+     * {@link PointRing}, and a renderer draining the rings into the image. The counts go to the slots of the aggregator
+     */
+    private static void parallel(CalculatorFactory factory, final PointRaster raster,
+            final StepAggregator aggregator, final PointRing[] rings) {
+        for (int i = 0; i < rings.length; i++) {
+            final PointRing ring = rings[i];
+            MonteCarloCalculator producer = factory.create(i);
+            producer.setListener(new MonteCarloPointListener() {
+
+                /** Pixels of the batch, only used by the producer */
+                private int[] points = new int[0];
+
+                @Override
+                public void onPoints(double[] x, double[] y, boolean[] good, int length) {
+                    if (points.length < length) {
+                        points = new int[length];
+                    }
+                    for (int j = 0; j < length; j++) {
+                        points[j] = raster.encode(x[j], y[j], good[j]);
+                    }
+                    ring.offer(points, length);
+                }
+
+                @Override
+                public void onPoint(double x, double y, boolean good) {
+                    ring.offer(new int[] { raster.encode(x, y, good) }, 1);
+                }
+
+                @Override
+                public void onValue(int index, long p, long n) {
+                    aggregator.update(index, p, n);
+                }
+            });
+            new Thread(new MonteCarloGui(producer, 0), "producer " + i).start();
         }
-        try {
-			return algoClass.getConstructor(Integer.TYPE);
-		} catch (NoSuchMethodException e) {
-            usage("Constructor taking 'int' in parameter required for : " + algo);
-            return null;
-		}
+
+        Thread renderer = new Thread("renderer") {
+            @Override
+            public void run() {
+                int[] points = new int[RING];
+                while (true) {
+                    int drained = 0;
+                    for (PointRing ring : rings) {
+                        int count = ring.drain(points);
+                        raster.plot(points, count);
+                        drained += count;
+                    }
+                    if (drained == 0) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+            }
+        };
+        renderer.setDaemon(true);
+        renderer.start();
     }
 
-    private static MonteCarloCalculator instantiateAlgorithm(Constructor<MonteCarloCalculator> cons, int index) {
-    	try {
-            return cons.newInstance(index);
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException(e);
+    private static CalculatorFactory retrieveAlgorithm(String prefix) {
+        try {
+            return Algorithms.retrieve(prefix);
+        } catch (IllegalArgumentException e) {
+            usage(e.getMessage());
+            return null;
         }
     }
 
     private static void usage(String message) {
-        System.err.printf("%s%n%nUsage: MonteCarloGui Batman|Pi%n", message);
+        System.err.printf("%s%n%nUsage: MonteCarloGui Batman|Pi|<shape> [threads]%n", message);
         System.exit(1);
         return;
     }
 
     @Override
     public void run() {
-        int i = 0;
         while (true) {
             if (paused) {
                 try {
@@ -206,16 +292,15 @@ public class MonteCarloGui implements Runnable {
                     break;
                 }
             }
-            calculator.calculate();
-            if (SLEEP == 0 || ++i != 100) {
+            calculator.calculateBatch(BATCH);
+            if (sleep == 0) {
                 continue;
             }
             try {
-                Thread.sleep(SLEEP);
+                Thread.sleep(sleep);
             } catch (InterruptedException e) {
                 break;
             }
-            i = 0;
         }
     }
 }
@@ -0,0 +1,16 @@
+package com.octo.montecarlo;
+
+/**
+ * Listener interested in all the estimates of a {@link CompositeMonteCarlo}. The other listeners only get the first one.
+ */
+public interface MonteCarloMultiListener extends MonteCarloListener {
+
+	/**
+	 * Call for each new calculated value, instead of {@link #onValue(int, long, long)}
+	 * @param index the index of the caller
+	 * @param p number of good points of each function. The array is reused by the calculator once the call returns
+	 * @param d number of points where each function and the first one disagree, 0 for the first one. Reused too
+	 * @param n total number of point, the same for all the functions
+	 */
+	void onValues(int index, long[] p, long[] d, long n);
+}
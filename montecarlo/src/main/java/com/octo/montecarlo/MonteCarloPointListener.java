@@ -0,0 +1,17 @@
+package com.octo.montecarlo;
+
+/**
+ * Listener interested in the sampled points. The calculators only record the points of a batch when their listener
+ * implements this interface.
+ */
+public interface MonteCarloPointListener extends MonteCarloListener {
+
+	/**
+	 * Called with the points of a batch. The arrays are reused by the calculator once the call returns
+	 * @param x x coordinates
+	 * @param y y coordinates
+	 * @param good if each point is in the function
+	 * @param length number of points set in the arrays
+	 */
+	void onPoints(double[] x, double[] y, boolean[] good, int length);
+}
@@ -0,0 +1,64 @@
+package com.octo.montecarlo;
+
+/**
+ * Live metrics of a local run of {@link MonteCarloCmd}, registered as <code>com.octo.montecarlo:type=MonteCarloRun</code>.
+ * The counts are totals since the start, so a monitoring system gets the rates from two reads.
+ */
+public interface MonteCarloRunMXBean {
+
+    String getAlgorithm();
+
+    /**
+     * @return iterations of the whole run
+     */
+    long getIterations();
+
+    int getThreads();
+
+    /**
+     * @return iterations done, with the ones of the resumed run
+     */
+    long getSamples();
+
+    /**
+     * @return iterations done by each thread in this run
+     */
+    long[] getWorkerSamples();
+
+    /**
+     * @return milliseconds since the last batch of each thread. Grows for a stalled thread, and for a finished one
+     */
+    long[] getWorkerIdleMillis();
+
+    /**
+     * @return iterations per second of this run since its start
+     */
+    double getRate();
+
+    /**
+     * @return reads of the aggregator retried because a thread was writing its slot
+     */
+    long getRetries();
+
+    /**
+     * @return nanoseconds spent by all the threads drawing and evaluating the points, without the listener
+     */
+    long getCalculationNanos();
+
+    /**
+     * @return nanoseconds spent by all the threads in the listener, publishing their counts
+     */
+    long getListenerNanos();
+
+    double getEstimate();
+
+    /**
+     * @return standard error of the estimate, of the replicas when there are several
+     */
+    double getStandardError();
+
+    /**
+     * @return seconds left to do all the iterations at the current rate, NaN before the first batch
+     */
+    double getEtaSeconds();
+}
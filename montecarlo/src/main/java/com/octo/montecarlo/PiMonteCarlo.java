@@ -1,7 +1,6 @@
 package com.octo.montecarlo;
 
 import java.awt.Dimension;
-import java.util.Random;
 
 public class PiMonteCarlo extends MonteCarloCalculator {
 
@@ -11,30 +10,49 @@ public class PiMonteCarlo extends MonteCarloCalculator {
 
     private static final Dimension POSITION_OFFSET = new Dimension(200, 200);
 
-	private long n = 0;
-	private long p = 0;
+    /**
+     * Cells of the grid of the fixed precision along a side. A point is moved to the centre of its cell, which is
+     * <code>(2 * cell + 1 - FIXED_CELLS) / FIXED_CELLS</code>, so the squares of the numerators are below 2^61 and the
+     * test is exact
+     */
+    private static final long FIXED_CELLS = 1L << 30;
 
-	private Random rand = new Random();
+	protected long n = 0;
+	protected long p = 0;
 
     public PiMonteCarlo(int index) {
     	super(index);
+    	setPointGenerator(new RandomPointGenerator());
     }
 
 	public PiMonteCarlo(int index, MonteCarloListener listener) {
 		super(index, listener);
+		setPointGenerator(new RandomPointGenerator());
 	}
 
 	@Override
     public void calculate() {
         // random position in the circle of radius 1 centered at the origin
-        double x = rand.nextDouble() * 2.0 - 1.0;
-        double y = rand.nextDouble() * 2.0 - 1.0;
+        double x;
+        double y;
+        boolean good;
+        if (reduced == null) {
+            nextPoints(1);
+            x = uBuffer[0] * 2.0 - 1.0;
+            y = vBuffer[0] * 2.0 - 1.0;
+            // Check if we are in the circle using Pythagore
+            good = f(x, y);
+        } else {
+            nextBits(1);
+            x = u(bitsBuffer[0]) * 2.0 - 1.0;
+            y = v(bitsBuffer[0]) * 2.0 - 1.0;
+            good = reduced.f(bitsBuffer[0]);
+            shadow(1);
+        }
 
 		// one more iteration
 		n++;
 
-		// Check if we are in the circle using Pythagore
-        boolean good = (x * x + y * y <= 1.0);
 		if (good) {
 			// in the circle
 			p++;
@@ -49,6 +67,95 @@ public class PiMonteCarlo extends MonteCarloCalculator {
         listener.onValue(index, p, n);
 	}
 
+    @Override
+    public void calculateBatch(long count) {
+        // Counting in locals and telling the listener once is a lot cheaper than two listener calls per point
+        long p = this.p;
+        MonteCarloPointListener points = pointListener;
+        ReducedFunction reduced = this.reduced;
+        int length = 0;
+        for (long done = 0; done < count; done += GENERATOR_BUFFER) {
+            int drawn = (int) Math.min(GENERATOR_BUFFER, count - done);
+            if (reduced == null) {
+                nextPoints(drawn);
+                for (int i = 0; i < drawn; i++) {
+                    double x = uBuffer[i] * 2.0 - 1.0;
+                    double y = vBuffer[i] * 2.0 - 1.0;
+                    boolean good = f(x, y);
+                    if (good) {
+                        p++;
+                    }
+                    if (points != null) {
+                        length = addPoint(length, x, y, good);
+                    }
+                }
+                continue;
+            }
+            // A single long per point from a pseudo-random generator instead of two doubles
+            nextBits(drawn);
+            for (int i = 0; i < drawn; i++) {
+                boolean good = reduced.f(bitsBuffer[i]);
+                if (good) {
+                    p++;
+                }
+                if (points != null) {
+                    length = addPoint(length, u(bitsBuffer[i]) * 2.0 - 1.0, v(bitsBuffer[i]) * 2.0 - 1.0, good);
+                }
+            }
+            shadow(drawn);
+        }
+        if (points != null) {
+            flushPoints(length);
+        }
+        this.p = p;
+        n += count;
+        listener.onValue(index, p, n);
+    }
+
+    @Override
+    public boolean f(double x, double y) {
+        return x * x + y * y <= 1.0;
+    }
+
+    @Override
+    protected ReducedFunction reducedFunction(Precision precision) {
+        switch (precision) {
+        case FLOAT:
+            return new ReducedFunction() {
+                @Override
+                public boolean f(long bits) {
+                    return fFloat(uFloat(bits) * 2.0f - 1.0f, vFloat(bits) * 2.0f - 1.0f);
+                }
+            };
+        case FIXED:
+            return new ReducedFunction() {
+                @Override
+                public boolean f(long bits) {
+                    return fFixed(bits);
+                }
+            };
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * The function on the grid of the fixed precision: the cells are the 30 first bits of the coordinates, taken from
+     * the raw bits without any floating point
+     */
+    static boolean fFixed(long bits) {
+        long x = 2 * (bits >>> 34) + 1 - FIXED_CELLS;
+        long y = 2 * ((bits >>> 2) & (FIXED_CELLS - 1)) + 1 - FIXED_CELLS;
+        return x * x + y * y <= FIXED_CELLS * FIXED_CELLS;
+    }
+
+    /**
+     * The function in float
+     */
+    static boolean fFloat(float x, float y) {
+        return x * x + y * y <= 1.0f;
+    }
+
     @Override
     public Dimension getWindowDimension() {
         return WINDOW_DIMENSION;
@@ -68,4 +175,14 @@ public class PiMonteCarlo extends MonteCarloCalculator {
 	public double getFactor() {
 		return 4.0;
 	}
+
+    /**
+     * The square turned by 45 degrees around the circle, cut by the sides of the domain
+     */
+    @Override
+    public ControlShape getControl() {
+        // The corners left out are right triangles with sides of 2 - sqrt(2)
+        double side = 2.0 - Math.sqrt(2.0);
+        return new ControlShape("Octagon", "abs(x)+abs(y)<=sqrt(2)", 1, 1, 4.0 - 2.0 * side * side);
+    }
 }
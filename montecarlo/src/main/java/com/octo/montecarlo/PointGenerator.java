@@ -0,0 +1,37 @@
+package com.octo.montecarlo;
+
+/**
+ * Source of the points sampled by a {@link MonteCarloCalculator}, in the unit square. The calculator scales them to its
+ * range.
+ */
+public interface PointGenerator {
+
+	/**
+	 * Give the next points of the sequence
+	 * @param u first coordinate of each point, in [0, 1)
+	 * @param v second coordinate of each point, in [0, 1)
+	 * @param length number of points to give
+	 */
+	void next(double[] u, double[] v, int length);
+
+	/**
+	 * Give the next points as raw bits, for the reduced precisions: the 32 high bits of each long are u and the 32 low
+	 * bits v, both times 2^32. The points don't have to be the ones of {@link #next(double[], double[], int)}: a
+	 * pseudo-random generator draws a single long per point instead of two doubles
+	 * @param bits both coordinates of each point
+	 * @param length number of points to give
+	 */
+	void nextBits(long[] bits, int length);
+
+	/**
+	 * Move in the sequence so the next point is the one of this index. This is how parallel threads get disjoint
+	 * segments of the same sequence
+	 * @param index index of the next point, starting at 0
+	 */
+	void skipTo(long index);
+
+	/**
+	 * @return a generator of the same sequence, with its own position
+	 */
+	PointGenerator copy();
+}
@@ -0,0 +1,239 @@
+package com.octo.montecarlo;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Image of the sampled points, written directly in the pixels of a {@link BufferedImage} instead of a
+ * {@code Graphics2D} per point. The transform from the domain to the pixels is computed once, and the area changed
+ * since the last repaint is kept so only it is painted again.
+ * <p>
+ * The points are plotted by a single thread, the calculating one or the renderer draining the {@link PointRing}s of
+ * the parallel mode, while Swing paints the image. A pixel is a single int so a paint
+ * sees either the old or the new colour, and the dirty area is only shared once per batch.
+ * <p>
+ * The number of pixels of each colour is kept as the points are plotted, counting only the pixels that change colour,
+ * so the coverage of the image is known without reading it.
+ */
+final class PointRaster {
+
+    static final int BACKGROUND = Color.BLACK.getRGB() & 0xffffff;
+
+    static final int GOOD = Color.BLUE.getRGB() & 0xffffff;
+
+    static final int BAD = Color.YELLOW.getRGB() & 0xffffff;
+
+    private final BufferedImage image;
+
+    /** Pixels of the image, a packed RGB per int, row by row */
+    private final int[] pixels;
+
+    private final int width;
+
+    private final int height;
+
+    /** pixel x = width - (int) (x * scaleX + offsetX), the image being upside down */
+    private final double scaleX;
+
+    private final double offsetX;
+
+    private final double scaleY;
+
+    private final double offsetY;
+
+    /** Area of the domain shown by the image */
+    private final double area;
+
+    /** Pixels of each colour, written by the plotting thread at the end of each batch */
+    private volatile int good, bad;
+
+    /** Bounds of the pixels changed since the last call to {@link #dirty()}, empty when minX > maxX */
+    private int minX, minY, maxX, maxY;
+
+    PointRaster(MonteCarloCalculator calculator) {
+        width = calculator.getWindowDimension().width;
+        height = calculator.getWindowDimension().height;
+        scaleX = width / 2.0 / calculator.getPositiveRange().width;
+        offsetX = calculator.getPositionOffset().width;
+        scaleY = height / 2.0 / calculator.getPositiveRange().height;
+        offsetY = calculator.getPositionOffset().height;
+        area = 4.0 * calculator.getPositiveRange().width * calculator.getPositiveRange().height;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, BACKGROUND);
+        clean();
+    }
+
+    BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Plot the points of a batch
+     */
+    void plot(double[] x, double[] y, boolean[] good, int length) {
+        int[] pixels = this.pixels;
+        int goodPixels = this.good, badPixels = this.bad;
+        int left = Integer.MAX_VALUE, top = Integer.MAX_VALUE, right = Integer.MIN_VALUE, bottom = Integer.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            int dotX = width - (int) (x[i] * scaleX + offsetX);
+            int dotY = height - (int) (y[i] * scaleY + offsetY);
+            // Out of the image, like the clipping of a Graphics
+            if (dotX < 0 || dotX >= width || dotY < 0 || dotY >= height) {
+                continue;
+            }
+            int pixel = dotY * width + dotX;
+            int colour = good[i] ? GOOD : BAD;
+            int old = pixels[pixel];
+            if (old != colour) {
+                pixels[pixel] = colour;
+                // Black to a colour or one colour to the other
+                if (old == GOOD) {
+                    goodPixels--;
+                } else if (old == BAD) {
+                    badPixels--;
+                }
+                if (colour == GOOD) {
+                    goodPixels++;
+                } else {
+                    badPixels++;
+                }
+            }
+            left = Math.min(left, dotX);
+            right = Math.max(right, dotX);
+            top = Math.min(top, dotY);
+            bottom = Math.max(bottom, dotY);
+        }
+        this.good = goodPixels;
+        this.bad = badPixels;
+        if (left <= right) {
+            grow(left, top, right, bottom);
+        }
+    }
+
+    /**
+     * Plot a single point
+     */
+    void plot(double x, double y, boolean good) {
+        int point = encode(x, y, good);
+        if (point >= 0) {
+            plot(new int[] { point }, 1);
+        }
+    }
+
+    /**
+     * @return the pixel of a point and its colour in an int, for {@link #plot(int[], int)}: twice the index of the
+     *         pixel, plus 1 if the point is good. -1 out of the image
+     */
+    int encode(double x, double y, boolean good) {
+        int dotX = width - (int) (x * scaleX + offsetX);
+        int dotY = height - (int) (y * scaleY + offsetY);
+        if (dotX < 0 || dotX >= width || dotY < 0 || dotY >= height) {
+            return -1;
+        }
+        return (dotY * width + dotX) << 1 | (good ? 1 : 0);
+    }
+
+    /**
+     * Plot points encoded by {@link #encode(double, double, boolean)}
+     */
+    void plot(int[] points, int length) {
+        int[] pixels = this.pixels;
+        int goodPixels = this.good, badPixels = this.bad;
+        int first = Integer.MAX_VALUE, last = Integer.MIN_VALUE, left = Integer.MAX_VALUE, right = Integer.MIN_VALUE;
+        for (int i = 0; i < length; i++) {
+            int point = points[i];
+            if (point < 0) {
+                continue;
+            }
+            int pixel = point >>> 1;
+            int colour = (point & 1) != 0 ? GOOD : BAD;
+            int old = pixels[pixel];
+            if (old != colour) {
+                pixels[pixel] = colour;
+                if (old == GOOD) {
+                    goodPixels--;
+                } else if (old == BAD) {
+                    badPixels--;
+                }
+                if (colour == GOOD) {
+                    goodPixels++;
+                } else {
+                    badPixels++;
+                }
+            }
+            // The rows come from the smallest and largest index, only the columns need a division
+            first = Math.min(first, pixel);
+            last = Math.max(last, pixel);
+            int dotX = pixel % width;
+            left = Math.min(left, dotX);
+            right = Math.max(right, dotX);
+        }
+        this.good = goodPixels;
+        this.bad = badPixels;
+        if (first <= last) {
+            grow(left, first / width, right, last / width);
+        }
+    }
+
+    private synchronized void grow(int left, int top, int right, int bottom) {
+        minX = Math.min(minX, left);
+        minY = Math.min(minY, top);
+        maxX = Math.max(maxX, right);
+        maxY = Math.max(maxY, bottom);
+    }
+
+    /**
+     * @return the area changed since the last call, null if nothing changed
+     */
+    synchronized Rectangle dirty() {
+        if (minX > maxX) {
+            return null;
+        }
+        Rectangle dirty = new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+        clean();
+        return dirty;
+    }
+
+    private void clean() {
+        minX = minY = Integer.MAX_VALUE;
+        maxX = maxY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * @return number of pixels of the good points
+     */
+    int getGood() {
+        return good;
+    }
+
+    /**
+     * @return number of pixels of the bad points
+     */
+    int getBad() {
+        return bad;
+    }
+
+    /**
+     * @return number of pixels without a point
+     */
+    int getBackground() {
+        return pixels.length - good - bad;
+    }
+
+    /**
+     * @return area of the function from the pixels with a point, each pixel having the colour of its last point. NaN
+     *         before the first point
+     */
+    double area() {
+        int good = this.good;
+        return area * good / (good + bad);
+    }
+
+    int size() {
+        return pixels.length;
+    }
+}
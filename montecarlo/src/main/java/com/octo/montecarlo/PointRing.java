@@ -0,0 +1,93 @@
+package com.octo.montecarlo;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free ring buffer of points between a single producer and a single consumer. The points are the ints of
+ * {@link PointRaster#encode(double, double, boolean)}, so the producer does the transform and the consumer only stores
+ * them in the image.
+ * <p>
+ * The producer never waits: when the consumer is behind, the points that don't fit are dropped and counted. They are
+ * still in the estimate, the image just shows fewer of them.
+ */
+final class PointRing {
+
+    /** Longs between two positions: 128 bytes, so the producer and the consumer don't share a cache line */
+    private static final int PADDING = 16;
+
+    /** Next point to read, written by the consumer */
+    private static final int HEAD = PADDING;
+
+    /** Next point to write, written by the producer */
+    private static final int TAIL = 2 * PADDING;
+
+    /** Number of points dropped, written by the producer */
+    private static final int DROPPED = 2 * PADDING + 1;
+
+    private final int[] points;
+
+    private final int mask;
+
+    private final AtomicLongArray positions = new AtomicLongArray(4 * PADDING);
+
+    /** Last head read by the producer, so it only reads the line of the consumer when the ring looks full */
+    private long head;
+
+    /**
+     * @param capacity
+     *            number of points, rounded up to a power of 2
+     */
+    PointRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.points = new int[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Add points. Only the producer may call it
+     *
+     * @return number of points added, the first ones
+     */
+    int offer(int[] source, int length) {
+        long tail = positions.get(TAIL);
+        if (points.length - (tail - head) < length) {
+            head = positions.get(HEAD);
+        }
+        int count = (int) Math.min(length, points.length - (tail - head));
+        int at = (int) (tail & mask);
+        // In two parts when the range wraps around the end of the ring
+        int first = Math.min(count, points.length - at);
+        System.arraycopy(source, 0, points, at, first);
+        System.arraycopy(source, first, points, 0, count - first);
+        // Ordered after the points, so the consumer never reads a point not written yet
+        positions.lazySet(TAIL, tail + count);
+        if (count < length) {
+            positions.lazySet(DROPPED, positions.get(DROPPED) + length - count);
+        }
+        return count;
+    }
+
+    /**
+     * Take the points available. Only the consumer may call it
+     *
+     * @return number of points copied in the target
+     */
+    int drain(int[] target) {
+        long head = positions.get(HEAD);
+        int count = (int) Math.min(target.length, positions.get(TAIL) - head);
+        int at = (int) (head & mask);
+        int first = Math.min(count, points.length - at);
+        System.arraycopy(points, at, target, 0, first);
+        System.arraycopy(points, 0, target, first, count - first);
+        // Ordered after the reads, so the producer never overwrites a point not read yet
+        positions.lazySet(HEAD, head + count);
+        return count;
+    }
+
+    /**
+     * @return number of points dropped since the start
+     */
+    long dropped() {
+        return positions.get(DROPPED);
+    }
+}
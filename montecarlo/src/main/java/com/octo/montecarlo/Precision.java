@@ -0,0 +1,44 @@
+package com.octo.montecarlo;
+
+/**
+ * Arithmetic of the function of a calculator. The reduced ones decide differently only for the points close to the
+ * border of the shape, so their bias is small compared to the statistical error of most runs. It is measured while the
+ * run goes by also evaluating some points in double, see {@link MonteCarloCalculator#SHADOW}.
+ * <p>
+ * They are also cheaper, so the accuracy per CPU second can be compared: like the GPU kernel, they evaluate the raw bits
+ * of the generator, a single long per point instead of two doubles (see {@link PointGenerator#nextBits(long[], int)}),
+ * and never convert them through double.
+ */
+public enum Precision {
+
+    /** The reference */
+    DOUBLE,
+
+    /** The arithmetic of the GPU kernel: float coordinates and float functions */
+    FLOAT,
+
+    /**
+     * Integer coordinates on a grid, the function being computed exactly. Only for polynomial functions. The cell of a
+     * point is the first bits of its coordinates
+     */
+    FIXED;
+
+    /**
+     * @param name
+     *            double, float or fixed
+     * @throws IllegalArgumentException
+     *             if the precision is unknown
+     */
+    static Precision of(String name) {
+        try {
+            return valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown precision " + name + ". Should be double, float or fixed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase();
+    }
+}
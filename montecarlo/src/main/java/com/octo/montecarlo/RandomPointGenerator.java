@@ -0,0 +1,175 @@
+package com.octo.montecarlo;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Pseudo-random points.
+ * <p>
+ * A generator built from a seed is reproducible: the sequence is made of blocks of {@link #BLOCK} points, each one
+ * drawn from its own stream seeded by mixing the seed with the number of the block. So a segment of the sequence is the
+ * same whichever thread computes it and whatever the segments computed before, and {@link #skipTo(long)} only has to
+ * start a stream. Otherwise there is no position in the sequence and {@link #skipTo(long)} does nothing.
+ * <p>
+ * {@link #nextBits(long[], int)} draws a single long per point, so its points are not the ones of
+ * {@link #next(double[], double[], int)}, but a run only uses one of them and its sequence is reproducible the same way.
+ */
+public class RandomPointGenerator implements PointGenerator {
+
+    /** Small state, fast, splittable and good for parallel streams */
+    public static final String DEFAULT_ALGORITHM = "L64X128MixRandom";
+
+    /**
+     * Points of each stream of a reproducible generator. The checkpoint of {@link MonteCarloCmd}, so the threads skip to
+     * the start of a block and never have to draw points to throw them away
+     */
+    static final int BLOCK = 1_000;
+
+    /** Odd constant of SplitMix64, spreading consecutive indexes over the seeds */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final RandomGeneratorFactory<RandomGenerator> factory;
+
+    /** Null when the generator is not reproducible */
+    private final Long seed;
+
+    private RandomGenerator rand;
+
+    /** Index of the next point for a reproducible generator */
+    private long position;
+
+    /** Index of the first point of the next block */
+    private long blockEnd;
+
+    /**
+     * Points of the current block to draw and throw away after {@link #skipTo(long)}, done by the next draw since the
+     * number of values of a point depends on the kind of draw
+     */
+    private long skipped;
+
+    /**
+     * A new random stream of the default algorithm
+     */
+    public RandomPointGenerator() {
+        this(RandomGeneratorFactory.of(DEFAULT_ALGORITHM).create());
+    }
+
+    /**
+     * @param rand
+     *            stream used as is, so it shouldn't be shared with another thread
+     */
+    public RandomPointGenerator(RandomGenerator rand) {
+        this.factory = null;
+        this.seed = null;
+        this.rand = rand;
+    }
+
+    /**
+     * @param algorithm
+     *            name of a {@link RandomGeneratorFactory}, e.g. L64X128MixRandom, Xoroshiro128PlusPlus or
+     *            SplittableRandom
+     * @param seed
+     *            seed of the whole sequence
+     * @throws IllegalArgumentException
+     *             if the algorithm is unknown
+     */
+    public RandomPointGenerator(String algorithm, long seed) {
+        this.factory = RandomGeneratorFactory.of(algorithm);
+        this.seed = seed;
+        skipTo(0);
+    }
+
+    @Override
+    public void next(double[] u, double[] v, int length) {
+        // Only happens when the threads don't skip to the start of a block
+        for (; skipped > 0; skipped--) {
+            rand.nextDouble();
+            rand.nextDouble();
+        }
+        int i = 0;
+        while (i < length) {
+            int end = end(i, length);
+            RandomGenerator rand = this.rand;
+            for (; i < end; i++) {
+                u[i] = rand.nextDouble();
+                v[i] = rand.nextDouble();
+            }
+        }
+    }
+
+    @Override
+    public void nextBits(long[] bits, int length) {
+        for (; skipped > 0; skipped--) {
+            rand.nextLong();
+        }
+        int i = 0;
+        while (i < length) {
+            int end = end(i, length);
+            RandomGenerator rand = this.rand;
+            for (; i < end; i++) {
+                bits[i] = rand.nextLong();
+            }
+        }
+    }
+
+    /**
+     * Move the position to the end of the points drawn from the current stream, starting the next block if needed
+     * 
+     * @param i
+     *            index of the first point to draw in the arrays
+     * @param length
+     *            number of points to draw in the arrays
+     * @return index of the last point drawn from the current stream in the arrays, excluded
+     */
+    private int end(int i, int length) {
+        if (seed == null) {
+            return length;
+        }
+        if (position == blockEnd) {
+            startBlock(position / BLOCK);
+        }
+        int end = (int) Math.min(length, i + blockEnd - position);
+        position += end - i;
+        return end;
+    }
+
+    @Override
+    public void skipTo(long index) {
+        if (seed != null) {
+            startBlock(index / BLOCK);
+            skipped = index % BLOCK;
+            position = index;
+        }
+    }
+
+    private void startBlock(long block) {
+        rand = factory.create(mix(seed + (block + 1) * GOLDEN_GAMMA));
+        blockEnd = (block + 1) * BLOCK;
+    }
+
+    /**
+     * @return a generator of the same sequence for a reproducible generator. Otherwise a generator of a new random
+     *         stream, split from this one when possible, since the points of a pseudo-random sequence are independent
+     *         anyway
+     */
+    @Override
+    public PointGenerator copy() {
+        if (seed != null) {
+            return new RandomPointGenerator(factory.name(), seed);
+        }
+        if (rand instanceof SplittableGenerator) {
+            return new RandomPointGenerator(((SplittableGenerator) rand).split());
+        }
+        return new RandomPointGenerator();
+    }
+
+    /**
+     * Finalizer of SplitMix64, so close seeds give unrelated streams whatever the algorithm
+     */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,56 @@
+package com.octo.montecarlo;
+
+/**
+ * Counts of a run with an {@link Estimator}: the ones of the function, of the second function of the estimator and of
+ * the points where both disagree, each taken from its own aggregator. The iterations are the ones of the function.
+ */
+final class ReducedStep extends Step {
+
+    private final Estimator estimator;
+
+    /** Fractions of the iterations, each one from its own counts so they stay consistent with a snapshot taken later */
+    private final double p, q, d;
+
+    /** Known fraction of the domain in the control shape */
+    private final double control;
+
+    ReducedStep(Estimator estimator, Step first, Step second, Step disagreements, double control) {
+        super(first.pList, first.nList);
+        this.estimator = estimator;
+        this.p = fraction(first);
+        this.q = fraction(second);
+        this.d = fraction(disagreements);
+        this.control = control;
+    }
+
+    private static double fraction(Step step) {
+        long p = 0;
+        for (long count : step.pList) {
+            p += count;
+        }
+        return (double) p / step.loops();
+    }
+
+    @Override
+    public double calculate(double factor) {
+        return factor * estimator.mean(p, q, d, control);
+    }
+
+    @Override
+    public double standardError(double factor) {
+        long n = loops();
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double variance = Math.max(0, estimator.variance(p, q, d, control)) * n / (n - 1);
+        return factor * Math.sqrt(variance / n);
+    }
+
+    /**
+     * @return number of hit-or-miss iterations giving the same error as one iteration of the estimator
+     */
+    double gain() {
+        double mean = estimator.mean(p, q, d, control);
+        return mean * (1 - mean) / estimator.variance(p, q, d, control);
+    }
+}
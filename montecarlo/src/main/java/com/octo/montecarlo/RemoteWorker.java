@@ -0,0 +1,128 @@
+package com.octo.montecarlo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Worker of a {@link Coordinator}: claims chunks, computes them like a thread of {@link MonteCarloCmd} and sends the
+ * counts. The algorithm and the sequences come from the coordinator, so all the workers compute the points a local run
+ * with the same seed would.
+ */
+final class RemoteWorker implements Runnable {
+
+    /** Time between two progress messages while computing a chunk */
+    private static final long PROGRESS_INTERVAL = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final String host;
+
+    private final int port;
+
+    private final long checkpoint;
+
+    /** Counts of each replica since the start */
+    private long[] p;
+
+    private long[] n;
+
+    /**
+     * @param checkpoint
+     *            iterations of a batch, the same as the local threads
+     */
+    RemoteWorker(String host, int port, long checkpoint) {
+        this.host = host;
+        this.port = port;
+        this.checkpoint = checkpoint;
+    }
+
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            String algorithm = in.readUTF();
+            String sampling = in.readUTF();
+            String rng = in.readUTF();
+            long seed = in.readLong();
+            int replicas = in.readInt();
+            work(in, out, calculators(algorithm, sampling, rng, seed, replicas));
+        } catch (IOException e) {
+            // The coordinator is gone, nothing more to do
+        }
+    }
+
+    private MonteCarloCalculator[] calculators(String algorithm, String sampling, String rng, long seed, int replicas) {
+        p = new long[replicas];
+        n = new long[replicas];
+        MonteCarloListener listener = new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                RemoteWorker.this.p[index] = p;
+                RemoteWorker.this.n[index] = n;
+            }
+        };
+        PointGenerator[] generators = MonteCarloCmd.generators(sampling, replicas, rng, seed);
+        MonteCarloCalculator[] calculators = new MonteCarloCalculator[replicas];
+        for (int replica = 0; replica < replicas; replica++) {
+            calculators[replica] = MonteCarloCmd.instantiateAlgorithm(MonteCarloCmd.retrieveAlgorithm(algorithm),
+                    replica);
+            calculators[replica].setListener(listener);
+            calculators[replica].setPointGenerator(generators[replica]);
+        }
+        return calculators;
+    }
+
+    private void work(DataInputStream in, DataOutputStream out, MonteCarloCalculator[] calculators)
+            throws IOException {
+        int replicas = calculators.length;
+        long[] p0 = new long[replicas];
+        long[] n0 = new long[replicas];
+        while (true) {
+            out.writeByte(Coordinator.CLAIM);
+            out.flush();
+            long start = in.readLong();
+            long end = in.readLong();
+            if (start == end) {
+                return;
+            }
+            // The coordinator wants the counts on the chunk only
+            System.arraycopy(p, 0, p0, 0, replicas);
+            System.arraycopy(n, 0, n0, 0, replicas);
+            long report = System.nanoTime() + PROGRESS_INTERVAL;
+            for (long i = start; i < end; i += checkpoint) {
+                // The same dealing of the checkpoints to the replicas as the local threads
+                long block = i / checkpoint;
+                MonteCarloCalculator calculator = calculators[(int) (block % replicas)];
+                calculator.getPointGenerator().skipTo(block / replicas * checkpoint);
+                calculator.calculateBatch(Math.min(checkpoint, end - i));
+                if (System.nanoTime() - report >= 0 && i + checkpoint < end) {
+                    send(out, Coordinator.PROGRESS, p0, n0);
+                    if (in.readByte() == Coordinator.STOP) {
+                        return;
+                    }
+                    report = System.nanoTime() + PROGRESS_INTERVAL;
+                }
+            }
+            send(out, Coordinator.DONE, p0, n0);
+        }
+    }
+
+    private void send(DataOutputStream out, byte message, long[] p0, long[] n0) throws IOException {
+        out.writeByte(message);
+        for (int r = 0; r < p.length; r++) {
+            out.writeLong(p[r] - p0[r]);
+            out.writeLong(n[r] - n0[r]);
+        }
+        out.flush();
+    }
+}
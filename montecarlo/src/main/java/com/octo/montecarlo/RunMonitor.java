@@ -0,0 +1,247 @@
+package com.octo.montecarlo;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * {@link MonteCarloRunMXBean} of a run aggregated by a {@link StepAggregator}.
+ * <p>
+ * Each thread adds its times to its own padded slot, like in the aggregator, with plain reads and ordered writes: no
+ * lock nor CAS in the loop of the threads, and two calls to {@link System#nanoTime()} per batch and per listener call.
+ * Everything else is computed from a snapshot of the run when the attributes are read, the same one as the console so
+ * the estimate and the error are the ones of the estimator of the run.
+ */
+final class RunMonitor implements MonteCarloRunMXBean {
+
+    static final String NAME = "com.octo.montecarlo:type=MonteCarloRun";
+
+    /** Longs between the start of two slots: 128 bytes */
+    private static final int PADDING = 16;
+
+    /** Nanoseconds in the batches, listener included */
+    private static final int BATCH = 0;
+
+    /** Nanoseconds in the listener */
+    private static final int LISTENER = 1;
+
+    /** {@link System#nanoTime()} at the end of the last batch, 0 before the first one */
+    private static final int LAST = 2;
+
+    private final AtomicLongArray slots;
+
+    private final StepAggregator aggregator;
+
+    /** Counts of the run, as the run itself computes its estimate */
+    private final Supplier<Step> snapshots;
+
+    private final String algorithm;
+
+    private final long iterations;
+
+    private final int threads;
+
+    private final double factor;
+
+    private final double offset;
+
+    /** Iterations of the resumed run, not done by the threads */
+    private final long resumed;
+
+    private final long start = System.nanoTime();
+
+    private ObjectName name;
+
+    /**
+     * A monitor of the hit-or-miss counts of the aggregator
+     */
+    RunMonitor(final StepAggregator aggregator, String algorithm, long iterations, int threads, double factor,
+            double offset, long resumed) {
+        this(aggregator, new Supplier<Step>() {
+            @Override
+            public Step get() {
+                return aggregator.snapshot();
+            }
+        }, algorithm, iterations, threads, factor, offset, resumed);
+    }
+
+    /**
+     * @param aggregator
+     *            with a slot per thread and per replica, <code>replica * (threads + 1) + thread</code>
+     * @param snapshots
+     *            counts of the run taken from the aggregator, e.g. a {@link ReducedStep} with an {@link Estimator}
+     */
+    RunMonitor(StepAggregator aggregator, Supplier<Step> snapshots, String algorithm, long iterations, int threads,
+            double factor, double offset, long resumed) {
+        this.aggregator = aggregator;
+        this.snapshots = snapshots;
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.threads = threads;
+        this.factor = factor;
+        this.offset = offset;
+        this.resumed = resumed;
+        // One more slot of padding in front so the first slot is away from the array header
+        this.slots = new AtomicLongArray((threads + 1) * PADDING);
+    }
+
+    private static int base(int thread) {
+        return (thread + 1) * PADDING;
+    }
+
+    /**
+     * A batch is done. Only the thread may call it
+     * 
+     * @param end
+     *            {@link System#nanoTime()} at the end of the batch
+     */
+    void batch(int thread, long nanos, long end) {
+        int base = base(thread);
+        slots.lazySet(base + BATCH, slots.get(base + BATCH) + nanos);
+        slots.lazySet(base + LAST, end);
+    }
+
+    /**
+     * The listener was called by a calculator. Only the thread of the calculator may call it
+     * 
+     * @param slot
+     *            slot of the calculator in the aggregator
+     */
+    void listener(int slot, long nanos) {
+        int base = base(slot % (threads + 1));
+        slots.lazySet(base + LISTENER, slots.get(base + LISTENER) + nanos);
+    }
+
+    /**
+     * Register in the platform MBean server, in place of the MBean of a previous run
+     */
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName(NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.printf("Can't register the MBean: %s%n", e);
+            name = null;
+        }
+    }
+
+    void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // Already gone
+        }
+        name = null;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    @Override
+    public long getIterations() {
+        return iterations;
+    }
+
+    @Override
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public long getSamples() {
+        return snapshots.get().loops();
+    }
+
+    @Override
+    public long[] getWorkerSamples() {
+        return workerSamples(snapshots.get());
+    }
+
+    /**
+     * @return iterations done by each thread in a snapshot of the run
+     */
+    long[] workerSamples(Step step) {
+        long[] samples = new long[threads];
+        // The last slot of each replica is the resumed run
+        for (int slot = 0; slot < step.nList.length; slot++) {
+            int thread = slot % (threads + 1);
+            if (thread < threads) {
+                samples[thread] += step.nList[slot];
+            }
+        }
+        return samples;
+    }
+
+    @Override
+    public long[] getWorkerIdleMillis() {
+        long now = System.nanoTime();
+        long[] idle = new long[threads];
+        for (int i = 0; i < threads; i++) {
+            long last = slots.get(base(i) + LAST);
+            idle[i] = TimeUnit.NANOSECONDS.toMillis(now - (last == 0 ? start : last));
+        }
+        return idle;
+    }
+
+    @Override
+    public double getRate() {
+        return (getSamples() - resumed) / ((System.nanoTime() - start) / 1e9);
+    }
+
+    @Override
+    public long getRetries() {
+        return aggregator.retries();
+    }
+
+    @Override
+    public long getCalculationNanos() {
+        long nanos = 0;
+        for (int i = 0; i < threads; i++) {
+            nanos += slots.get(base(i) + BATCH) - slots.get(base(i) + LISTENER);
+        }
+        return nanos;
+    }
+
+    @Override
+    public long getListenerNanos() {
+        long nanos = 0;
+        for (int i = 0; i < threads; i++) {
+            nanos += slots.get(base(i) + LISTENER);
+        }
+        return nanos;
+    }
+
+    @Override
+    public double getEstimate() {
+        return offset + snapshots.get().calculate(factor);
+    }
+
+    @Override
+    public double getStandardError() {
+        return snapshots.get().standardError(factor);
+    }
+
+    @Override
+    public double getEtaSeconds() {
+        long samples = getSamples();
+        double rate = (samples - resumed) / ((System.nanoTime() - start) / 1e9);
+        if (samples >= iterations) {
+            return 0;
+        }
+        return rate > 0 ? (iterations - samples) / rate : Double.NaN;
+    }
+}
@@ -0,0 +1,26 @@
+package com.octo.montecarlo;
+
+import java.awt.Dimension;
+
+/**
+ * A shape whose area can be computed without writing a calculator. The implementations are found with
+ * {@link java.util.ServiceLoader}, listed in <code>META-INF/services/com.octo.montecarlo.Shape</code>, and used when no
+ * <code>*MonteCarlo</code> class has the name of the algorithm. {@link ExpressionShape} defines one from a formula.
+ */
+public interface Shape {
+
+    /**
+     * @return name given on the command line
+     */
+    String getName();
+
+    /**
+     * @return the shape is in [-width, width] x [-height, height]
+     */
+    Dimension getPositiveRange();
+
+    /**
+     * @return if the point is in the shape
+     */
+    boolean contains(double x, double y);
+}
@@ -0,0 +1,148 @@
+package com.octo.montecarlo;
+
+import static java.lang.Math.*;
+
+import java.awt.Dimension;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Calculator of the area of a {@link Shape}, the same as the hand-written calculators with the function of the shape
+ */
+public class ShapeMonteCarlo extends MonteCarloCalculator {
+
+    /** Largest window, the shape keeping its proportions */
+    private static final Dimension MAX_WINDOW = new Dimension(1600, 800);
+
+    private final Shape shape;
+
+    private final Dimension positiveRange;
+
+    private final Dimension windowDimension;
+
+    private final Dimension positionOffset;
+
+    private final double factor;
+
+    /** Number of performed iterations */
+    protected long n = 0;
+
+    /** Number of "in" iterations */
+    protected long p = 0;
+
+    public ShapeMonteCarlo(int index, Shape shape) {
+        super(index);
+        this.shape = shape;
+        this.positiveRange = shape.getPositiveRange();
+        // In double, so a shape larger than the window is scaled down instead of getting an empty window
+        double scale = min(MAX_WINDOW.width / (2.0 * positiveRange.width),
+                MAX_WINDOW.height / (2.0 * positiveRange.height));
+        this.windowDimension = new Dimension(max(1, (int) (2 * positiveRange.width * scale)),
+                max(1, (int) (2 * positiveRange.height * scale)));
+        this.positionOffset = new Dimension(windowDimension.width / 2, windowDimension.height / 2);
+        this.factor = 4.0 * positiveRange.width * positiveRange.height;
+        setPointGenerator(new RandomPointGenerator());
+    }
+
+    /**
+     * @return the shape of this name found by the {@link ServiceLoader}, null if there is none
+     */
+    static Shape find(String name) {
+        return Shapes.BY_NAME.get(name);
+    }
+
+    /**
+     * The shapes of the {@link ServiceLoader}, loaded once on the first search. A provider can only be asked its name
+     * once created, and creating an {@link ExpressionShape} compiles its formula, so they are not loaded again for
+     * each search. The shapes have no state, they are shared by all the calculators
+     */
+    private static final class Shapes {
+
+        static final Map<String, Shape> BY_NAME = load();
+
+        private static Map<String, Shape> load() {
+            Map<String, Shape> shapes = new HashMap<>();
+            for (Shape shape : ServiceLoader.load(Shape.class)) {
+                // The first provider of a name wins, like the search of the loader did
+                if (!shapes.containsKey(shape.getName())) {
+                    shapes.put(shape.getName(), shape);
+                }
+            }
+            return shapes;
+        }
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    @Override
+    public void calculate() {
+        nextPoints(1);
+        double x = uBuffer[0] * positiveRange.width * 2.0 - positiveRange.width;
+        double y = vBuffer[0] * positiveRange.height * 2.0 - positiveRange.height;
+        n++;
+        boolean good = f(x, y);
+        if (good) {
+            p++;
+        }
+        listener.onPoint(x, y, good);
+        listener.onValue(index, p, n);
+    }
+
+    @Override
+    public void calculateBatch(long count) {
+        long p = this.p;
+        MonteCarloPointListener points = pointListener;
+        double width = positiveRange.width;
+        double height = positiveRange.height;
+        int length = 0;
+        for (long done = 0; done < count; done += GENERATOR_BUFFER) {
+            int drawn = (int) min(GENERATOR_BUFFER, count - done);
+            nextPoints(drawn);
+            for (int i = 0; i < drawn; i++) {
+                double x = uBuffer[i] * width * 2.0 - width;
+                double y = vBuffer[i] * height * 2.0 - height;
+                boolean good = f(x, y);
+                if (good) {
+                    p++;
+                }
+                if (points != null) {
+                    length = addPoint(length, x, y, good);
+                }
+            }
+        }
+        if (points != null) {
+            flushPoints(length);
+        }
+        this.p = p;
+        n += count;
+        listener.onValue(index, p, n);
+    }
+
+    @Override
+    public boolean f(double x, double y) {
+        return shape.contains(x, y);
+    }
+
+    @Override
+    public Dimension getWindowDimension() {
+        return windowDimension;
+    }
+
+    @Override
+    public Dimension getPositionOffset() {
+        return positionOffset;
+    }
+
+    @Override
+    public Dimension getPositiveRange() {
+        return positiveRange;
+    }
+
+    @Override
+    public double getFactor() {
+        return factor;
+    }
+}
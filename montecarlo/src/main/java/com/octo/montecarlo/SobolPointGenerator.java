@@ -0,0 +1,138 @@
+package com.octo.montecarlo;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Sobol low-discrepancy sequence in 2 dimensions, on 64 bits. The first dimension is the base 2 van der Corput
+ * sequence, the second one uses the primitive polynomial x + 1. Points are built in Gray code order: each new point
+ * only XORs one direction number, and skipping ahead XORs the direction numbers of the Gray code of the index.
+ * <p>
+ * A scrambled generator applies a random linear matrix scramble and a random digital shift (Matousek's affine
+ * scrambling) to each dimension. Each replica stays a (t, s)-sequence and its estimate is unbiased.
+ */
+public class SobolPointGenerator implements PointGenerator {
+
+    private static final int BITS = 64;
+
+    private static final double TWO_POWER_MINUS_53 = 0x1.0p-53;
+
+    private final long[] directionsU;
+
+    private final long[] directionsV;
+
+    private final long shiftU;
+
+    private final long shiftV;
+
+    private long index;
+
+    private long u;
+
+    private long v;
+
+    /**
+     * Sobol sequence without scrambling
+     */
+    public SobolPointGenerator() {
+        this(directions(0), directions(1), 0L, 0L);
+    }
+
+    /**
+     * Scrambled Sobol sequence
+     */
+    public SobolPointGenerator(RandomGenerator rand) {
+        this(scramble(directions(0), rand), scramble(directions(1), rand), rand.nextLong(), rand.nextLong());
+    }
+
+    private SobolPointGenerator(long[] directionsU, long[] directionsV, long shiftU, long shiftV) {
+        this.directionsU = directionsU;
+        this.directionsV = directionsV;
+        this.shiftU = shiftU;
+        this.shiftV = shiftV;
+        skipTo(0);
+    }
+
+    /**
+     * @return the direction numbers of a dimension as binary fractions, the most significant bit being 1/2
+     */
+    private static long[] directions(int dimension) {
+        long[] directions = new long[BITS];
+        directions[0] = 1L << (BITS - 1);
+        for (int k = 1; k < BITS; k++) {
+            if (dimension == 0) {
+                directions[k] = directions[k - 1] >>> 1;
+            } else {
+                // m(k) = 2 m(k - 1) xor m(k - 1) for x + 1
+                directions[k] = directions[k - 1] ^ (directions[k - 1] >>> 1);
+            }
+        }
+        return directions;
+    }
+
+    /**
+     * Multiply the direction numbers by a random lower triangular matrix with a unit diagonal. Row r gives the bit of
+     * weight 2^-(r + 1) from the bits of higher weight
+     */
+    private static long[] scramble(long[] directions, RandomGenerator rand) {
+        long[] rows = new long[BITS];
+        for (int r = 0; r < BITS; r++) {
+            long higher = r == 0 ? 0L : -1L << (BITS - r);
+            rows[r] = (1L << (BITS - 1 - r)) | (rand.nextLong() & higher);
+        }
+        long[] scrambled = new long[BITS];
+        for (int k = 0; k < BITS; k++) {
+            long value = 0;
+            for (int r = 0; r < BITS; r++) {
+                if ((Long.bitCount(rows[r] & directions[k]) & 1) != 0) {
+                    value |= 1L << (BITS - 1 - r);
+                }
+            }
+            scrambled[k] = value;
+        }
+        return scrambled;
+    }
+
+    @Override
+    public void next(double[] us, double[] vs, int length) {
+        for (int i = 0; i < length; i++) {
+            us[i] = (u >>> 11) * TWO_POWER_MINUS_53;
+            vs[i] = (v >>> 11) * TWO_POWER_MINUS_53;
+            // Gray code of index + 1 differs from the one of index by its lowest zero bit
+            int bit = Long.numberOfTrailingZeros(~index);
+            u ^= directionsU[bit];
+            v ^= directionsV[bit];
+            index++;
+        }
+    }
+
+    @Override
+    public void nextBits(long[] bits, int length) {
+        for (int i = 0; i < length; i++) {
+            // The first 32 bits of the same points
+            bits[i] = (u & 0xffffffff00000000L) | (v >>> 32);
+            int bit = Long.numberOfTrailingZeros(~index);
+            u ^= directionsU[bit];
+            v ^= directionsV[bit];
+            index++;
+        }
+    }
+
+    @Override
+    public void skipTo(long index) {
+        this.index = index;
+        long gray = index ^ (index >>> 1);
+        u = shiftU;
+        v = shiftV;
+        for (int k = 0; gray != 0; k++, gray >>>= 1) {
+            if ((gray & 1) != 0) {
+                u ^= directionsU[k];
+                v ^= directionsV[k];
+            }
+        }
+    }
+
+    @Override
+    public PointGenerator copy() {
+        return new SobolPointGenerator(directionsU, directionsV, shiftU, shiftV);
+    }
+}
@@ -0,0 +1,142 @@
+package com.octo.montecarlo;
+
+import java.util.Arrays;
+
+/**
+ * Counts of each thread at a given time. Immutable once built, so it can be read while the threads go on.
+ */
+class Step {
+    long[] pList;
+
+    long[] nList;
+
+    /** Number of independent estimates, each one made of pList.length / replicas contiguous threads */
+    int replicas = 1;
+
+    private Step() {
+    }
+
+    Step(long[] pList, long[] nList) {
+        this.pList = pList;
+        this.nList = nList;
+    }
+
+    Step(long[] pList, long[] nList, int replicas) {
+        this(pList, nList);
+        this.replicas = replicas;
+    }
+
+    public Step(int length) {
+        pList = new long[length];
+        nList = new long[length];
+        Arrays.fill(pList, 0);
+        Arrays.fill(nList, 0);
+    }
+
+    /**
+     * Update the current status for a thread
+     * 
+     * @param index
+     *            index of the thread calling the listener
+     * @param p
+     *            total number of result "in" for the thread
+     * @param n
+     *            total number of iterations performed by the thread
+     * @return
+     */
+    public Step update(int index, long p, long n) {
+        // We don't want to do the update in-place because if the calculate() is called during the update
+        // it might return false results
+        Step s = new Step();
+        s.pList = Arrays.copyOf(pList, pList.length);
+        s.nList = Arrays.copyOf(nList, nList.length);
+        s.replicas = replicas;
+        s.pList[index] = p;
+        s.nList[index] = n;
+        return s;
+    }
+
+    /**
+     * Calculate the current answer
+     * 
+     * @param factor
+     *            multiplicative factor for the current formula
+     * @return the current answer
+     */
+    public double calculate(double factor) {
+        long p = 0;
+        long n = 0;
+        for (int i = 0; i < pList.length; i++) {
+            p += pList[i];
+            n += nList[i];
+        }
+        return factor * p / n;
+    }
+
+    /**
+     * Standard error of the current answer. Each iteration is a Bernoulli trial (in or out), so the total p and n are
+     * enough to get the sample variance, there is no need to track the squares. With replicas, the iterations are not
+     * independent (quasi-Monte Carlo) and the spread of the replica estimates is used instead
+     * 
+     * @param factor
+     *            multiplicative factor for the current formula
+     * @return the standard error of {@link #calculate(double)}
+     */
+    public double standardError(double factor) {
+        if (replicas > 1) {
+            return replicaStandardError(factor);
+        }
+        long p = 0;
+        long n = 0;
+        for (int i = 0; i < pList.length; i++) {
+            p += pList[i];
+            n += nList[i];
+        }
+        if (n < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = (double) p / n;
+        // Unbiased sample variance of the 0/1 values
+        double variance = mean * (1.0 - mean) * n / (n - 1);
+        return factor * Math.sqrt(variance / n);
+    }
+
+    private double replicaStandardError(double factor) {
+        int length = pList.length / replicas;
+        double[] estimates = new double[replicas];
+        int count = 0;
+        double sum = 0;
+        for (int r = 0; r < replicas; r++) {
+            long p = 0;
+            long n = 0;
+            for (int i = r * length; i < (r + 1) * length; i++) {
+                p += pList[i];
+                n += nList[i];
+            }
+            if (n > 0) {
+                estimates[count] = factor * p / n;
+                sum += estimates[count++];
+            }
+        }
+        if (count < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = sum / count;
+        double squares = 0;
+        for (int i = 0; i < count; i++) {
+            squares += (estimates[i] - mean) * (estimates[i] - mean);
+        }
+        return Math.sqrt(squares / (count - 1) / count);
+    }
+
+    /**
+     * @return the sum of all iterations performed by the threads
+     */
+    public long loops() {
+        long n = 0;
+        for (int i = 0; i < pList.length; i++) {
+            n += nList[i];
+        }
+        return n;
+    }
+}
@@ -0,0 +1,124 @@
+package com.octo.montecarlo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free aggregation of the counts of each thread. Each thread owns a slot that only it writes, so an update is
+ * never retried and allocates nothing. The slots are padded so two threads never write in the same cache line.
+ * <p>
+ * A slot is protected by a sequence number (a seqlock): odd while the owner is writing. A reader retries the slot until
+ * it gets the same even sequence before and after reading it, so it never sees the <code>p</code> of a checkpoint with
+ * the <code>n</code> of another one.
+ */
+final class StepAggregator {
+
+    /** Longs between the start of two slots: 128 bytes, so the adjacent line prefetch doesn't share them either */
+    private static final int PADDING = 16;
+
+    private static final int SEQUENCE = 0;
+
+    private static final int P = 1;
+
+    private static final int N = 2;
+
+    private final AtomicLongArray slots;
+
+    private final int length;
+
+    private final int replicas;
+
+    /** Number of times a reader had to read a slot again because its owner was writing it */
+    private final AtomicLong retries = new AtomicLong();
+
+    StepAggregator(int length) {
+        this(length, 1);
+    }
+
+    /**
+     * @param length
+     *            number of slots
+     * @param replicas
+     *            number of independent estimates, each one made of length / replicas contiguous slots
+     */
+    StepAggregator(int length, int replicas) {
+        this.length = length;
+        this.replicas = replicas;
+        // One more slot of padding in front so the first slot is away from the array header
+        this.slots = new AtomicLongArray((length + 1) * PADDING);
+    }
+
+    private static int base(int index) {
+        return (index + 1) * PADDING;
+    }
+
+    /**
+     * Update the current status for a thread. Only the thread owning the slot may call it
+     * 
+     * @param index
+     *            index of the thread calling the listener
+     * @param p
+     *            total number of result "in" for the thread
+     * @param n
+     *            total number of iterations performed by the thread
+     */
+    void update(int index, long p, long n) {
+        int base = base(index);
+        // We are the only writer so the sequence can't move under us
+        long sequence = slots.get(base + SEQUENCE);
+        // Odd: the readers will retry. Volatile write so it's visible before the values
+        slots.set(base + SEQUENCE, sequence + 1);
+        slots.lazySet(base + P, p);
+        slots.lazySet(base + N, n);
+        // Even again, ordered after the values
+        slots.lazySet(base + SEQUENCE, sequence + 2);
+    }
+
+    /**
+     * @return last p of a slot. Only the thread owning the slot may call it
+     */
+    long getP(int index) {
+        return slots.get(base(index) + P);
+    }
+
+    /**
+     * @return last n of a slot. Only the thread owning the slot may call it
+     */
+    long getN(int index) {
+        return slots.get(base(index) + N);
+    }
+
+    /**
+     * @return the counts of all threads. Each thread count is consistent, but the threads are read one after the other
+     */
+    Step snapshot() {
+        long[] pList = new long[length];
+        long[] nList = new long[length];
+        for (int i = 0; i < length; i++) {
+            int base = base(i);
+            while (true) {
+                long sequence = slots.get(base + SEQUENCE);
+                if ((sequence & 1) == 0) {
+                    pList[i] = slots.get(base + P);
+                    nList[i] = slots.get(base + N);
+                    if (slots.get(base + SEQUENCE) == sequence) {
+                        break;
+                    }
+                }
+                retries.incrementAndGet();
+            }
+        }
+        return new Step(pList, nList, replicas);
+    }
+
+    /**
+     * @return number of slot reads that had to be done again because of a concurrent write
+     */
+    long retries() {
+        return retries.get();
+    }
+
+    int length() {
+        return length;
+    }
+}
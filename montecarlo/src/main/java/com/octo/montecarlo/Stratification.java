@@ -0,0 +1,144 @@
+package com.octo.montecarlo;
+
+import java.awt.Dimension;
+import java.util.Arrays;
+
+/**
+ * Split of the domain of a calculator in cells that are entirely "in", entirely "out" or on the boundary of the shape.
+ * The domain is cut in a grid of cells, then each cell is probed on a lattice including its corners and edges.
+ * A cell where the probes disagree is split in four until the maximum depth, where it is kept as a boundary cell.
+ * <p>
+ * The area of the "in" cells is exact, only the boundary cells have to be sampled. The probes are a heuristic though: a
+ * detail of the shape thinner than their spacing can be missed, and the cell then counted as entirely "in" or "out".
+ * The spacing is a fraction of the boundary cells whatever the level, so a big cell is not accepted on a few probes:
+ * the spikes of the bottom of the Batman are thinner than a cell of the initial grid.
+ */
+final class Stratification {
+
+    /** Probes on each side of a boundary cell, corners included */
+    private static final int PROBES = 3;
+
+    /** Default number of cells of the initial grid along the widest side of the domain */
+    static final int GRID = 64;
+
+    /** Default number of times a boundary cell is split in four */
+    static final int DEPTH = 6;
+
+    /** Size of the boundary cells */
+    private final double width;
+
+    private final double height;
+
+    /** Lower left corner of each boundary cell */
+    private double[] x = new double[1024];
+
+    private double[] y = new double[1024];
+
+    private int cells;
+
+    private double interiorArea;
+
+    Stratification(MonteCarloCalculator calculator) {
+        this(calculator, GRID, DEPTH);
+    }
+
+    /**
+     * @param calculator
+     *            calculator whose function is classified
+     * @param grid
+     *            number of cells of the initial grid along the widest side of the domain, the cells being about square
+     * @param depth
+     *            number of times a cell on the boundary is split in four
+     */
+    Stratification(MonteCarloCalculator calculator, int grid, int depth) {
+        Dimension range = calculator.getPositiveRange();
+        int columns = range.width >= range.height ? grid : Math.max(1, grid * range.width / range.height);
+        int rows = range.height >= range.width ? grid : Math.max(1, grid * range.height / range.width);
+        double initialWidth = 2.0 * range.width / columns;
+        double initialHeight = 2.0 * range.height / rows;
+        for (int i = 0; i < columns; i++) {
+            for (int j = 0; j < rows; j++) {
+                classify(calculator, -range.width + i * initialWidth, -range.height + j * initialHeight,
+                        initialWidth, initialHeight, depth);
+            }
+        }
+        width = initialWidth / (1 << depth);
+        height = initialHeight / (1 << depth);
+        x = Arrays.copyOf(x, cells);
+        y = Arrays.copyOf(y, cells);
+    }
+
+    private void classify(MonteCarloCalculator calculator, double left, double bottom, double width, double height,
+            int depth) {
+        boolean first = calculator.f(left, bottom);
+        boolean mixed = false;
+        // A mixed cell is usually found on the first probes, a uniform one has to check all of them
+        int intervals = (PROBES - 1) << depth;
+        probes: for (int i = 0; i <= intervals; i++) {
+            for (int j = 0; j <= intervals; j++) {
+                double px = left + width * i / intervals;
+                double py = bottom + height * j / intervals;
+                if (calculator.f(px, py) != first) {
+                    mixed = true;
+                    break probes;
+                }
+            }
+        }
+        if (!mixed) {
+            if (first) {
+                interiorArea += width * height;
+            }
+            return;
+        }
+        if (depth == 0) {
+            if (cells == x.length) {
+                x = Arrays.copyOf(x, cells * 2);
+                y = Arrays.copyOf(y, cells * 2);
+            }
+            x[cells] = left;
+            y[cells] = bottom;
+            cells++;
+            return;
+        }
+        double halfWidth = width / 2.0;
+        double halfHeight = height / 2.0;
+        classify(calculator, left, bottom, halfWidth, halfHeight, depth - 1);
+        classify(calculator, left + halfWidth, bottom, halfWidth, halfHeight, depth - 1);
+        classify(calculator, left, bottom + halfHeight, halfWidth, halfHeight, depth - 1);
+        classify(calculator, left + halfWidth, bottom + halfHeight, halfWidth, halfHeight, depth - 1);
+    }
+
+    /**
+     * @return exact area of the cells entirely "in"
+     */
+    double getInteriorArea() {
+        return interiorArea;
+    }
+
+    /**
+     * @return total area of the boundary cells, the factor of the sampled estimate
+     */
+    double getBoundaryArea() {
+        return cells * width * height;
+    }
+
+    int getCells() {
+        return cells;
+    }
+
+    double getWidth() {
+        return width;
+    }
+
+    double getHeight() {
+        return height;
+    }
+
+    double getX(int cell) {
+        return x[cell];
+    }
+
+    double getY(int cell) {
+        return y[cell];
+    }
+}
@@ -0,0 +1,126 @@
+package com.octo.montecarlo;
+
+import java.awt.Dimension;
+
+/**
+ * Samples only the boundary cells of a {@link Stratification} with the function of another calculator. The result is
+ * the exact area of the interior cells, given by {@link #getOffset()}, plus the factor times p/n on the boundary cells.
+ * <p>
+ * The first coordinate of a point chooses the cell and its position in the cell, so the points are uniform over the
+ * boundary cells and a quasi-random sequence also spreads them evenly between the cells.
+ */
+public class StratifiedMonteCarlo extends MonteCarloCalculator {
+
+    private final MonteCarloCalculator target;
+
+    private final Stratification stratification;
+
+    /** Number of performed iterations */
+    protected long n = 0;
+
+    /** Number of "in" iterations */
+    protected long p = 0;
+
+    StratifiedMonteCarlo(int index, MonteCarloCalculator target, Stratification stratification) {
+        super(index);
+        this.target = target;
+        this.stratification = stratification;
+        setPointGenerator(target.getPointGenerator());
+    }
+
+    @Override
+    public void calculate() {
+        nextPoints(1);
+        double x = x(uBuffer[0]);
+        double y = stratification.getY(cell(uBuffer[0])) + vBuffer[0] * stratification.getHeight();
+        n++;
+        boolean good = target.f(x, y);
+        if (good) {
+            p++;
+        }
+        listener.onPoint(x, y, good);
+        listener.onValue(index, p, n);
+    }
+
+    @Override
+    public void calculateBatch(long count) {
+        long p = this.p;
+        MonteCarloPointListener points = pointListener;
+        Stratification s = stratification;
+        double height = s.getHeight();
+        int length = 0;
+        for (long done = 0; done < count; done += GENERATOR_BUFFER) {
+            int drawn = (int) Math.min(GENERATOR_BUFFER, count - done);
+            nextPoints(drawn);
+            for (int i = 0; i < drawn; i++) {
+                double x = x(uBuffer[i]);
+                double y = s.getY(cell(uBuffer[i])) + vBuffer[i] * height;
+                boolean good = target.f(x, y);
+                if (good) {
+                    p++;
+                }
+                if (points != null) {
+                    length = addPoint(length, x, y, good);
+                }
+            }
+        }
+        if (points != null) {
+            flushPoints(length);
+        }
+        this.p = p;
+        n += count;
+        listener.onValue(index, p, n);
+    }
+
+    /**
+     * @return cell chosen by the first coordinate of a point
+     */
+    private int cell(double u) {
+        // u * cells can round up to cells when u is just under 1
+        return Math.min((int) (u * stratification.getCells()), stratification.getCells() - 1);
+    }
+
+    /**
+     * @return abscissa of a point, the fractional part of u * cells giving the position in the cell
+     */
+    private double x(double u) {
+        int cell = cell(u);
+        return stratification.getX(cell) + (u * stratification.getCells() - cell) * stratification.getWidth();
+    }
+
+    @Override
+    public boolean f(double x, double y) {
+        return target.f(x, y);
+    }
+
+    @Override
+    public Dimension getWindowDimension() {
+        return target.getWindowDimension();
+    }
+
+    @Override
+    public Dimension getPositiveRange() {
+        return target.getPositiveRange();
+    }
+
+    @Override
+    public Dimension getPositionOffset() {
+        return target.getPositionOffset();
+    }
+
+    /**
+     * @return area of the boundary cells
+     */
+    @Override
+    public double getFactor() {
+        return stratification.getBoundaryArea();
+    }
+
+    /**
+     * @return area of the interior cells
+     */
+    @Override
+    public double getOffset() {
+        return stratification.getInteriorArea();
+    }
+}
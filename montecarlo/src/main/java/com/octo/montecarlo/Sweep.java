@@ -0,0 +1,323 @@
+package com.octo.montecarlo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * Scaling of the local runs, measured in a single JVM: each algorithm and type of run is warmed up once, then run with
+ * each number of threads and of iterations. With the strong scaling the iterations are the total, and the speedup is
+ * how much faster the threads do the same work. With the weak scaling they are per thread, and the efficiency says how
+ * much of the throughput of the first cell each thread keeps. The retries of the snapshots and the time of the
+ * listener measure the contention of the aggregation.
+ * <p>
+ * All the cells have the same seed, so the estimates of a row of cells with the same iterations are the same whatever
+ * the threads, which checks that nothing was lost.
+ * <p>
+ * <code>MonteCarloCmd sweep [--algorithms Batman,Pi] [--types sequential,parallel,stratified] [--threads 1,2,4]
+ * [--iterations 10000000,...] [--scaling strong,weak] [--warmup iterations] [--runs count] [--backend forkjoin|fixed]
+ * [--seed seed] [--snapshot-ms ms] [--output file]</code>
+ */
+final class Sweep {
+
+    private static final long ITERATIONS = 10_000_000L;
+
+    private static final long SNAPSHOT = 10L; // in ms, like the convergence check
+
+    private static final String HEADER = "%-12s %-10s %-7s %7s %14s %9s %14s %14s %8s %10s %6s %8s %12s %s%n";
+
+    private static final String ROW = "%-12s %-10s %-7s %7d %14d %9.3f %14.0f %14.0f %8.2f %9.1f%% %6.2f %8d %12.0f"
+            + " %1.10f%n";
+
+    private static final String[] COLUMNS = { "algorithm", "type", "scaling", "threads", "iterations", "seconds",
+            "iterations/s", "per thread", "speedup", "efficiency", "cores", "retries", "listener ns", "estimate" };
+
+    enum Scaling {
+        /** The same total iterations for all the thread counts */
+        STRONG,
+        /** The same iterations per thread */
+        WEAK;
+
+        /**
+         * @throws IllegalArgumentException
+         *             if there is no such scaling
+         */
+        static Scaling of(String name) {
+            for (Scaling scaling : values()) {
+                if (scaling.toString().equals(name)) {
+                    return scaling;
+                }
+            }
+            throw new IllegalArgumentException("Unknown scaling " + name + ". Should be strong or weak");
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * A run of the sweep. The configuration is set by the sweep and the measures by
+     * {@link MonteCarloCmd#measure(Cell, CalculatorFactory, ExecutionBackend, long, long)}
+     */
+    static final class Cell {
+
+        String algorithm;
+
+        String type;
+
+        Scaling scaling;
+
+        int threads;
+
+        /** Total iterations of the run */
+        long iterations;
+
+        /** Iterations done, all of them unless the run failed */
+        long loops;
+
+        double seconds;
+
+        /** Process CPU time over the elapsed time */
+        double cores;
+
+        double estimate;
+
+        /** Snapshots of the aggregator that had to be read again because a thread was writing */
+        long retries;
+
+        long calculationNanos;
+
+        long listenerNanos;
+
+        /** Throughput relative to the first cell of the row times its threads, NaN until computed */
+        double speedup = Double.NaN;
+
+        double throughput() {
+            return loops / seconds;
+        }
+
+        double efficiency() {
+            return speedup / threads;
+        }
+
+        /**
+         * @return mean time in the listener for each batch of the threads
+         */
+        double listenerNanosPerBatch() {
+            long batches = (loops + RandomPointGenerator.BLOCK - 1) / RandomPointGenerator.BLOCK;
+            return batches == 0 ? 0 : listenerNanos / (double) batches;
+        }
+
+        Object[] values() {
+            return new Object[] { algorithm, type, scaling, threads, iterations, seconds, throughput(),
+                    throughput() / threads, speedup, efficiency() * 100, cores, retries, listenerNanosPerBatch(),
+                    estimate };
+        }
+    }
+
+    private Sweep() {
+    }
+
+    /**
+     * Compute the speedup of the cells of a row, the same algorithm, type, scaling and iterations with more and more
+     * threads, against the first one: its throughput divided by the one of the first cell, times the threads of the
+     * first cell. With the same total iterations it is the usual time of the first cell over the time of the cell
+     */
+    static void speedup(List<Cell> row) {
+        Cell first = row.get(0);
+        for (Cell cell : row) {
+            cell.speedup = cell.throughput() / first.throughput() * first.threads;
+        }
+    }
+
+    static void main(Map<String, String> options) {
+        List<String> algorithms = options.containsKey("algorithms") ? list(options.get("algorithms"))
+                : Arrays.asList("Batman");
+        List<String> types = options.containsKey("types") ? list(options.get("types"))
+                : Arrays.asList("sequential", "parallel");
+        List<Integer> threads = new ArrayList<Integer>();
+        List<Long> iterations = new ArrayList<Long>();
+        List<Scaling> scalings = new ArrayList<Scaling>();
+        ExecutionBackend backend;
+        long warmup, seed, snapshot;
+        int runs;
+        try {
+            if (options.containsKey("threads")) {
+                for (String t : list(options.get("threads"))) {
+                    threads.add(Integer.parseInt(t));
+                }
+            } else {
+                // Powers of 2 up to the processors, and the processors
+                int processors = Runtime.getRuntime().availableProcessors();
+                for (int t = 1; t < processors; t *= 2) {
+                    threads.add(t);
+                }
+                threads.add(processors);
+            }
+            for (int t : threads) {
+                if (t < 1) {
+                    throw new IllegalArgumentException("The number of threads should be positive: " + t);
+                }
+            }
+            if (options.containsKey("iterations")) {
+                for (String i : list(options.get("iterations"))) {
+                    iterations.add(Long.parseLong(i));
+                }
+            } else {
+                iterations.add(ITERATIONS);
+            }
+            for (String s : options.containsKey("scaling") ? list(options.get("scaling"))
+                    : Arrays.asList("strong", "weak")) {
+                scalings.add(Scaling.of(s));
+            }
+            for (String type : types) {
+                if (!type.equals("sequential") && !type.equals("parallel") && !type.equals("stratified")) {
+                    throw new IllegalArgumentException("Unknown algorithm type " + type
+                            + ". Should be sequential, parallel or stratified");
+                }
+            }
+            backend = options.containsKey("backend") ? ExecutionBackend.of(options.get("backend"))
+                    : ExecutionBackend.FORKJOIN;
+            if (backend == ExecutionBackend.VIRTUAL) {
+                // All the cells would run on the carrier threads of the first one, whatever their threads
+                throw new IllegalArgumentException("The virtual backend can't be swept: the JVM sets the carrier"
+                        + " threads once, not for each cell");
+            }
+            warmup = options.containsKey("warmup") ? Long.parseLong(options.get("warmup")) : ITERATIONS;
+            runs = options.containsKey("runs") ? Integer.parseInt(options.get("runs")) : 1;
+            if (runs < 1) {
+                throw new IllegalArgumentException("The number of runs should be positive: " + runs);
+            }
+            seed = options.containsKey("seed") ? Long.parseLong(options.get("seed"))
+                    : RandomGenerator.getDefault().nextLong();
+            snapshot = options.containsKey("snapshot-ms") ? Long.parseLong(options.get("snapshot-ms")) : SNAPSHOT;
+            if (snapshot < 1) {
+                throw new IllegalArgumentException("The snapshots should be at least 1 ms apart: " + snapshot);
+            }
+        } catch (IllegalArgumentException e) {
+            MonteCarloCmd.usage(e.getMessage());
+            return;
+        }
+
+        PrintWriter output = null;
+        if (options.containsKey("output")) {
+            try {
+                output = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("output")),
+                        StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                MonteCarloCmd.usage("Can't write the output: " + e);
+                return;
+            }
+            output.println(String.join(",", COLUMNS));
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.printf("Seed: %d, %d processors, best of %d runs per cell after a warmup of %d iterations, a snapshot"
+                + " every %d ms%n%n", seed, processors, runs, warmup, snapshot);
+        System.out.printf(HEADER, (Object[]) COLUMNS);
+        for (String algorithm : algorithms) {
+            CalculatorFactory algorithmFactory;
+            try {
+                algorithmFactory = Algorithms.retrieve(algorithm);
+                if (algorithmFactory.create(0) instanceof CompositeMonteCarlo) {
+                    throw new IllegalArgumentException("A composite can't be swept: " + algorithm);
+                }
+            } catch (IllegalArgumentException e) {
+                MonteCarloCmd.usage(e.getMessage());
+                return;
+            }
+            for (String type : types) {
+                CalculatorFactory factory = type.equals("stratified")
+                        ? MonteCarloCmd.stratified(algorithmFactory, Stratification.GRID, Stratification.DEPTH)
+                        : algorithmFactory;
+                // Like MonteCarloCmd, a sequential run is a single thread of a fixed pool
+                List<Integer> typeThreads = type.equals("sequential") ? Arrays.asList(1) : threads;
+                ExecutionBackend typeBackend = type.equals("sequential") ? ExecutionBackend.FIXED : backend;
+                try {
+                    // The code of the calculator and of the threads compiled before the measures
+                    Cell warm = cell(algorithm, type, Scaling.STRONG, max(typeThreads), warmup);
+                    MonteCarloCmd.measure(warm, factory, typeBackend, seed, snapshot);
+                } catch (IllegalArgumentException e) {
+                    MonteCarloCmd.usage(e.getMessage());
+                    return;
+                }
+                for (long n : iterations) {
+                    for (Scaling scaling : scalings) {
+                        if (scaling == Scaling.WEAK && typeThreads.size() == 1) {
+                            // The same cell as the strong scaling
+                            continue;
+                        }
+                        List<Cell> row = new ArrayList<Cell>();
+                        for (int t : typeThreads) {
+                            long total = scaling == Scaling.STRONG ? n : n * t;
+                            Cell best = null;
+                            for (int run = 0; run < runs; run++) {
+                                Cell cell = cell(algorithm, type, scaling, t, total);
+                                MonteCarloCmd.measure(cell, factory, typeBackend, seed, snapshot);
+                                if (best == null || cell.seconds < best.seconds) {
+                                    best = cell;
+                                }
+                            }
+                            row.add(best);
+                        }
+                        speedup(row);
+                        for (Cell cell : row) {
+                            System.out.printf(ROW, cell.values());
+                            if (output != null) {
+                                output.println(csv(cell.values()));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (output != null) {
+            output.close();
+            if (output.checkError()) {
+                System.err.printf("Can't write the output %s%n", options.get("output"));
+            }
+        }
+    }
+
+    private static Cell cell(String algorithm, String type, Scaling scaling, int threads, long iterations) {
+        Cell cell = new Cell();
+        cell.algorithm = algorithm;
+        cell.type = type;
+        cell.scaling = scaling;
+        cell.threads = threads;
+        cell.iterations = iterations;
+        return cell;
+    }
+
+    private static String csv(Object[] values) {
+        StringBuilder line = new StringBuilder();
+        for (Object value : values) {
+            if (line.length() > 0) {
+                line.append(',');
+            }
+            line.append(value);
+        }
+        return line.toString();
+    }
+
+    private static int max(List<Integer> values) {
+        int max = 0;
+        for (int value : values) {
+            max = Math.max(max, value);
+        }
+        return max;
+    }
+
+    private static List<String> list(String values) {
+        return Arrays.asList(values.split(","));
+    }
+}
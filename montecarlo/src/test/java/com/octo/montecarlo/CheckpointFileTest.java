@@ -0,0 +1,190 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CheckpointFileTest {
+
+    @Test
+    public void testUnion() {
+        List<long[]> ranges = new ArrayList<>();
+        ranges.add(new long[] { 50, 60 });
+        ranges.add(new long[] { 0, 10 });
+        ranges.add(new long[] { 5, 20 });
+        ranges.add(new long[] { 20, 30 });
+        ranges.add(new long[] { 40, 40 });
+        List<long[]> union = CheckpointFile.union(ranges);
+        assertEquals(2, union.size());
+        assertArrayEquals(new long[] { 0, 30 }, union.get(0));
+        assertArrayEquals(new long[] { 50, 60 }, union.get(1));
+    }
+
+    @Test
+    public void testSubtract() {
+        List<long[]> ranges = new ArrayList<>();
+        ranges.add(new long[] { 0, 30 });
+        ranges.add(new long[] { 50, Long.MAX_VALUE });
+        List<long[]> removed = new ArrayList<>();
+        removed.add(new long[] { 10, 20 });
+        removed.add(new long[] { 0, 5 });
+        removed.add(new long[] { 50, 70 });
+        assertArrayEquals(new long[] { 5, 10, 20, 30, 70, Long.MAX_VALUE }, CheckpointFile.subtract(ranges, removed));
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Path path = File.createTempFile("montecarlo", ".ckpt").toPath();
+        try {
+            CheckpointFile file = CheckpointFile.create(path, run(), 2, new long[] { 1, 2 }, new long[] { 10, 20 },
+                    0, new long[0]);
+            // Thread 0 did its whole chunk, thread 1 half of it
+            ChunkScheduler.Chunk first = chunk(0, 1_000);
+            file.write(0, first, 0, new long[2], new long[2]);
+            file.claimed(first);
+            file.write(0, first, 1_000, new long[] { 300, 400 }, new long[] { 500, 500 });
+            ChunkScheduler.Chunk second = chunk(1_000, 3_000);
+            file.write(1, second, 1_000, new long[2], new long[2]);
+            file.claimed(second);
+            file.write(1, second, 2_000, new long[] { 30, 40 }, new long[] { 500, 500 });
+            file.close();
+
+            CheckpointFile.State state = CheckpointFile.read(path);
+            assertEquals("Batman", state.run.algorithm);
+            assertEquals("sobol", state.run.sampling);
+            assertEquals(7, state.run.seed);
+            assertEquals(2, state.run.replicas);
+            assertEquals(Precision.FLOAT, state.run.precision);
+            assertArrayEquals(new long[] { 331, 442 }, state.p);
+            assertArrayEquals(new long[] { 1_010, 1_020 }, state.n);
+            assertArrayEquals(new long[] { 2_000, Long.MAX_VALUE }, state.remaining);
+            assertEquals(2_000, state.frontier());
+            assertEquals(0, state.holes(10_000).length);
+        } finally {
+            path.toFile().delete();
+        }
+    }
+
+    @Test
+    public void testHoles() throws Exception {
+        Path path = File.createTempFile("montecarlo", ".ckpt").toPath();
+        try {
+            CheckpointFile file = CheckpointFile.create(path, run(), 2, new long[2], new long[2], 0, new long[0]);
+            // Thread 0 stopped in the middle of its chunk, thread 1 did the next one
+            ChunkScheduler.Chunk first = chunk(0, 4_000);
+            file.write(0, first, 0, new long[2], new long[2]);
+            file.claimed(first);
+            file.write(0, first, 1_000, new long[2], new long[] { 500, 500 });
+            ChunkScheduler.Chunk second = chunk(4_000, 6_000);
+            file.write(1, second, 4_000, new long[2], new long[2]);
+            file.claimed(second);
+            file.write(1, second, 6_000, new long[2], new long[] { 1_000, 1_000 });
+            file.close();
+
+            CheckpointFile.State state = CheckpointFile.read(path);
+            assertArrayEquals(new long[] { 1_000, 4_000, 6_000, Long.MAX_VALUE }, state.remaining);
+            assertEquals(6_000, state.frontier());
+            // A shorter run only does the start of the hole, the rest is kept after it
+            assertArrayEquals(new long[] { 1_000, 2_500, 2_500, 4_000 }, state.holes(2_500));
+            ChunkScheduler scheduler = new ChunkScheduler(2_500, 2, 1_000, Math.min(state.frontier(), 2_500),
+                    state.holes(2_500));
+            ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+            assertTrue(scheduler.claim(chunk));
+            assertEquals(0, chunk.hole);
+            assertEquals(1_000, chunk.start);
+            assertEquals(2_500, chunk.end);
+            assertFalse(scheduler.claim(chunk));
+        } finally {
+            path.toFile().delete();
+        }
+    }
+
+    @Test
+    public void testInterleavedClaims() throws Exception {
+        Path path = File.createTempFile("montecarlo", ".ckpt").toPath();
+        try {
+            CheckpointFile file = CheckpointFile.create(path, run(), 2, new long[2], new long[2], 0, new long[0]);
+            ChunkScheduler scheduler = new ChunkScheduler(10_000, 2, 1_000);
+            // Thread 0 claims a chunk and stops, thread 1 claims the next one, does it and claims another one
+            ChunkScheduler.Chunk first = new ChunkScheduler.Chunk();
+            assertTrue(file.claim(0, scheduler, first, new long[2], new long[2]));
+            ChunkScheduler.Chunk second = new ChunkScheduler.Chunk();
+            assertTrue(file.claim(1, scheduler, second, new long[2], new long[2]));
+            long[] n = { second.size() / 2, second.size() / 2 };
+            file.write(1, second, second.end, new long[2], n);
+            ChunkScheduler.Chunk third = new ChunkScheduler.Chunk();
+            assertTrue(file.claim(1, scheduler, third, new long[2], n));
+
+            // Killed here: the chunk of thread 0 isn't lost behind the frontier
+            CheckpointFile.State state = CheckpointFile.read(path);
+            assertArrayEquals(new long[] { first.start, first.end, third.start, Long.MAX_VALUE }, state.remaining);
+            assertEquals(second.size(), state.n[0] + state.n[1]);
+            file.close();
+        } finally {
+            path.toFile().delete();
+        }
+    }
+
+    @Test
+    public void testConcurrentClaims() throws Exception {
+        Path path = File.createTempFile("montecarlo", ".ckpt").toPath();
+        try {
+            final CheckpointFile file = CheckpointFile.create(path, run(), 4, new long[2], new long[2], 0,
+                    new long[0]);
+            final ChunkScheduler scheduler = new ChunkScheduler(1_000_000, 4, 1_000);
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                final int index = t;
+                threads[t] = new Thread() {
+                    @Override
+                    public void run() {
+                        ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+                        long[] n = new long[2];
+                        while (file.claim(index, scheduler, chunk, new long[2], n)) {
+                            n[0] += chunk.size();
+                            file.write(index, chunk, chunk.end, new long[2], n);
+                        }
+                    }
+                };
+                threads[t].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            file.close();
+
+            // Every iteration is either done or left, once
+            CheckpointFile.State state = CheckpointFile.read(path);
+            assertEquals(1_000_000, state.n[0]);
+            assertArrayEquals(new long[] { 1_000_000, Long.MAX_VALUE }, state.remaining);
+        } finally {
+            path.toFile().delete();
+        }
+    }
+
+    private static CheckpointFile.Run run() {
+        CheckpointFile.Run run = new CheckpointFile.Run();
+        run.algorithm = "Batman";
+        run.type = "parallel";
+        run.sampling = "sobol";
+        run.rng = RandomPointGenerator.DEFAULT_ALGORITHM;
+        run.seed = 7;
+        run.replicas = 2;
+        run.grid = Stratification.GRID;
+        run.depth = Stratification.DEPTH;
+        run.precision = Precision.FLOAT;
+        return run;
+    }
+
+    private static ChunkScheduler.Chunk chunk(long start, long end) {
+        ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+        chunk.start = start;
+        chunk.end = end;
+        return chunk;
+    }
+}
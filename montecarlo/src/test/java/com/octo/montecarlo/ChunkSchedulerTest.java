@@ -0,0 +1,61 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+public class ChunkSchedulerTest {
+
+    @Test
+    public void testChunksCoverEverything() {
+        ChunkScheduler scheduler = new ChunkScheduler(1_234_567, 4, 1_000);
+        ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+        long expectedStart = 0;
+        long previousSize = Long.MAX_VALUE;
+        while (scheduler.claim(chunk)) {
+            assertEquals(expectedStart, chunk.start);
+            assertTrue(chunk.size() <= previousSize);
+            if (chunk.end != 1_234_567) {
+                assertEquals(0, chunk.size() % 1_000);
+            }
+            previousSize = chunk.size();
+            expectedStart = chunk.end;
+        }
+        assertEquals(1_234_567, expectedStart);
+        assertFalse(scheduler.claim(chunk));
+    }
+
+    @Test
+    public void testSmallerThanMinimum() {
+        ChunkScheduler scheduler = new ChunkScheduler(10, 8, 1_000);
+        ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+        assertTrue(scheduler.claim(chunk));
+        assertEquals(10, chunk.size());
+        assertFalse(scheduler.claim(chunk));
+    }
+
+    @Test(timeout = 30_000)
+    public void testConcurrentClaims() throws Exception {
+        final ChunkScheduler scheduler = new ChunkScheduler(100_000_001, 4, 10);
+        final AtomicLong claimed = new AtomicLong();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    ChunkScheduler.Chunk chunk = new ChunkScheduler.Chunk();
+                    while (scheduler.claim(chunk)) {
+                        claimed.addAndGet(chunk.size());
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100_000_001, claimed.get());
+    }
+}
@@ -0,0 +1,96 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CompositeMonteCarloTest {
+
+    private static class Counts implements MonteCarloMultiListener {
+
+        long[] p;
+
+        long[] d;
+
+        long n;
+
+        @Override
+        public void onPoint(double x, double y, boolean good) {
+        }
+
+        @Override
+        public void onValue(int index, long p, long n) {
+            fail("Only the first count");
+        }
+
+        @Override
+        public void onValues(int index, long[] p, long[] d, long n) {
+            this.p = p.clone();
+            this.d = d.clone();
+            this.n = n;
+        }
+    }
+
+    @Test
+    public void testSamePoints() {
+        Counts counts = new Counts();
+        CompositeMonteCarlo composite = (CompositeMonteCarlo) Algorithms.retrieve("Batman+Pi").create(0);
+        composite.setListener(counts);
+        composite.setPointGenerator(new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 5));
+        composite.calculateBatch(100_000);
+
+        // The domain of Batman covers the one of Pi, so Batman sees the points it would see alone
+        Counts alone = new Counts();
+        BatmanMonteCarlo batman = new BatmanMonteCarlo(0);
+        batman.setListener(new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                alone.p = new long[] { p };
+                alone.n = n;
+            }
+        });
+        batman.setPointGenerator(new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 5));
+        batman.calculateBatch(100_000);
+
+        assertArrayEquals(new String[] { "Batman", "Pi" }, composite.getNames());
+        assertEquals(batman.getFactor(), composite.getFactor(), 0);
+        assertEquals(alone.n, counts.n);
+        assertEquals(alone.p[0], counts.p[0]);
+        assertEquals(0, counts.d[0]);
+        // The circle is inside the Batman: disagreements are the points of the Batman out of the circle
+        assertEquals(counts.p[0] - counts.p[1], counts.d[1]);
+        assertEquals(Math.PI, composite.getFactor() * counts.p[1] / counts.n, 0.2);
+    }
+
+    @Test
+    public void testSingleListener() {
+        final long[] value = new long[2];
+        CompositeMonteCarlo composite = (CompositeMonteCarlo) Algorithms.retrieve("Pi+Pi").create(0);
+        composite.setListener(new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                value[0] = p;
+                value[1] = n;
+            }
+        });
+        composite.calculateBatch(1_000);
+        composite.calculate();
+        assertEquals(1_001, value[1]);
+        assertEquals(Math.PI, 4.0 * value[0] / value[1], 0.3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknown() {
+        Algorithms.retrieve("Pi+Nothing");
+    }
+}
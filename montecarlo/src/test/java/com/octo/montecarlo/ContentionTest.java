@@ -0,0 +1,29 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ContentionTest {
+
+    @Test
+    public void testNoPublishLost() throws InterruptedException {
+        for (Contention.Strategy strategy : Contention.Strategy.values()) {
+            Contention.Result result = Contention.run(strategy, 3, 50, 100_000, 10);
+            assertTrue(strategy.toString(), result.consistent);
+            assertTrue(strategy.toString(), result.updates > 0);
+            assertTrue(strategy.toString(), result.latency(0.5) <= result.latency(1.0));
+        }
+    }
+
+    @Test
+    public void testStrategy() {
+        assertEquals(Contention.Strategy.STAMPED, Contention.Strategy.of("stamped"));
+        assertEquals("cow", Contention.Strategy.COW.toString());
+        Contention.Aggregation aggregation = Contention.Strategy.ADDER.create(2);
+        aggregation.update(0, 10, 100);
+        aggregation.update(1, 20, 100);
+        aggregation.update(0, 30, 200);
+        assertEquals(50 * 4.0 / 300, aggregation.snapshot().calculate(4.0), 1e-12);
+    }
+}
@@ -0,0 +1,81 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConvergenceLogTest {
+
+    private static ConvergenceLog.Record record(String type, long samples) {
+        ConvergenceLog.Record record = new ConvergenceLog.Record();
+        record.type = type;
+        record.timestamp = 1_000;
+        record.elapsed = 2_500_000;
+        record.samples = samples;
+        record.workerSamples = new long[] { samples / 2, samples - samples / 2 };
+        record.estimate = 3.5;
+        record.standardError = Double.POSITIVE_INFINITY;
+        record.retries = 4;
+        return record;
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        Path path = File.createTempFile("convergence", ".csv").toPath();
+        try {
+            ConvergenceLog log = new ConvergenceLog(path, ConvergenceLog.Format.of(path), 16);
+            assertTrue(log.record(record("progress", 1_000)));
+            assertTrue(log.record(record("final", 3_000)));
+            log.close();
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            assertEquals(3, lines.size());
+            assertTrue(lines.get(0).startsWith("type,timestamp,elapsed_ms,samples,"));
+            assertEquals("progress,1000,2.500,1000,3.5,Infinity,4,0,0,500;500", lines.get(1));
+            assertEquals("final,1000,2.500,3000,3.5,Infinity,4,0,0,1500;1500", lines.get(2));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        Path path = File.createTempFile("convergence", ".json").toPath();
+        try {
+            ConvergenceLog log = new ConvergenceLog(path, ConvergenceLog.Format.of(path), 16);
+            log.record(record("final", 10));
+            log.close();
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            assertEquals(1, lines.size());
+            assertEquals("{\"type\":\"final\",\"timestamp\":1000,\"elapsed_ms\":2.500,\"samples\":10,\"estimate\":3.5,"
+                    + "\"standard_error\":null,\"retries\":4,\"deaths\":0,\"dropped\":0,\"worker_samples\":[5,5]}",
+                    lines.get(0));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testNeverWaits() throws Exception {
+        Path path = File.createTempFile("convergence", ".csv").toPath();
+        try {
+            ConvergenceLog log = new ConvergenceLog(path, ConvergenceLog.Format.CSV, 1);
+            int records = 10_000;
+            for (int i = 0; i < records; i++) {
+                log.record(record("progress", i));
+            }
+            log.close(record("final", records));
+            // Each record is either written or dropped, the summary is always the last one
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            assertEquals(records, lines.size() - 2 + log.dropped());
+            assertTrue(lines.get(lines.size() - 1).startsWith("final,"));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ConvergenceTest {
+
+    @Test
+    public void testNormalQuantile() {
+        assertEquals(0.0, Convergence.normalQuantile(0.5), 1e-9);
+        assertEquals(1.959963985, Convergence.normalQuantile(0.975), 1e-8);
+        assertEquals(-2.326347874, Convergence.normalQuantile(0.01), 1e-8);
+        assertEquals(3.090232306, Convergence.normalQuantile(0.999), 1e-8);
+    }
+
+    @Test
+    public void testStudentQuantile() {
+        assertEquals(12.70620474, Convergence.studentQuantile(0.95, 1), 1e-7);
+        assertEquals(4.30265273, Convergence.studentQuantile(0.95, 2), 1e-7);
+        assertEquals(2.36462425, Convergence.studentQuantile(0.95, 7), 1e-7);
+        assertEquals(3.49948329, Convergence.studentQuantile(0.99, 7), 1e-7);
+        assertEquals(1.98397152, Convergence.studentQuantile(0.95, 100), 1e-7);
+    }
+
+    @Test
+    public void testReplicas() {
+        // 8 replicas of 0.4 and 0.6: standard error sqrt(8 * 0.01 / 7 / 8) = 0.0377964
+        long[] p = new long[8];
+        long[] n = new long[8];
+        for (int i = 0; i < 8; i++) {
+            p[i] = i % 2 == 0 ? 4_000 : 6_000;
+            n[i] = 10_000;
+        }
+        Step step = new Step(p, n, 8);
+        Convergence convergence = Convergence.absolute(1.0, 0.95);
+        assertEquals(2.36462425 * 0.03779645, convergence.halfWidth(step, 1.0), 1e-7);
+        // Bernoulli error of a single sample
+        step = new Step(new long[] { 500_000 }, new long[] { 1_000_000 });
+        assertEquals(1.959963985 * step.standardError(1.0), convergence.halfWidth(step, 1.0), 1e-12);
+    }
+
+    @Test
+    public void testStandardError() {
+        // 1 million iterations with a half of them in: sqrt(0.25 / 999_999)
+        Step step = new Step(new long[] { 250_000, 250_000 }, new long[] { 500_000, 500_000 });
+        assertEquals(4.0 * 5.000002500e-4, step.standardError(4.0), 1e-12);
+    }
+
+    @Test
+    public void testAbsolute() {
+        Step step = new Step(new long[] { 500_000 }, new long[] { 1_000_000 });
+        // Half width at 95% = 1.96 * 5e-4 = 9.8e-4
+        assertTrue(Convergence.absolute(1e-3, 0.95).isReached(step, 1.0));
+        assertFalse(Convergence.absolute(9e-4, 0.95).isReached(step, 1.0));
+    }
+
+    @Test
+    public void testRelative() {
+        Step step = new Step(new long[] { 500_000 }, new long[] { 1_000_000 });
+        // Estimate is 0.5 so the relative half width is 1.96e-3
+        assertTrue(Convergence.relative(2e-3, 0.95).isReached(step, 1.0));
+        assertFalse(Convergence.relative(1.9e-3, 0.95).isReached(step, 1.0));
+    }
+
+    @Test
+    public void testNotTrustedWithoutVariance() {
+        assertFalse(Convergence.absolute(1.0, 0.95).isReached(new Step(new long[] { 0 }, new long[] { 100_000 }), 1.0));
+        assertFalse(Convergence.absolute(1.0, 0.95).isReached(new Step(new long[] { 50 }, new long[] { 100 }), 1.0));
+    }
+}
@@ -0,0 +1,103 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CoordinatorTest {
+
+    private static final long ITERATIONS = 200_000;
+
+    private static final long CHECKPOINT = 1_000;
+
+    @Test
+    public void testSameResultAsLocal() throws Exception {
+        Step step = run(false);
+        assertEquals(ITERATIONS, step.loops());
+
+        // The same blocks of the same sequence, computed by a single local calculator
+        PointGenerator generator = MonteCarloCmd.generators("random", 1, "L64X128MixRandom", 42)[0];
+        final long[] result = new long[1];
+        BatmanMonteCarlo batman = new BatmanMonteCarlo(0, new MonteCarloListener() {
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                result[0] = p;
+            }
+        });
+        batman.setPointGenerator(generator);
+        batman.calculateBatch(ITERATIONS);
+        assertEquals(result[0], step.pList[0]);
+    }
+
+    @Test
+    public void testWorkerDeath() throws Exception {
+        Step reference = run(false);
+        Step step = run(true);
+        // The chunk of the dead worker was computed by another one, from the same points
+        assertEquals(ITERATIONS, step.loops());
+        assertEquals(reference.pList[0], step.pList[0]);
+    }
+
+    private Step run(boolean death) throws Exception {
+        Coordinator coordinator = new Coordinator("Batman", "random", "L64X128MixRandom", 42, 1, ITERATIONS, 2,
+                CHECKPOINT, new ServerSocket(0));
+        coordinator.start();
+        int port = coordinator.getPort();
+        try {
+            if (death) {
+                die(coordinator);
+                assertEquals(1, coordinator.deaths());
+            }
+            Thread[] workers = new Thread[2];
+            for (int i = 0; i < workers.length; i++) {
+                workers[i] = new Thread(new RemoteWorker("localhost", port, CHECKPOINT));
+                workers[i].start();
+            }
+            assertTrue(coordinator.getDone().await(30, TimeUnit.SECONDS));
+            for (Thread worker : workers) {
+                worker.join(10_000);
+            }
+            return coordinator.snapshot();
+        } finally {
+            coordinator.close();
+        }
+    }
+
+    /**
+     * A worker claiming a chunk, telling wrong counts and dying
+     */
+    private void die(Coordinator coordinator) throws IOException, InterruptedException {
+        try (Socket socket = new Socket("localhost", coordinator.getPort())) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            in.readUTF();
+            in.readUTF();
+            in.readUTF();
+            in.readLong();
+            in.readInt();
+            out.writeByte(Coordinator.CLAIM);
+            long start = in.readLong();
+            long end = in.readLong();
+            assertTrue(end > start);
+            out.writeByte(Coordinator.PROGRESS);
+            out.writeLong(123);
+            out.writeLong(456);
+            assertEquals(Coordinator.CONTINUE, in.readByte());
+        }
+        // Wait for the coordinator to see the connection closed
+        for (int i = 0; i < 100 && coordinator.deaths() == 0; i++) {
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class EstimatorTest {
+
+    @Test
+    public void testAntithetic() {
+        // Always one in and one out: the mean of a pair is always 1/2
+        assertEquals(0.5, Estimator.ANTITHETIC.mean(0.3, 0.7, 1, 0), 1e-12);
+        assertEquals(0, Estimator.ANTITHETIC.variance(0.3, 0.7, 1, 0), 1e-12);
+        // Independent points: half the variance of one point
+        assertEquals(0.125, Estimator.ANTITHETIC.variance(0.5, 0.5, 0.5, 0), 1e-12);
+        assertEquals(Estimator.HIT_OR_MISS.variance(0.5, 0, 0, 0) / 2,
+                Estimator.ANTITHETIC.variance(0.5, 0.5, 0.5, 0), 1e-12);
+    }
+
+    @Test
+    public void testControl() {
+        // A control always decided like the function gives its known area without error
+        assertEquals(0.5, Estimator.CONTROL.mean(0.4, 0.4, 0, 0.5), 1e-12);
+        assertEquals(0, Estimator.CONTROL.variance(0.4, 0.4, 0, 0.5), 1e-12);
+        // An independent control changes nothing
+        assertEquals(0.4, Estimator.CONTROL.mean(0.4, 0.5, 0.5, 0.6), 1e-12);
+        assertEquals(0.24, Estimator.CONTROL.variance(0.4, 0.5, 0.5, 0.6), 1e-12);
+    }
+
+    @Test
+    public void testReflect() {
+        assertEquals(0.75, Estimator.reflect(0.25, 1), 0);
+        assertEquals(-0.75, Estimator.reflect(-0.25, 1), 0);
+        assertEquals(0, Estimator.reflect(-10, 10), 0);
+        assertEquals(7, Estimator.reflect(3, 10), 0);
+    }
+
+    @Test
+    public void testPi() {
+        for (Estimator estimator : new Estimator[] { Estimator.ANTITHETIC, Estimator.CONTROL }) {
+            MonteCarloCalculator calculator = estimator.factory(Algorithms.retrieve("Pi"), "Pi").create(0);
+            final Step[] steps = { new Step(1), new Step(1), new Step(1) };
+            calculator.setListener(new MonteCarloMultiListener() {
+
+                @Override
+                public void onPoint(double x, double y, boolean good) {
+                }
+
+                @Override
+                public void onValue(int index, long p, long n) {
+                }
+
+                @Override
+                public void onValues(int index, long[] p, long[] d, long n) {
+                    steps[0] = steps[0].update(0, p[0], n);
+                    steps[1] = steps[1].update(0, p[1], n);
+                    steps[2] = steps[2].update(0, d[1], n);
+                }
+            });
+            calculator.setPointGenerator(new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 7));
+            calculator.calculateBatch(1_000_000);
+
+            double control = new PiMonteCarlo(0).getControl().getArea() / calculator.getFactor();
+            ReducedStep step = new ReducedStep(estimator, steps[0], steps[1], steps[2], control);
+            double error = step.standardError(calculator.getFactor());
+            assertEquals(estimator.toString(), Math.PI, step.calculate(calculator.getFactor()), 4 * error);
+            assertTrue(estimator.toString(), error < steps[0].standardError(calculator.getFactor()));
+            assertTrue(estimator.toString(), step.gain() > 2);
+        }
+    }
+
+    @Test
+    public void testUnsupported() {
+        try {
+            Estimator.CONTROL.factory(Algorithms.retrieve("Heart"), "Heart");
+            fail("No control for the shapes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            Estimator.ANTITHETIC.factory(Algorithms.retrieve("Pi+Batman"), "Pi+Batman");
+            fail("Already a composite");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertSame(Estimator.HIT_OR_MISS, Estimator.of("hit-or-miss"));
+        assertEquals("antithetic", Estimator.ANTITHETIC.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknown() {
+        Estimator.of("importance");
+    }
+}
@@ -0,0 +1,77 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ExecutionBackendTest {
+
+    @Test
+    public void testOf() {
+        assertSame(ExecutionBackend.FORKJOIN, ExecutionBackend.of("forkjoin"));
+        assertSame(ExecutionBackend.FIXED, ExecutionBackend.of("fixed"));
+        assertSame(ExecutionBackend.VIRTUAL, ExecutionBackend.of("virtual"));
+        assertEquals("forkjoin", ExecutionBackend.FORKJOIN.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknown() {
+        ExecutionBackend.of("cached");
+    }
+
+    @Test
+    public void testVirtualParallelism() {
+        // Same number of workers as testWorkersRunTogether, whichever runs first
+        try {
+            ExecutionBackend.VIRTUAL.create(2).shutdownNow();
+        } catch (IllegalArgumentException e) {
+            // Virtual threads before Java 21
+            return;
+        }
+        ExecutionBackend.VIRTUAL.create(2).shutdownNow();
+        try {
+            ExecutionBackend.VIRTUAL.create(3);
+            fail("The JVM already has 2 carrier threads");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("2 carrier threads"));
+        }
+    }
+
+    @Test
+    public void testWorkersRunTogether() throws InterruptedException {
+        for (ExecutionBackend backend : ExecutionBackend.values()) {
+            ExecutorService service;
+            try {
+                service = backend.create(2);
+            } catch (IllegalArgumentException e) {
+                // Virtual threads before Java 21
+                assertSame(ExecutionBackend.VIRTUAL, backend);
+                continue;
+            }
+            // Each worker waits for the other so they have to run at the same time
+            final CountDownLatch started = new CountDownLatch(2);
+            final CountDownLatch done = new CountDownLatch(2);
+            for (int i = 0; i < 2; i++) {
+                service.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            if (started.await(10, TimeUnit.SECONDS)) {
+                                done.countDown();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+            assertTrue(backend.toString(), done.await(10, TimeUnit.SECONDS));
+            service.shutdownNow();
+        }
+    }
+}
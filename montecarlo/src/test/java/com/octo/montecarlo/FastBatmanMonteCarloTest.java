@@ -0,0 +1,74 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FastBatmanMonteCarloTest {
+
+    private BatmanMonteCarlo reference = new BatmanMonteCarlo(0);
+
+    private FastBatmanMonteCarlo b = new FastBatmanMonteCarlo(0);
+
+    @Test
+    public void testZero() {
+        assertTrue(b.f(0, 0));
+    }
+
+    @Test
+    public void testTenZero() {
+        assertFalse(b.f(10, 0));
+    }
+
+    @Test
+    public void testZeroTen() {
+        assertFalse(b.f(0, 10));
+    }
+
+    @Test
+    public void test4242() {
+        assertFalse(b.f(4.2, 4.2));
+    }
+
+    @Test
+    public void testRandomPoints() {
+        Random rand = new Random(1);
+        for (int i = 0; i < 2_000_000; i++) {
+            assertSame(rand.nextDouble() * 20.0 - 10.0, rand.nextDouble() * 10.0 - 5.0);
+        }
+    }
+
+    @Test
+    public void testGridPoints() {
+        // Multiples of 1/64 fall exactly on the region limits (abs(x) = 1/2, 3/4, 1, 3, 4, 7, y = -3, 0, 3...)
+        for (int i = 0; i <= 20 * 64; i++) {
+            for (int j = 0; j <= 10 * 64; j++) {
+                assertSame(i / 64.0 - 10.0, j / 64.0 - 5.0);
+            }
+        }
+    }
+
+    @Test
+    public void testAroundLimits() {
+        double[] limits = { 0.0, 0.5, 0.75, 1.0, 3.0, 4.0, 7.0 };
+        double[] heights = { -3.0, -2.4619, 0.0, 1.0, 2.25, 3.0 };
+        for (double limit : limits) {
+            for (double height : heights) {
+                for (int k = -3; k <= 3; k++) {
+                    double x = limit + k * Math.ulp(limit == 0 ? 1.0 : limit);
+                    for (int l = -3; l <= 3; l++) {
+                        double y = height + l * Math.ulp(height == 0 ? 1.0 : height);
+                        assertSame(x, y);
+                        assertSame(-x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    private void assertSame(double x, double y) {
+        assertEquals("(" + x + ", " + y + ")", reference.f(x, y), b.f(x, y));
+    }
+}
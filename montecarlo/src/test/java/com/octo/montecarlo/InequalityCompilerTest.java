@@ -0,0 +1,103 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class InequalityCompilerTest {
+
+    @Test
+    public void testPrecedence() {
+        // -x^2 is -(x^2), ^ is right associative, * and / from left to right
+        assertTrue(InequalityCompiler.compile("-x^2 < 0").test(2, 0));
+        assertTrue(InequalityCompiler.compile("2^3^2 >= 512 and 2^3^2 <= 512").test(0, 0));
+        assertTrue(InequalityCompiler.compile("8/2/2 <= 2 and 8/2/2 >= 2").test(0, 0));
+        assertTrue(InequalityCompiler.compile("x^-1 > 0.49 and x^-1 < 0.51").test(2, 0));
+        // and before or
+        Inequality inequality = InequalityCompiler.compile("x > 0 or y > 0 and y < 1");
+        assertTrue(inequality.test(1, 5));
+        assertFalse(inequality.test(-1, 5));
+        assertTrue(inequality.test(-1, 0.5));
+        assertFalse(InequalityCompiler.compile("(x > 0 or y > 0) and y < 1").test(1, 5));
+    }
+
+    @Test
+    public void testImplicitMultiplication() {
+        // 1/112 (3 sqrt(33)-7) x^2 is 1/112 * (3 * sqrt(33) - 7) * x^2
+        Inequality inequality = InequalityCompiler.compile("y <= 1/112 (3 sqrt(33)-7) x^2");
+        double value = 1.0 / 112.0 * (3.0 * Math.sqrt(33.0) - 7.0) * 9;
+        assertTrue(inequality.test(3, value));
+        assertFalse(inequality.test(3, Math.nextUp(value)));
+        assertTrue(InequalityCompiler.compile("2x y >= 12 and -8 abs(x) < -23").test(3, 2));
+    }
+
+    @Test
+    public void testChainedComparison() {
+        Inequality inequality = InequalityCompiler.compile("-3<=y<=0 and -4<x<4");
+        assertTrue(inequality.test(0, -3));
+        assertTrue(inequality.test(-3.9, 0));
+        assertFalse(inequality.test(0, 0.1));
+        assertFalse(inequality.test(4, -1));
+        assertFalse(inequality.test(0, -3.1));
+        // Each part of a chain in an or
+        inequality = InequalityCompiler.compile("0<x<1<y or x>5");
+        assertTrue(inequality.test(0.5, 2));
+        assertFalse(inequality.test(0.5, 0.5));
+        assertTrue(inequality.test(6, 0));
+    }
+
+    @Test
+    public void testNaN() {
+        // sqrt of a negative number is NaN, false whatever the comparison
+        assertFalse(InequalityCompiler.compile("sqrt(x) <= 1").test(-1, 0));
+        assertFalse(InequalityCompiler.compile("sqrt(x) >= 1").test(-1, 0));
+        assertFalse(InequalityCompiler.compile("sqrt(x) < 1").test(-1, 0));
+        assertFalse(InequalityCompiler.compile("sqrt(x) > 1").test(-1, 0));
+        assertTrue(InequalityCompiler.compile("sqrt(x) > 1 or y > 0").test(-1, 1));
+    }
+
+    @Test
+    public void testFunctions() {
+        Inequality inequality = InequalityCompiler.compile("hypot(x, y) <= 5 and max(x, y) >= 4 and cos(pi) < 0");
+        assertTrue(inequality.test(3, 4));
+        assertFalse(inequality.test(3, 3));
+    }
+
+    @Test
+    public void testErrors() {
+        for (String formula : new String[] { "x", "x <", "x < 1 and y", "foo(x) < 1", "x < (y", "x < 1 $ 2",
+                "(x < 1) + 1 < 2", "min(x) < 1" }) {
+            try {
+                InequalityCompiler.compile(formula);
+                fail(formula);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(formula));
+            }
+        }
+    }
+
+    @Test
+    public void testSameAsBatman() {
+        BatmanMonteCarlo batman = new BatmanMonteCarlo(0);
+        Shape shape = new BatmanShape();
+        Random rand = new Random(42);
+        for (int i = 0; i < 1_000_000; i++) {
+            double x = rand.nextDouble() * 20 - 10;
+            double y = rand.nextDouble() * 10 - 5;
+            assertEquals(x + " " + y, batman.f(x, y), shape.contains(x, y));
+        }
+    }
+
+    @Test
+    public void testServiceLoader() {
+        Shape shape = ShapeMonteCarlo.find("BatmanFormula");
+        assertNotNull(shape);
+        assertTrue(shape instanceof BatmanShape);
+        assertNotNull(ShapeMonteCarlo.find("Heart"));
+        assertNull(ShapeMonteCarlo.find("Batman"));
+        assertTrue(Algorithms.retrieve("Heart").create(0) instanceof ShapeMonteCarlo);
+        assertTrue(Algorithms.retrieve("Batman").create(0) instanceof BatmanMonteCarlo);
+    }
+}
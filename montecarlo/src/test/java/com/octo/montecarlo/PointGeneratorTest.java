@@ -0,0 +1,159 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PointGeneratorTest {
+
+    @Test
+    public void testSobolFirstPoints() {
+        double[] u = new double[8];
+        double[] v = new double[8];
+        new SobolPointGenerator().next(u, v, 8);
+        assertArrayEquals(new double[] { 0, 0.5, 0.75, 0.25, 0.375, 0.875, 0.625, 0.125 }, u, 0.0);
+        assertArrayEquals(new double[] { 0, 0.5, 0.25, 0.75, 0.375, 0.875, 0.125, 0.625 }, v, 0.0);
+    }
+
+    @Test
+    public void testHaltonFirstPoints() {
+        double[] u = new double[5];
+        double[] v = new double[5];
+        new HaltonPointGenerator().next(u, v, 5);
+        assertArrayEquals(new double[] { 0, 0.5, 0.25, 0.75, 0.125 }, u, 0.0);
+        assertArrayEquals(new double[] { 0, 1.0 / 3, 2.0 / 3, 1.0 / 9, 4.0 / 9 }, v, 1e-15);
+    }
+
+    @Test
+    public void testSkipTo() {
+        Random rand = new Random(1);
+        assertSkipTo(new SobolPointGenerator(rand));
+        assertSkipTo(new HaltonPointGenerator(rand));
+        assertSkipTo(new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 1));
+        assertSkipTo(new RandomPointGenerator("Xoroshiro128PlusPlus", 1));
+    }
+
+    @Test
+    public void testRandomReproducible() {
+        // The blocks computed in any order by any copy are the ones of the whole sequence
+        int length = 5 * RandomPointGenerator.BLOCK;
+        double[] u = new double[length];
+        double[] v = new double[length];
+        new RandomPointGenerator("SplittableRandom", 42).next(u, v, length);
+        PointGenerator first = new RandomPointGenerator("SplittableRandom", 42);
+        PointGenerator second = first.copy();
+        double[] u2 = new double[RandomPointGenerator.BLOCK];
+        double[] v2 = new double[RandomPointGenerator.BLOCK];
+        for (int block : new int[] { 3, 0, 4, 1, 2 }) {
+            PointGenerator generator = block % 2 == 0 ? first : second;
+            generator.skipTo(block * RandomPointGenerator.BLOCK);
+            generator.next(u2, v2, u2.length);
+            for (int i = 0; i < u2.length; i++) {
+                assertEquals(u[block * RandomPointGenerator.BLOCK + i], u2[i], 0.0);
+                assertEquals(v[block * RandomPointGenerator.BLOCK + i], v2[i], 0.0);
+            }
+        }
+
+        double[] u3 = new double[length];
+        new RandomPointGenerator("SplittableRandom", 43).next(u3, new double[length], length);
+        assertTrue(u[0] != u3[0]);
+    }
+
+    private void assertSkipTo(PointGenerator generator) {
+        int length = 10_000;
+        double[] u = new double[length];
+        double[] v = new double[length];
+        generator.next(u, v, length);
+
+        // A copy sent in the middle of the sequence gives the same points
+        PointGenerator copy = generator.copy();
+        copy.skipTo(6_789);
+        double[] u2 = new double[length - 6_789];
+        double[] v2 = new double[length - 6_789];
+        copy.next(u2, v2, u2.length);
+        for (int i = 0; i < u2.length; i++) {
+            assertEquals(u[6_789 + i], u2[i], 0.0);
+            assertEquals(v[6_789 + i], v2[i], 0.0);
+        }
+
+        // Same with the raw bits, which don't draw as many values per point for a pseudo-random generator
+        long[] bits = new long[length];
+        generator.copy().nextBits(bits, length);
+        copy = generator.copy();
+        copy.skipTo(6_789);
+        long[] bits2 = new long[length - 6_789];
+        copy.nextBits(bits2, bits2.length);
+        for (int i = 0; i < bits2.length; i++) {
+            assertEquals(bits[6_789 + i], bits2[i]);
+        }
+    }
+
+    @Test
+    public void testBitsOfTheSamePoints() {
+        // The quasi-random sequences give the first 32 bits of their points
+        Random rand = new Random(1);
+        for (PointGenerator generator : new PointGenerator[] { new SobolPointGenerator(rand),
+                new HaltonPointGenerator(rand) }) {
+            int length = 1_000;
+            double[] u = new double[length];
+            double[] v = new double[length];
+            long[] bits = new long[length];
+            generator.copy().next(u, v, length);
+            generator.copy().nextBits(bits, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals((long) (u[i] * 0x1.0p32), bits[i] >>> 32);
+                assertEquals((long) (v[i] * 0x1.0p32), bits[i] & 0xffffffffL);
+            }
+        }
+    }
+
+    @Test
+    public void testScrambledSobolStratification() {
+        // Each of the 2^k points of a scrambled Sobol sequence still falls in its own 1/2^k interval on each axis
+        int length = 1 << 10;
+        double[] u = new double[length];
+        double[] v = new double[length];
+        new SobolPointGenerator(new Random(1)).next(u, v, length);
+        boolean[] seenU = new boolean[length];
+        boolean[] seenV = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            assertTrue(u[i] >= 0 && u[i] < 1 && v[i] >= 0 && v[i] < 1);
+            seenU[(int) (u[i] * length)] = true;
+            seenV[(int) (v[i] * length)] = true;
+        }
+        for (int i = 0; i < length; i++) {
+            assertTrue(seenU[i] && seenV[i]);
+        }
+    }
+
+    @Test
+    public void testPiConvergesFaster() {
+        // 2^16 points: the standard error of plain Monte Carlo is 0.0064
+        final long[] result = new long[2];
+        PiMonteCarlo pi = new PiMonteCarlo(0, new MonteCarloListener() {
+
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                result[0] = p;
+                result[1] = n;
+            }
+        });
+        pi.setPointGenerator(new SobolPointGenerator(new Random(1)));
+        pi.calculateBatch(1 << 16);
+        assertEquals(Math.PI, 4.0 * result[0] / result[1], 1e-3);
+    }
+
+    @Test
+    public void testReplicaStandardError() {
+        // 2 threads, 3 replicas with estimates 0.4, 0.5 and 0.6
+        Step step = new Step(new long[] { 20, 20, 25, 25, 30, 30 }, new long[] { 50, 50, 50, 50, 50, 50 }, 3);
+        assertEquals(0.5, step.calculate(1.0), 1e-15);
+        assertEquals(0.1 / Math.sqrt(3), step.standardError(1.0), 1e-15);
+    }
+}
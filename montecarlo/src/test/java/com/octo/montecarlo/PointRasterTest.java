@@ -0,0 +1,121 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class PointRasterTest {
+
+    @Test
+    public void testSamePixelsAsGraphics() {
+        MonteCarloCalculator calculator = new BatmanMonteCarlo(0);
+        PointRaster raster = new PointRaster(calculator);
+        int width = calculator.getWindowDimension().width;
+        int height = calculator.getWindowDimension().height;
+        BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+        double[] x = new double[1_000];
+        double[] y = new double[1_000];
+        boolean[] good = new boolean[1_000];
+        calculator.setPointGenerator(new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 3));
+        for (int batch = 0; batch < 20; batch++) {
+            double[] u = new double[x.length];
+            double[] v = new double[x.length];
+            calculator.getPointGenerator().next(u, v, x.length);
+            for (int i = 0; i < x.length; i++) {
+                x[i] = -calculator.getPositiveRange().width + 2 * calculator.getPositiveRange().width * u[i];
+                y[i] = -calculator.getPositiveRange().height + 2 * calculator.getPositiveRange().height * v[i];
+                good[i] = calculator.f(x[i], y[i]);
+                // What the GUI used to do for each point
+                int dotX = width - (int) (x[i] * width / 2.0 / calculator.getPositiveRange().width
+                        + calculator.getPositionOffset().width);
+                int dotY = height - (int) (y[i] * height / 2.0 / calculator.getPositiveRange().height
+                        + calculator.getPositionOffset().height);
+                Graphics2D g = expected.createGraphics();
+                g.setColor(good[i] ? Color.BLUE : Color.YELLOW);
+                g.drawLine(dotX, dotY, dotX, dotY);
+                g.dispose();
+            }
+            raster.plot(x, y, good, x.length);
+        }
+
+        BufferedImage image = raster.getImage();
+        int different = 0, blue = 0, yellow = 0;
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if (image.getRGB(j, i) != expected.getRGB(j, i)) {
+                    different++;
+                }
+                if (expected.getRGB(j, i) == Color.BLUE.getRGB()) {
+                    blue++;
+                } else if (expected.getRGB(j, i) == Color.YELLOW.getRGB()) {
+                    yellow++;
+                }
+            }
+        }
+        assertEquals(0, different);
+        // The counts kept while plotting are the ones of the image
+        assertEquals(blue, raster.getGood());
+        assertEquals(yellow, raster.getBad());
+        assertEquals(width * height - blue - yellow, raster.getBackground());
+        assertEquals(4 * 10 * 5 * blue / (double) (blue + yellow), raster.area(), 1e-9);
+    }
+
+    @Test
+    public void testEncode() {
+        MonteCarloCalculator calculator = new BatmanMonteCarlo(0);
+        PointRaster direct = new PointRaster(calculator);
+        PointRaster encoded = new PointRaster(calculator);
+        double[] x = { 0, 1.5, -6.9, 3, 100 };
+        double[] y = { 0, -2.5, 2.9, 1, 100 };
+        boolean[] good = { true, false, true, false, true };
+        int[] points = new int[x.length];
+        for (int i = 0; i < x.length; i++) {
+            points[i] = encoded.encode(x[i], y[i], good[i]);
+        }
+        assertEquals(-1, points[4]);
+        direct.plot(x, y, good, x.length);
+        encoded.plot(points, points.length);
+        assertEquals(direct.dirty(), encoded.dirty());
+        assertEquals(direct.getGood(), encoded.getGood());
+        assertEquals(direct.getBad(), encoded.getBad());
+        // A pixel changing colour is counted once
+        encoded.plot(new int[] { points[0] & ~1, points[0] | 1 }, 2);
+        assertEquals(direct.getGood(), encoded.getGood());
+        assertEquals(direct.getBad(), encoded.getBad());
+        for (int i = 0; i < direct.size(); i++) {
+            int j = i % calculator.getWindowDimension().width;
+            int k = i / calculator.getWindowDimension().width;
+            assertEquals(direct.getImage().getRGB(j, k), encoded.getImage().getRGB(j, k));
+        }
+    }
+
+    @Test
+    public void testDirty() {
+        MonteCarloCalculator calculator = new PiMonteCarlo(0);
+        PointRaster raster = new PointRaster(calculator);
+        assertNull(raster.dirty());
+
+        raster.plot(new double[] { 0, 0.5 }, new double[] { 0, -0.5 }, new boolean[] { true, true }, 2);
+        Rectangle dirty = raster.dirty();
+        assertNotNull(dirty);
+        assertEquals(2, raster.getGood());
+        // Both points are in the area and nothing more than the rectangle between them
+        int width = calculator.getWindowDimension().width;
+        int height = calculator.getWindowDimension().height;
+        assertTrue(dirty.width < width / 2 + 2);
+        assertTrue(dirty.height < height / 2 + 2);
+        assertNull(raster.dirty());
+
+        // Out of the image
+        raster.plot(100, 100, false);
+        assertNull(raster.dirty());
+        assertEquals(raster.size() - 2, raster.getBackground());
+        assertEquals(0, raster.getBad());
+    }
+}
@@ -0,0 +1,77 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PointRingTest {
+
+    @Test
+    public void testWrap() {
+        PointRing ring = new PointRing(8);
+        int[] target = new int[8];
+        int next = 0, expected = 0;
+        for (int round = 0; round < 10; round++) {
+            int[] points = { next++, next++, next++, next++, next++ };
+            assertEquals(5, ring.offer(points, points.length));
+            int count = ring.drain(target);
+            assertEquals(5, count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected++, target[i]);
+            }
+        }
+        assertEquals(0, ring.drain(target));
+        assertEquals(0, ring.dropped());
+    }
+
+    @Test
+    public void testDrop() {
+        PointRing ring = new PointRing(5);
+        // Rounded up to 8
+        assertEquals(6, ring.offer(new int[] { 1, 2, 3, 4, 5, 6 }, 6));
+        assertEquals(2, ring.offer(new int[] { 7, 8, 9 }, 3));
+        assertEquals(1, ring.dropped());
+        int[] target = new int[3];
+        assertEquals(3, ring.drain(target));
+        assertArrayEquals(new int[] { 1, 2, 3 }, target);
+        assertEquals(3, ring.offer(new int[] { 10, 11, 12 }, 3));
+        target = new int[16];
+        assertEquals(8, ring.drain(target));
+        assertEquals(12, target[7]);
+    }
+
+    @Test
+    public void testConcurrent() throws Exception {
+        final PointRing ring = new PointRing(1_024);
+        final int points = 200_000;
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                int[] batch = new int[100];
+                int next = 0;
+                while (next < points) {
+                    int length = Math.min(batch.length, points - next);
+                    for (int i = 0; i < length; i++) {
+                        batch[i] = next + i;
+                    }
+                    // Retry what didn't fit instead of dropping it, to check the order
+                    int offered = 0;
+                    while (offered == 0) {
+                        offered = ring.offer(batch, length);
+                    }
+                    next += offered;
+                }
+            }
+        };
+        producer.start();
+        int[] target = new int[256];
+        int expected = 0;
+        while (expected < points) {
+            int count = ring.drain(target);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected++, target[i]);
+            }
+        }
+        producer.join();
+    }
+}
@@ -0,0 +1,103 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class PrecisionTest {
+
+    private static final MonteCarloListener NOOP = new MonteCarloListener() {
+
+        @Override
+        public void onPoint(double x, double y, boolean good) {
+        }
+
+        @Override
+        public void onValue(int index, long p, long n) {
+        }
+    };
+
+    @Test
+    public void testBatmanFloat() {
+        assertTrue(BatmanMonteCarlo.fFloat(0, 0));
+        assertFalse(BatmanMonteCarlo.fFloat(10, 0));
+        assertFalse(BatmanMonteCarlo.fFloat(0, 10));
+        assertFalse(BatmanMonteCarlo.fFloat(4.2f, 4.2f));
+    }
+
+    @Test
+    public void testPiFixed() {
+        PiMonteCarlo pi = new PiMonteCarlo(0);
+        pi.setPrecision(Precision.FIXED);
+        // u in the 32 high bits, v in the low ones
+        assertTrue(pi.reduced.f(0x80000000_80000000L));
+        assertTrue(pi.reduced.f(0x00000000_80000000L));
+        assertFalse(pi.reduced.f(0L));
+        // The last cell before (1, 0) has its centre inside, the one of the corner is outside
+        assertTrue(pi.reduced.f(0xffffffff_80000000L));
+        assertFalse(pi.reduced.f(0xffffffff_ffffffffL));
+    }
+
+    @Test
+    public void testUnsupported() {
+        try {
+            new BatmanMonteCarlo(0).setPrecision(Precision.FIXED);
+            fail("Batman isn't polynomial");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new ShapeMonteCarlo(0, new HeartShape()).setPrecision(Precision.FLOAT);
+            fail("Only double for the shapes");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testShadow() {
+        for (Precision precision : Precision.values()) {
+            PiMonteCarlo pi = new PiMonteCarlo(0, NOOP);
+            pi.setPointGenerator(new RandomPointGenerator(RandomPointGenerator.DEFAULT_ALGORITHM, 1));
+            pi.setPrecision(precision);
+            pi.calculateBatch(100_000);
+            if (precision == Precision.DOUBLE) {
+                assertEquals(0, pi.getShadowPoints());
+                continue;
+            }
+            // The first point of each group of 8 in the buffers of 1024
+            assertEquals(100_000 / 8, pi.getShadowPoints());
+            assertTrue(Math.abs(pi.getShadowDifference()) <= pi.getShadowDisagreements());
+            assertTrue(precision.toString(), pi.getShadowDisagreements() < 10);
+        }
+    }
+
+    @Test
+    public void testSamePointsAsDouble() {
+        // The raw bits of Sobol are the ones of its doubles, and the reduced precisions only decide differently near
+        // the border, so the counts are close
+        BatmanMonteCarlo reference = new BatmanMonteCarlo(0, NOOP);
+        BatmanMonteCarlo reduced = new BatmanMonteCarlo(0, NOOP);
+        reference.setPointGenerator(new SobolPointGenerator(new Random(2)));
+        reduced.setPointGenerator(new SobolPointGenerator(new Random(2)));
+        reduced.setPrecision(Precision.FLOAT);
+        reference.calculateBatch(200_000);
+        reduced.calculateBatch(200_000);
+        assertTrue(Math.abs(reference.p - reduced.p) < 20);
+        assertTrue(reduced.getShadowPoints() > 0);
+    }
+
+    @Test
+    public void testOf() {
+        assertEquals(Precision.FIXED, Precision.of("fixed"));
+        assertEquals("float", Precision.FLOAT.toString());
+        try {
+            Precision.of("half");
+            fail("Unknown precision");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class RunMonitorTest {
+
+    @Test
+    public void testMetrics() {
+        // 2 threads and 2 replicas, the last slot of each replica being the resumed run
+        StepAggregator aggregator = new StepAggregator(2 * 3, 2);
+        RunMonitor monitor = new RunMonitor(aggregator, "Pi", 10_000, 2, 4.0, 0, 1_000);
+        aggregator.update(0, 700, 1_000);
+        aggregator.update(1, 800, 1_000);
+        aggregator.update(2, 750, 1_000);
+        aggregator.update(3, 780, 1_000);
+        aggregator.update(4, 790, 1_000);
+        monitor.listener(3, 10);
+        monitor.listener(4, 20);
+        monitor.batch(0, 100, System.nanoTime());
+        monitor.batch(1, 50, System.nanoTime() - 1_000_000_000L);
+
+        assertEquals(5_000, monitor.getSamples());
+        assertArrayEquals(new long[] { 2_000, 2_000 }, monitor.getWorkerSamples());
+        assertEquals(30, monitor.getListenerNanos());
+        assertEquals(150 - 30, monitor.getCalculationNanos());
+        assertEquals(4.0 * 3_820 / 5_000, monitor.getEstimate(), 1e-12);
+        assertTrue(monitor.getStandardError() > 0);
+        // Thread 1 finished its last batch a second before
+        assertTrue(monitor.getWorkerIdleMillis()[1] - monitor.getWorkerIdleMillis()[0] >= 999);
+        assertTrue(monitor.getRate() > 0);
+        assertTrue(monitor.getEtaSeconds() > 0);
+        monitor.listener(0, 30);
+        assertEquals(60, monitor.getListenerNanos());
+    }
+
+    @Test
+    public void testEstimator() {
+        // The estimate and the error of the run, not the hit-or-miss ones of the aggregator
+        final StepAggregator aggregator = new StepAggregator(2);
+        final StepAggregator mirrors = new StepAggregator(2);
+        final StepAggregator disagreements = new StepAggregator(2);
+        aggregator.update(0, 700, 1_000);
+        mirrors.update(0, 900, 1_000);
+        disagreements.update(0, 250, 1_000);
+        RunMonitor monitor = new RunMonitor(aggregator, new Supplier<Step>() {
+            @Override
+            public Step get() {
+                return new ReducedStep(Estimator.ANTITHETIC, aggregator.snapshot(), mirrors.snapshot(),
+                        disagreements.snapshot(), 0);
+            }
+        }, "Pi", 10_000, 1, 4.0, 0, 0);
+        Step step = new ReducedStep(Estimator.ANTITHETIC, aggregator.snapshot(), mirrors.snapshot(),
+                disagreements.snapshot(), 0);
+        assertEquals(step.calculate(4.0), monitor.getEstimate(), 1e-12);
+        assertEquals(step.standardError(4.0), monitor.getStandardError(), 1e-12);
+        assertTrue(monitor.getStandardError() < aggregator.snapshot().standardError(4.0));
+        assertEquals(1_000, monitor.getSamples());
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        StepAggregator aggregator = new StepAggregator(2);
+        RunMonitor monitor = new RunMonitor(aggregator, "Batman", 1_000, 1, 200.0, 0, 0);
+        aggregator.update(0, 250, 1_000);
+        monitor.register();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(RunMonitor.NAME);
+        try {
+            assertEquals("Batman", server.getAttribute(name, "Algorithm"));
+            assertEquals(50.0, (Double) server.getAttribute(name, "Estimate"), 1e-12);
+            assertArrayEquals(new long[] { 1_000 }, (long[]) server.getAttribute(name, "WorkerSamples"));
+            assertEquals(0.0, (Double) server.getAttribute(name, "EtaSeconds"), 0);
+            // A new run takes the place of the previous one
+            new RunMonitor(aggregator, "Pi", 1_000, 1, 4.0, 0, 0).register();
+            assertEquals("Pi", server.getAttribute(name, "Algorithm"));
+        } finally {
+            monitor.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
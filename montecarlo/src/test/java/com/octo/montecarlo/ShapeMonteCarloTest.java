@@ -0,0 +1,23 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.awt.Dimension;
+
+import org.junit.Test;
+
+public class ShapeMonteCarloTest {
+
+    @Test
+    public void testWindow() {
+        // As large as possible in 1600 x 800, keeping the proportions
+        ShapeMonteCarlo heart = new ShapeMonteCarlo(0, new HeartShape());
+        assertEquals(new Dimension(800, 800), heart.getWindowDimension());
+        assertEquals(new Dimension(400, 400), heart.getPositionOffset());
+
+        // Larger than the window
+        ShapeMonteCarlo large = new ShapeMonteCarlo(0, new ExpressionShape("Large", "x^2+y^2<=1e6", 1_000, 3_000));
+        assertEquals(new Dimension(266, 800), large.getWindowDimension());
+        assertEquals(new Dimension(133, 400), large.getPositionOffset());
+    }
+}
@@ -0,0 +1,59 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class StepAggregatorTest {
+
+    @Test
+    public void testSnapshot() {
+        StepAggregator aggregator = new StepAggregator(3);
+        aggregator.update(0, 1, 10);
+        aggregator.update(2, 5, 20);
+        aggregator.update(0, 3, 30);
+        Step step = aggregator.snapshot();
+        assertEquals(50, step.loops());
+        assertEquals(2.0 * 8 / 50, step.calculate(2.0), 0.0);
+        assertEquals(0, aggregator.retries());
+    }
+
+    @Test(timeout = 30_000)
+    public void testConsistentWhileWriting() throws Exception {
+        final int threads = 4;
+        final int updates = 200_000;
+        final StepAggregator aggregator = new StepAggregator(threads);
+        final AtomicBoolean torn = new AtomicBoolean();
+        Thread[] writers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            writers[i] = new Thread() {
+                @Override
+                public void run() {
+                    // n is always twice p, a torn read would break it
+                    for (long j = 1; j <= updates; j++) {
+                        aggregator.update(index, j, 2 * j);
+                    }
+                }
+            };
+            writers[i].start();
+        }
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread writer : writers) {
+                running |= writer.isAlive();
+            }
+            Step step = aggregator.snapshot();
+            for (int i = 0; i < threads; i++) {
+                if (step.nList[i] != 2 * step.pList[i]) {
+                    torn.set(true);
+                }
+            }
+        }
+        assertFalse(torn.get());
+        assertEquals(2L * threads * updates, aggregator.snapshot().loops());
+    }
+}
@@ -0,0 +1,69 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StratificationTest {
+
+    @Test
+    public void testAreas() {
+        Stratification stratification = new Stratification(new PiMonteCarlo(0), 16, 4);
+        // The disk is inside the interior and boundary cells, and covers the interior ones
+        assertTrue(stratification.getInteriorArea() < Math.PI);
+        assertTrue(stratification.getInteriorArea() + stratification.getBoundaryArea() > Math.PI);
+        // The boundary is a thin ring
+        assertTrue(stratification.getBoundaryArea() < 0.1);
+    }
+
+    @Test
+    public void testBoundaryCells() {
+        PiMonteCarlo pi = new PiMonteCarlo(0);
+        Stratification stratification = new Stratification(pi, 16, 4);
+        for (int cell = 0; cell < stratification.getCells(); cell++) {
+            double x = stratification.getX(cell);
+            double y = stratification.getY(cell);
+            // The closest point of the cell is in the disk, the farthest is not
+            double nx = Math.max(x, Math.min(0, x + stratification.getWidth()));
+            double ny = Math.max(y, Math.min(0, y + stratification.getHeight()));
+            double fx = Math.max(Math.abs(x), Math.abs(x + stratification.getWidth()));
+            double fy = Math.max(Math.abs(y), Math.abs(y + stratification.getHeight()));
+            assertTrue(pi.f(nx, ny));
+            assertFalse(pi.f(fx, fy));
+        }
+    }
+
+    @Test
+    public void testPi() {
+        final long[] result = new long[2];
+        MonteCarloListener listener = new MonteCarloListener() {
+            @Override
+            public void onPoint(double x, double y, boolean good) {
+            }
+
+            @Override
+            public void onValue(int index, long p, long n) {
+                result[0] = p;
+                result[1] = n;
+            }
+        };
+        StratifiedMonteCarlo stratified = new StratifiedMonteCarlo(0, new PiMonteCarlo(0), new Stratification(
+                new PiMonteCarlo(0)));
+        stratified.setListener(listener);
+        stratified.calculateBatch(1_000_000);
+        assertEquals(1_000_000, result[1]);
+        double area = stratified.getOffset() + stratified.getFactor() * result[0] / result[1];
+        // The standard error is under 1e-6, far below the one of the plain Monte Carlo
+        assertEquals(Math.PI, area, 1e-5);
+    }
+
+    @Test
+    public void testBatman() {
+        // A = 48.4243, the interior alone is already close
+        Stratification stratification = new Stratification(new BatmanMonteCarlo(0));
+        assertEquals(48.4243, stratification.getInteriorArea(), 0.5);
+        assertTrue(stratification.getBoundaryArea() < 1.0);
+        assertTrue(stratification.getInteriorArea() < 48.4243);
+        assertTrue(stratification.getInteriorArea() + stratification.getBoundaryArea() > 48.4243);
+    }
+}
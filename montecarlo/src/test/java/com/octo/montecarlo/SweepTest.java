@@ -0,0 +1,66 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SweepTest {
+
+    private static Sweep.Cell cell(int threads, long loops, double seconds) {
+        Sweep.Cell cell = new Sweep.Cell();
+        cell.threads = threads;
+        cell.iterations = loops;
+        cell.loops = loops;
+        cell.seconds = seconds;
+        return cell;
+    }
+
+    @Test
+    public void testStrongSpeedup() {
+        Sweep.Cell one = cell(1, 1_000, 4);
+        Sweep.Cell two = cell(2, 1_000, 2);
+        Sweep.Cell four = cell(4, 1_000, 2);
+        Sweep.speedup(Arrays.asList(one, two, four));
+        assertEquals(1, one.speedup, 1e-12);
+        assertEquals(2, two.speedup, 1e-12);
+        assertEquals(1, two.efficiency(), 1e-12);
+        assertEquals(2, four.speedup, 1e-12);
+        assertEquals(0.5, four.efficiency(), 1e-12);
+    }
+
+    @Test
+    public void testWeakSpeedup() {
+        // Twice the iterations in the same time with twice the threads is a perfect scaling
+        Sweep.Cell two = cell(2, 2_000, 1);
+        Sweep.Cell four = cell(4, 4_000, 1);
+        Sweep.Cell eight = cell(8, 8_000, 2);
+        Sweep.speedup(Arrays.asList(two, four, eight));
+        assertEquals(2, two.speedup, 1e-12);
+        assertEquals(1, four.efficiency(), 1e-12);
+        assertEquals(4, eight.speedup, 1e-12);
+        assertEquals(0.5, eight.efficiency(), 1e-12);
+    }
+
+    @Test
+    public void testMeasure() {
+        CalculatorFactory factory = Algorithms.retrieve("Pi");
+        Sweep.Cell one = cell(1, 0, 0);
+        one.algorithm = "Pi";
+        one.iterations = 50_000;
+        MonteCarloCmd.measure(one, factory, ExecutionBackend.FIXED, 3, 1);
+        Sweep.Cell three = cell(3, 0, 0);
+        three.algorithm = "Pi";
+        three.iterations = 50_000;
+        MonteCarloCmd.measure(three, factory, ExecutionBackend.FORKJOIN, 3, 1);
+
+        assertEquals(50_000, one.loops);
+        assertEquals(50_000, three.loops);
+        // Same seed, same points whatever the threads
+        assertEquals(one.estimate, three.estimate, 0);
+        assertEquals(Math.PI, one.estimate, 0.05);
+        assertTrue(three.seconds > 0);
+        assertTrue(three.calculationNanos > 0);
+    }
+}
@@ -1,12 +1,15 @@
 package com.octo.montecarlo;
 
-import java.util.Arrays;
-import java.util.Random;
-
 import com.amd.aparapi.Kernel;
 import com.amd.aparapi.Range;
 
-public class Batman {
+/**
+ * {@link KernelEngine} running the kernel on an OpenCL device with Aparapi. Only compiled with the aparapi profile.
+ * <p>
+ * Aparapi falls back to its own thread pool when the kernel can't run on OpenCL. That fallback is refused here, so
+ * {@link Batman} uses the {@link CpuKernelEngine} instead.
+ */
+public class AparapiKernelEngine implements KernelEngine {
 
     public static class BatmanKernel extends Kernel {
 
@@ -25,7 +28,6 @@ public class Batman {
         long[] result;
 
         int[] seed;
-        int[] temp;
 
         public boolean f(float x, float y) {
             
@@ -74,7 +76,6 @@ public class Batman {
             int index = getGlobalId();
             float x = nextFloat(index) * width * 2.0f - width;
             float y = nextFloat(index) * height * 2.0f - height;
-            temp[index]++;
             if(f(x, y)) {
                 result[index]++;
             }
@@ -85,56 +86,64 @@ public class Batman {
         }
 
         public void init() {
-
             result = new long[size];
-            Arrays.fill(result, 0);
-
-            seed = new int[size];
-            temp = new int[size];
-            Arrays.fill(temp, 0);
-            
-            Random rand = new Random(1);
-            for (int i = 0; i < size; i++) {
-                seed[i] = rand.nextInt();
-            }
+            seed = Batman.seeds(size);
         }
+    }
 
-        public void showResult(long passes) {
-            long p = 0;
-            long n = size * passes;
-            for (int i = 0; i < result.length; i++) {
-                p += result[i];
-            }
-            
-            double finalResult = 4.0 * width * height * p / n;
-            System.out.println("Final result: " + finalResult);
-            System.out.println("Iterations: " + n);
+    private final BatmanKernel kernel;
+
+    private final Range range;
+
+    /**
+     * @throws IllegalStateException
+     *             if there is no OpenCL device to run the kernel
+     */
+    public AparapiKernelEngine(int size) {
+        // A single work item tells if the kernel runs on the device, without drawing any point of the real ones
+        BatmanKernel probe = new BatmanKernel(1);
+        probe.init();
+        probe.setExecutionMode(Kernel.EXECUTION_MODE.GPU);
+        probe.execute(1);
+        Kernel.EXECUTION_MODE mode = probe.getExecutionMode();
+        probe.dispose();
+        if (mode != Kernel.EXECUTION_MODE.GPU) {
+            throw new IllegalStateException("No OpenCL device, Aparapi would run in " + mode + " mode");
         }
+
+        kernel = new BatmanKernel(size);
+        kernel.init();
+        kernel.setExecutionMode(Kernel.EXECUTION_MODE.GPU);
+        range = Range.create(size);
     }
 
-    public static void main(String[] _args) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+    @Override
+    public String getExecutionMode() {
+        return "Aparapi " + kernel.getExecutionMode();
+    }
 
-        int size = Integer.getInteger("size", 4096);
-        int iterations = Integer.getInteger("iterations", 20000);
-        
-        System.out.printf("size = %d%n", size);
-        System.out.printf("iterations = %d%n", iterations);
-        System.out.println();
+    @Override
+    public int getSize() {
+        return kernel.size;
+    }
 
-        Range range = Range.create(size);
-        
-        BatmanKernel kernel = new BatmanKernel(size);
-        kernel.init();
-        
-        long start = System.currentTimeMillis();
-        kernel.execute(range, iterations);
-        long stop = System.currentTimeMillis();
-        
-        System.out.printf("Execution mode: %s%n", kernel.getExecutionMode());
-        System.out.printf("Time: %d ms%n", (stop - start));
-        kernel.showResult(iterations);
-        
-        kernel.dispose();
+    @Override
+    public void execute(int passes) {
+        kernel.execute(range, passes);
     }
 
+    @Override
+    public long getResult() {
+        // The arrays are copied back from the device after each execute
+        long p = 0;
+        for (int i = 0; i < kernel.result.length; i++) {
+            p += kernel.result[i];
+        }
+        return p;
+    }
+
+    @Override
+    public void dispose() {
+        kernel.dispose();
+    }
 }
@@ -0,0 +1,94 @@
+package com.octo.montecarlo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run the Batman kernel on an OpenCL device with Aparapi or, when there is none, on the CPU threads. The output is the
+ * one of MonteCarloCmd to compare both.
+ */
+public class Batman {
+
+    /** Area of the domain: the points are in [-10, 10] x [-5, 5] */
+    static final double FACTOR = 4.0 * CpuKernelEngine.WIDTH * CpuKernelEngine.HEIGHT;
+
+    /**
+     * @return the first seed of each work item
+     */
+    static int[] seeds(int size) {
+        int[] seed = new int[size];
+        Random rand = new Random(1);
+        for (int i = 0; i < size; i++) {
+            seed[i] = rand.nextInt();
+        }
+        return seed;
+    }
+
+    /**
+     * @param name
+     *            aparapi, cpu or auto to take Aparapi if there is an OpenCL device and the CPU otherwise
+     */
+    static KernelEngine engine(String name, int size, int threads) {
+        if (!name.equals("cpu") && !name.equals("auto") && !name.equals("aparapi")) {
+            throw new IllegalArgumentException("Unknown engine. Should be auto, aparapi or cpu");
+        }
+        if (!name.equals("cpu")) {
+            String reason;
+            try {
+                // Not compiled without the aparapi profile
+                return (KernelEngine) Class.forName("com.octo.montecarlo.AparapiKernelEngine")
+                        .getConstructor(int.class).newInstance(size);
+            } catch (InvocationTargetException e) {
+                reason = String.valueOf(e.getCause());
+            } catch (ReflectiveOperationException e) {
+                reason = "Aparapi isn't in the build";
+            } catch (LinkageError e) {
+                reason = "Aparapi isn't in the classpath";
+            }
+            if (name.equals("aparapi")) {
+                throw new IllegalArgumentException("Can't use Aparapi: " + reason);
+            }
+            System.out.printf("Falling back to the CPU: %s%n", reason);
+        }
+        return new CpuKernelEngine(size, threads);
+    }
+
+    public static void main(String[] _args) {
+
+        int size = Integer.getInteger("size", 4096);
+        int iterations = Integer.getInteger("iterations", 20000);
+        int threads = Integer.getInteger("threads", Runtime.getRuntime().availableProcessors());
+        String engineName = System.getProperty("engine", "auto");
+        
+        System.out.printf("size = %d%n", size);
+        System.out.printf("iterations = %d%n", iterations);
+        System.out.println();
+
+        KernelEngine engine;
+        try {
+            engine = engine(engineName, size, threads);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        engine.execute(iterations);
+        long stop = System.nanoTime();
+        
+        long p = engine.getResult();
+        long n = (long) size * iterations;
+        double seconds = (stop - start) / 1e9;
+        System.out.printf("Execution mode: %s%n", engine.getExecutionMode());
+        System.out.printf("Time: %d ms%n", TimeUnit.NANOSECONDS.toMillis(stop - start));
+        System.out.printf("Final: Batman = %1.10f with %d iterations in %d seconds%n", FACTOR * p / n, n,
+                TimeUnit.NANOSECONDS.toSeconds(stop - start));
+        System.out.printf("Throughput: %.0f iterations/s, %.0f per work item, with %d work items%n", n / seconds,
+                iterations / seconds, size);
+        
+        engine.dispose();
+    }
+
+}
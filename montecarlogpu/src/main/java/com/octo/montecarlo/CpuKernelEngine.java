@@ -0,0 +1,178 @@
+package com.octo.montecarlo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link KernelEngine} running the work items on a pool of CPU threads, for the machines without an OpenCL device.
+ * <p>
+ * The work items keep the layout of the kernel: an array of seeds and an array of counters indexed by the work item.
+ * They are cut in tiles, each tile being a task running all the passes on its work items, so the seeds and counters
+ * of a tile stay in the cache of its core between two passes. The kernel itself is the one of
+ * {@link AparapiKernelEngine}, with the float functions of the Java mode of Aparapi, so a work item draws the same
+ * points and gets the same counter as on Aparapi.
+ */
+final class CpuKernelEngine implements KernelEngine {
+
+    static final int MULTIPLIER = 3559;
+
+    static final int ADDEND = 0xB;
+
+    static final int MASK = (1 << 24) - 1;
+
+    static final float WIDTH = 10;
+
+    static final float HEIGHT = 5;
+
+    /** Maximum number of work items of a task: 12 KB of seeds and counters */
+    static final int TILE = 1024;
+
+    private final int[] seed;
+
+    private final long[] result;
+
+    private final int threads;
+
+    private final int tile;
+
+    private final ExecutorService pool;
+
+    CpuKernelEngine(int size, int threads) {
+        if (size <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("The size and the number of threads should be positive");
+        }
+        this.seed = Batman.seeds(size);
+        this.result = new long[size];
+        this.threads = threads;
+        // At least a task per thread
+        this.tile = Math.min(TILE, (size + threads - 1) / threads);
+        this.pool = Executors.newFixedThreadPool(threads);
+    }
+
+    @Override
+    public String getExecutionMode() {
+        return "CPU with " + threads + " threads";
+    }
+
+    @Override
+    public int getSize() {
+        return seed.length;
+    }
+
+    @Override
+    public void execute(final int passes) {
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = 0; start < seed.length; start += tile) {
+            final int from = start;
+            final int to = Math.min(start + tile, seed.length);
+            tasks.add(new Callable<Void>() {
+
+                @Override
+                public Void call() {
+                    run(from, to, passes);
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> future : pool.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the kernel", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Kernel failed", e.getCause());
+        }
+    }
+
+    /**
+     * Run the passes of the work items of a tile, pass by pass as the device would
+     */
+    private void run(int from, int to, int passes) {
+        int[] seed = this.seed;
+        long[] result = this.result;
+        for (int pass = 0; pass < passes; pass++) {
+            for (int index = from; index < to; index++) {
+                float x = nextFloat(seed, index) * WIDTH * 2.0f - WIDTH;
+                float y = nextFloat(seed, index) * HEIGHT * 2.0f - HEIGHT;
+                if (f(x, y)) {
+                    result[index]++;
+                }
+            }
+        }
+    }
+
+    static float nextFloat(int[] seed, int index) {
+        int nextseed = (seed[index] * MULTIPLIER + ADDEND) & MASK;
+        seed[index] = nextseed;
+        return nextseed / ((float) (1 << 24));
+    }
+
+    /**
+     * The predicate of the kernel, all the regions being evaluated like on the device
+     */
+    static boolean f(float x, float y) {
+
+        // Wings bottom
+        boolean result = (pow(x, 2.0f) / 49.0f + pow(y, 2.0f) / 9.0f - 1.0f <= 0 && abs(x) >= 4.0f
+                && -(3.0f * sqrt(33.0f)) / 7.0f <= y && y <= 0);
+
+        // Wings top (with the fix of the formula there are missing parenthesis in the original)
+        result |= (pow(x, 2.0f) / 49.0f + pow(y, 2.0f) / 9.0f - 1.0f <= 0 && abs(x) >= 3.0f
+                && -(3.0f * sqrt(33.0f)) / 7.0f <= y && y >= 0);
+
+        // Tail
+        result |= (-3.0f <= y && y <= 0 && -4.0f <= x && x <= 4.0f && (abs(x)) / 2.0f
+                + sqrt(1.0f - pow(abs(abs(x) - 2.0f) - 1.0f, 2.0f)) - 1.0f / 112.0f * (3.0f * sqrt(33.0f) - 7.0f)
+                * pow(x, 2.0f) - y - 3.0f <= 0);
+
+        // Ears outside
+        result |= (y >= 0 && 3.0f / 4.0f <= abs(x) && abs(x) <= 1.0f && -8.0f * abs(x) - y + 9.0f >= 0);
+
+        // Ears inside
+        result |= (1.0f / 2.0f <= abs(x) && abs(x) <= 3.0f / 4.0f && 3.0f * abs(x) - y + 3.0f / 4.0f >= 0 && y >= 0);
+
+        // Chest
+        result |= (abs(x) <= 1.0f / 2.0f && y >= 0 && 9.0f / 4.0f - y >= 0);
+
+        // Shoulders
+        result |= (abs(x) >= 1.0f && y >= 0 && -(abs(x)) / 2.0f - 3.0f / 7.0f * sqrt(10.0f)
+                * sqrt(4.0f - pow(abs(x) - 1.0f, 2.0f)) - y + (6.0f * sqrt(10.0f)) / 7.0f + 3.0f / 2.0f >= 0);
+
+        return result;
+    }
+
+    // The functions of com.amd.aparapi.Kernel in Java mode
+
+    private static float pow(float a, float b) {
+        return (float) Math.pow(a, b);
+    }
+
+    private static float sqrt(float a) {
+        return (float) Math.sqrt(a);
+    }
+
+    private static float abs(float a) {
+        return Math.abs(a);
+    }
+
+    @Override
+    public long getResult() {
+        long p = 0;
+        for (int i = 0; i < result.length; i++) {
+            p += result[i];
+        }
+        return p;
+    }
+
+    @Override
+    public void dispose() {
+        pool.shutdown();
+    }
+}
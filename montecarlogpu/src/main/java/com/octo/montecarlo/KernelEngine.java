@@ -0,0 +1,34 @@
+package com.octo.montecarlo;
+
+/**
+ * Runs the Batman kernel on a range of work items. Each work item has its own generator seed and its own counter of
+ * the points in the function, and each pass draws one point per work item. The seeds come from
+ * {@link Batman#seeds(int)}, so a work item draws the same points on any engine.
+ */
+interface KernelEngine {
+
+    /**
+     * @return where the work items run, to be displayed
+     */
+    String getExecutionMode();
+
+    /**
+     * @return number of work items
+     */
+    int getSize();
+
+    /**
+     * Run passes of the kernel on all the work items. The counters are kept between two calls
+     */
+    void execute(int passes);
+
+    /**
+     * @return number of points in the function since the start, the sum of the counters of the work items
+     */
+    long getResult();
+
+    /**
+     * Release the threads or the device
+     */
+    void dispose();
+}
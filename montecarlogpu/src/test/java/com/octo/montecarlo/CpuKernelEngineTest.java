@@ -0,0 +1,72 @@
+package com.octo.montecarlo;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CpuKernelEngineTest {
+
+    @Test
+    public void testPredicate() {
+        assertTrue(CpuKernelEngine.f(0, 0));
+        assertFalse(CpuKernelEngine.f(10, 0));
+        assertFalse(CpuKernelEngine.f(0, 10));
+        assertFalse(CpuKernelEngine.f(4.2f, 4.2f));
+    }
+
+    /** The kernel run work item by work item, pass by pass */
+    private long sequential(int size, int passes) {
+        int[] seed = Batman.seeds(size);
+        long p = 0;
+        for (int pass = 0; pass < passes; pass++) {
+            for (int index = 0; index < size; index++) {
+                float x = CpuKernelEngine.nextFloat(seed, index) * 20.0f - 10.0f;
+                float y = CpuKernelEngine.nextFloat(seed, index) * 10.0f - 5.0f;
+                if (CpuKernelEngine.f(x, y)) {
+                    p++;
+                }
+            }
+        }
+        return p;
+    }
+
+    @Test
+    public void testSameResultWithAnyThreads() {
+        // Not a multiple of the tile nor of the threads
+        int size = 2_500;
+        long expected = sequential(size, 40);
+        for (int threads = 1; threads <= 3; threads++) {
+            KernelEngine engine = new CpuKernelEngine(size, threads);
+            engine.execute(40);
+            assertEquals("threads = " + threads, expected, engine.getResult());
+            engine.dispose();
+        }
+    }
+
+    @Test
+    public void testPassesAccumulate() {
+        KernelEngine engine = new CpuKernelEngine(1_000, 2);
+        engine.execute(30);
+        engine.execute(20);
+        assertEquals(sequential(1_000, 50), engine.getResult());
+        assertEquals(48.4, Batman.FACTOR * engine.getResult() / (1_000 * 50), 1.0);
+        engine.dispose();
+    }
+
+    @Test
+    public void testEngine() {
+        KernelEngine engine = Batman.engine("cpu", 10, 1);
+        assertEquals("CPU with 1 threads", engine.getExecutionMode());
+        engine.dispose();
+        // The CPU without an OpenCL device or without Aparapi, as in the tests
+        engine = Batman.engine("auto", 10, 1);
+        assertEquals(10, engine.getSize());
+        engine.dispose();
+        try {
+            Batman.engine("gpu", 10, 1);
+            fail("Unknown engine");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}